@@ -0,0 +1,77 @@
+package com.example.snake;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of placing an apple at different fill levels: the free-cell index
+ * against the old rejection sampling over the occupancy grid.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApplePlacementBenchmark {
+
+    @Param({"32", "256"})
+    public int boardSize;
+
+    @Param({"0.1", "0.5", "0.9", "0.99"})
+    public double fill;
+
+    private final Random mRandom = new Random(1);
+    private final FreeCellIndex mFreeCells = new FreeCellIndex();
+    private final OccupancyGrid mOccupancy = new OccupancyGrid();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mFreeCells.reset(boardSize, boardSize);
+        mOccupancy.resize(boardSize, boardSize);
+        int interior = (boardSize - 2) * (boardSize - 2);
+        int occupied = (int) (interior * fill);
+        for (int i = 0; i < occupied; i++) {
+            int cell = mFreeCells.random(mRandom);
+            int x = SnakeBody.unpackX(cell);
+            int y = SnakeBody.unpackY(cell);
+            mFreeCells.remove(x, y);
+            mOccupancy.setSnake(x, y);
+        }
+    }
+
+    /**
+     * Picks a free cell and gives it back, so the fill level stays fixed.
+     */
+    @Benchmark
+    public int freeCellIndex() {
+        int cell = mFreeCells.random(mRandom);
+        int x = SnakeBody.unpackX(cell);
+        int y = SnakeBody.unpackY(cell);
+        mFreeCells.remove(x, y);
+        mFreeCells.add(x, y);
+        return cell;
+    }
+
+    /**
+     * The original addRandomApple loop: draw until the cell is not under the
+     * snake.
+     */
+    @Benchmark
+    public int rejectionSampling() {
+        while (true) {
+            int x = 1 + mRandom.nextInt(boardSize - 2);
+            int y = 1 + mRandom.nextInt(boardSize - 2);
+            if (!mOccupancy.isSnake(x, y)) {
+                return SnakeBody.pack(x, y);
+            }
+        }
+    }
+}
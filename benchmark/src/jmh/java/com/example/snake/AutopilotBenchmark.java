@@ -0,0 +1,67 @@
+package com.example.snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of one autopilot decision plus the tick it drives, for different board
+ * sizes and snake lengths. Compare with TickBenchmark for the tick alone; the
+ * decision has to fit well inside the shortest move delay.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AutopilotBenchmark {
+
+    @Param({"32", "128", "512"})
+    public int boardSize;
+
+    @Param({"6", "100", "800"})
+    public int snakeLength;
+
+    private GameEngine mEngine;
+    private Autopilot mAutopilot;
+    private int[] mSnake;
+    private int[] mApples;
+    private int mDirection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CyclePath path = new CyclePath(boardSize, boardSize);
+        int head = snakeLength - 1;
+        mSnake = path.snakeEndingAt(head, snakeLength);
+        mDirection = CyclePath.direction(path.cellAt(head - 1), path.cellAt(head));
+        // 苹果放在离蛇头较远的地方，让搜索走得远一些
+        int a = path.cellAt(head + boardSize * 3);
+        int b = path.cellAt(head + boardSize * 7);
+        mApples = new int[] {SnakeBody.unpackX(a), SnakeBody.unpackY(a),
+                SnakeBody.unpackX(b), SnakeBody.unpackY(b)};
+        mEngine = new GameEngine(1);
+        mEngine.resize(boardSize, boardSize);
+        mAutopilot = new Autopilot();
+        reset();
+    }
+
+    private void reset() {
+        mEngine.restoreState(mSnake, mApples, mDirection, mDirection,
+                GameEngine.INITIAL_MOVE_DELAY, 0);
+    }
+
+    @Benchmark
+    public int decideAndStep() {
+        GameEngine engine = mEngine;
+        if (engine.isOver() || engine.getSnake().size() > snakeLength + 32) {
+            reset();
+        }
+        return engine.step(mAutopilot.chooseDirection(engine));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of wiping a whole board: TileView.clearTiles (a TileGrid fill) and the
+ * per-cell structures the game clears on a resize or a new game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardClearBenchmark {
+
+    @Param({"32", "128", "512"})
+    public int boardSize;
+
+    private final OccupancyGrid mOccupancy = new OccupancyGrid();
+    private final FreeCellIndex mFreeCells = new FreeCellIndex();
+    private TileGrid mTiles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mOccupancy.resize(boardSize, boardSize);
+        mFreeCells.reset(boardSize, boardSize);
+        mTiles = new TileGrid(boardSize, boardSize);
+    }
+
+    @Benchmark
+    public void clearTiles() {
+        mTiles.clear();
+    }
+
+    @Benchmark
+    public void clearOccupancy() {
+        mOccupancy.clear();
+    }
+
+    @Benchmark
+    public int resetFreeCells() {
+        mFreeCells.reset(boardSize, boardSize);
+        return mFreeCells.size();
+    }
+}
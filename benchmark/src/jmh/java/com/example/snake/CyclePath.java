@@ -0,0 +1,87 @@
+package com.example.snake;
+
+/**
+ * CyclePath: a Hamiltonian cycle through the interior of a garden, used to
+ * drive the engine indefinitely without the snake ever crashing.
+ *
+ * Rows are swept in a serpentine over columns 2..W, then column 1 leads back
+ * up to the start. The interior height must be even.
+ */
+final class CyclePath {
+    final int width;
+    final int height;
+    // 环上的格子（打包坐标），按行进顺序
+    final int[] cells;
+    // 每个格子（行优先下标）上应走的方向
+    final int[] directionAt;
+
+    CyclePath(int width, int height) {
+        int w = width - 2;
+        int h = height - 2;
+        if (h % 2 != 0 || w < 2) {
+            throw new IllegalArgumentException("interior height must be even");
+        }
+        this.width = width;
+        this.height = height;
+        cells = new int[w * h];
+        directionAt = new int[width * height];
+        int n = 0;
+        for (int y = 1; y <= h; y++) {
+            if (y % 2 == 1) {
+                for (int x = 2; x <= w; x++) {
+                    cells[n++] = SnakeBody.pack(x, y);
+                }
+            } else {
+                for (int x = w; x >= 2; x--) {
+                    cells[n++] = SnakeBody.pack(x, y);
+                }
+            }
+        }
+        for (int y = h; y >= 1; y--) {
+            cells[n++] = SnakeBody.pack(1, y);
+        }
+        for (int i = 0; i < cells.length; i++) {
+            int from = cells[i];
+            int to = cells[(i + 1) % cells.length];
+            directionAt[index(from)] = direction(from, to);
+        }
+    }
+
+    int index(int packed) {
+        return SnakeBody.unpackY(packed) * width + SnakeBody.unpackX(packed);
+    }
+
+    int next(int packed) {
+        return directionAt[index(packed)];
+    }
+
+    /**
+     * The snake lying along the cycle with its head at cells[headIndex], as
+     * [x1,y1,x2,y2,...], head first.
+     */
+    int[] snakeEndingAt(int headIndex, int length) {
+        int[] raw = new int[length * 2];
+        for (int i = 0; i < length; i++) {
+            int c = cells[((headIndex - i) % cells.length + cells.length) % cells.length];
+            raw[2 * i] = SnakeBody.unpackX(c);
+            raw[2 * i + 1] = SnakeBody.unpackY(c);
+        }
+        return raw;
+    }
+
+    int cellAt(int index) {
+        return cells[((index % cells.length) + cells.length) % cells.length];
+    }
+
+    static int direction(int from, int to) {
+        int dx = SnakeBody.unpackX(to) - SnakeBody.unpackX(from);
+        int dy = SnakeBody.unpackY(to) - SnakeBody.unpackY(from);
+        if (dx > 0) {
+            return GameEngine.EAST;
+        }
+        if (dx < 0) {
+            return GameEngine.WEST;
+        }
+        return dy > 0 ? GameEngine.SOUTH : GameEngine.NORTH;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of the state flattening behind SnakeView.saveState/restoreState: the
+ * old per-field int arrays against the compact StateCodec byte array. The
+ * Bundle itself needs Android.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateBenchmark {
+
+    @Param({"32", "128"})
+    public int boardSize;
+
+    @Param({"6", "100", "800"})
+    public int snakeLength;
+
+    private GameEngine mEngine;
+    private int[] mSnake;
+    private int[] mApples;
+    private byte[] mEncoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CyclePath path = new CyclePath(boardSize, boardSize);
+        int head = snakeLength - 1;
+        int a = path.cellAt(head + 10);
+        mSnake = path.snakeEndingAt(head, snakeLength);
+        mApples = new int[] {SnakeBody.unpackX(a), SnakeBody.unpackY(a)};
+        int direction = CyclePath.direction(path.cellAt(head - 1), path.cellAt(head));
+        mEngine = new GameEngine(1);
+        mEngine.resize(boardSize, boardSize);
+        mEngine.restoreState(mSnake, mApples, direction, direction,
+                GameEngine.INITIAL_MOVE_DELAY, 0);
+        mEncoded = StateCodec.encode(mEngine);
+    }
+
+    @Benchmark
+    public int save() {
+        return mEngine.getSnake().toArray().length
+                + mEngine.getApplesArray().length;
+    }
+
+    @Benchmark
+    public int encode() {
+        return StateCodec.encode(mEngine).length;
+    }
+
+    @Benchmark
+    public int decode() {
+        StateCodec.decode(mEncoded, mEngine);
+        return mEngine.getFreeCellCount();
+    }
+
+    @Benchmark
+    public int restore() {
+        mEngine.restoreState(mSnake, mApples, mEngine.getDirection(),
+                mEngine.getNextDirection(), mEngine.getMoveDelay(),
+                mEngine.getScore());
+        return mEngine.getFreeCellCount();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of one game tick (the old updateSnake) for different board sizes and
+ * snake lengths. The snake follows a Hamiltonian cycle so it never dies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TickBenchmark {
+
+    @Param({"32", "128", "512"})
+    public int boardSize;
+
+    @Param({"6", "100", "800"})
+    public int snakeLength;
+
+    private GameEngine mEngine;
+    private CyclePath mPath;
+    private int[] mSnake;
+    private int[] mApples;
+    private int mDirection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mPath = new CyclePath(boardSize, boardSize);
+        int head = snakeLength - 1;
+        mSnake = mPath.snakeEndingAt(head, snakeLength);
+        mDirection = CyclePath.direction(mPath.cellAt(head - 1), mPath.cellAt(head));
+        // 两个苹果放在蛇头前方不远处，保证吃苹果的路径也被测到
+        int a = mPath.cellAt(head + 10);
+        int b = mPath.cellAt(head + 40);
+        mApples = new int[] {SnakeBody.unpackX(a), SnakeBody.unpackY(a),
+                SnakeBody.unpackX(b), SnakeBody.unpackY(b)};
+        mEngine = new GameEngine(1);
+        mEngine.resize(boardSize, boardSize);
+        reset();
+    }
+
+    private void reset() {
+        mEngine.restoreState(mSnake, mApples, mDirection, mDirection,
+                GameEngine.INITIAL_MOVE_DELAY, 0);
+    }
+
+    /**
+     * Moves along the cycle, eating whatever apples appear on the way. The
+     * state is reset (rarely) once the snake has grown well past its
+     * nominal length, so the measured length stays close to the parameter.
+     */
+    @Benchmark
+    public int step() {
+        GameEngine engine = mEngine;
+        if (engine.isOver() || engine.getSnake().size() > snakeLength + 32) {
+            reset();
+        }
+        return engine.step(mPath.next(engine.getSnake().head()));
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.snake;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchSimulator: plays many seeded games headlessly on every core and
+ * summarises them, to compare board sizes, speed curves and strategies.
+ *
+ * Every combination of board size, strategy and speed-up factor (a "case")
+ * plays the same list of seeds, so cases are compared on identical apple
+ * sequences. The games are split over a ForkJoinPool; each game writes only
+ * its own slot of the result arrays and the statistics are computed
+ * afterwards in game order, so everything except the wall times is identical
+ * whatever the thread count.
+ *
+ * Run with e.g.
+ * <pre>
+ * gradle -p benchmark simulate -Pargs="--games 10000 --boards 20,40 --csv games.csv"
+ * </pre>
+ */
+// 批量模拟：用fork-join在所有核上跑大量有种子的对局，统计得分、长度、步数和耗时
+public class BatchSimulator {
+
+    // 策略
+    public static final int AUTOPILOT = 0;
+    public static final int RANDOM = 1;
+    private static final String[] STRATEGY_NAMES = {"autopilot", "random"};
+
+    // 对局结果：撞死、胜利、达到步数上限
+    public static final int DIED = 0;
+    public static final int WON = 1;
+    public static final int CAPPED = 2;
+    private static final String[] OUTCOME_NAMES = {"died", "won", "capped"};
+
+    // 每个叶子任务最多跑几局
+    private static final int LEAF_GAMES = 8;
+    // 随机策略每步转向的概率（百分比）
+    private static final int RANDOM_TURN_PERCENT = 20;
+
+    private final int[] mBoards;
+    private final int[] mStrategies;
+    private final double[] mSpeedUps;
+    private final int mGames;
+    private final long mMaxTicks;
+
+    // 每局的结果，下标 = 情况 * mGames + 第几局
+    private final long[] mGameSeeds;
+    private final byte[] mOutcome;
+    private final long[] mScore;
+    private final int[] mLength;
+    private final long[] mTicks;
+    private final long[] mPlayMillis;
+    private final long[] mWallNanos;
+
+    public BatchSimulator(int[] boards, int[] strategies, double[] speedUps,
+            int games, long seed, long maxTicks) {
+        mBoards = boards;
+        mStrategies = strategies;
+        mSpeedUps = speedUps;
+        mGames = games;
+        mMaxTicks = maxTicks;
+        int total = getCaseCount() * games;
+        mGameSeeds = new long[games];
+        for (int k = 0; k < games; k++) {
+            mGameSeeds[k] = mix(seed + k);
+        }
+        mOutcome = new byte[total];
+        mScore = new long[total];
+        mLength = new int[total];
+        mTicks = new long[total];
+        mPlayMillis = new long[total];
+        mWallNanos = new long[total];
+    }
+
+    public int getCaseCount() {
+        return mBoards.length * mStrategies.length * mSpeedUps.length;
+    }
+
+    public int getGameCount() {
+        return mGames;
+    }
+
+    // 第c种情况的棋盘大小、策略和加速系数
+    public int boardOf(int c) {
+        return mBoards[c / (mStrategies.length * mSpeedUps.length)];
+    }
+
+    public int strategyOf(int c) {
+        return mStrategies[c / mSpeedUps.length % mStrategies.length];
+    }
+
+    public double speedUpOf(int c) {
+        return mSpeedUps[c % mSpeedUps.length];
+    }
+
+    /**
+     * Plays every game of every case on the given pool.
+     */
+    // 在线程池上跑完所有对局
+    public void run(ForkJoinPool pool) {
+        pool.invoke(new PlayTask(0, mOutcome.length));
+    }
+
+    // 把一段对局不断对半拆分，直到足够小
+    private class PlayTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int mFrom;
+        private final int mTo;
+
+        PlayTask(int from, int to) {
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= LEAF_GAMES) {
+                playRange(mFrom, mTo);
+                return;
+            }
+            int mid = (mFrom + mTo) >>> 1;
+            invokeAll(new PlayTask(mFrom, mid), new PlayTask(mid, mTo));
+        }
+    }
+
+    // 叶子任务：引擎和自动驾驶在这一段对局中复用
+    private void playRange(int from, int to) {
+        GameEngine engine = new GameEngine(0);
+        Autopilot autopilot = new Autopilot();
+        GameRandom player = new GameRandom(0);
+        for (int i = from; i < to; i++) {
+            int c = i / mGames;
+            long seed = mGameSeeds[i % mGames];
+            long start = System.nanoTime();
+            int board = boardOf(c);
+            int strategy = strategyOf(c);
+            engine.setSpeedUp(speedUpOf(c));
+            engine.resize(board, board);
+            engine.newGame(seed);
+            player.setSeed(mix(seed ^ 0x5DEECE66DL));
+
+            long ticks = 0;
+            long playMillis = 0;
+            int result = GameEngine.MOVED;
+            while (!engine.isOver() && ticks < mMaxTicks) {
+                int direction;
+                if (strategy == AUTOPILOT) {
+                    direction = autopilot.chooseDirection(engine);
+                } else if (player.nextInt(100) < RANDOM_TURN_PERCENT) {
+                    direction = 1 + player.nextInt(4);
+                } else {
+                    direction = engine.getDirection();
+                }
+                playMillis += engine.getMoveDelay();
+                result = engine.step(direction);
+                ticks++;
+            }
+
+            mOutcome[i] = (byte) (result == GameEngine.WON ? WON
+                    : result == GameEngine.DIED ? DIED : CAPPED);
+            mScore[i] = engine.getScore();
+            mLength[i] = engine.getSnake().size();
+            mTicks[i] = ticks;
+            mPlayMillis[i] = playMillis;
+            mWallNanos[i] = System.nanoTime() - start;
+        }
+    }
+
+    // SplitMix64：由基础种子和序号得到分布良好的种子
+    static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Summary of one metric over the games of one case.
+     */
+    public static class Stats {
+        public double mean;
+        public double stddev;
+        public long min;
+        public long p50;
+        public long p90;
+        public long p99;
+        public long max;
+
+        // 统计一组值（会排序这个数组）
+        static Stats of(long[] values) {
+            Stats stats = new Stats();
+            int n = values.length;
+            if (n == 0) {
+                return stats;
+            }
+            double sum = 0;
+            for (long value : values) {
+                sum += value;
+            }
+            stats.mean = sum / n;
+            double squares = 0;
+            for (long value : values) {
+                double d = value - stats.mean;
+                squares += d * d;
+            }
+            stats.stddev = Math.sqrt(squares / n);
+            Arrays.sort(values);
+            stats.min = values[0];
+            stats.p50 = values[(n - 1) * 50 / 100];
+            stats.p90 = values[(n - 1) * 90 / 100];
+            stats.p99 = values[(n - 1) * 99 / 100];
+            stats.max = values[n - 1];
+            return stats;
+        }
+    }
+
+    // 某种情况下某个指标的统计
+    public Stats scoreStats(int c) {
+        return Stats.of(Arrays.copyOfRange(mScore, c * mGames, (c + 1) * mGames));
+    }
+
+    public Stats lengthStats(int c) {
+        long[] values = new long[mGames];
+        for (int k = 0; k < mGames; k++) {
+            values[k] = mLength[c * mGames + k];
+        }
+        return Stats.of(values);
+    }
+
+    public Stats tickStats(int c) {
+        return Stats.of(Arrays.copyOfRange(mTicks, c * mGames, (c + 1) * mGames));
+    }
+
+    public Stats playTimeStats(int c) {
+        return Stats.of(Arrays.copyOfRange(mPlayMillis, c * mGames,
+                (c + 1) * mGames));
+    }
+
+    public Stats wallTimeStats(int c) {
+        return Stats.of(Arrays.copyOfRange(mWallNanos, c * mGames,
+                (c + 1) * mGames));
+    }
+
+    // 某种情况下某种结果的局数
+    public int outcomeCount(int c, int outcome) {
+        int count = 0;
+        for (int k = 0; k < mGames; k++) {
+            if (mOutcome[c * mGames + k] == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes one CSV row per game.
+     */
+    public void writeGames(Writer out) throws IOException {
+        out.write("board,strategy,speed_up,seed,outcome,score,length,ticks,"
+                + "play_ms,wall_us\n");
+        for (int i = 0; i < mOutcome.length; i++) {
+            int c = i / mGames;
+            out.write(String.format(Locale.US, "%d,%s,%.3f,%d,%s,%d,%d,%d,%d,%d\n",
+                    boardOf(c), STRATEGY_NAMES[strategyOf(c)], speedUpOf(c),
+                    mGameSeeds[i % mGames], OUTCOME_NAMES[mOutcome[i]],
+                    mScore[i], mLength[i], mTicks[i], mPlayMillis[i],
+                    mWallNanos[i] / 1000));
+        }
+    }
+
+    /**
+     * Writes one CSV row per case with the summary statistics.
+     */
+    public void writeSummary(Writer out) throws IOException {
+        out.write("board,strategy,speed_up,games,won,died,capped");
+        String[] metrics = {"score", "length", "ticks", "play_ms", "wall_us"};
+        for (String metric : metrics) {
+            out.write("," + metric + "_mean," + metric + "_stddev," + metric
+                    + "_min," + metric + "_p50," + metric + "_p90," + metric
+                    + "_p99," + metric + "_max");
+        }
+        out.write("\n");
+        for (int c = 0; c < getCaseCount(); c++) {
+            out.write(String.format(Locale.US, "%d,%s,%.3f,%d,%d,%d,%d",
+                    boardOf(c), STRATEGY_NAMES[strategyOf(c)], speedUpOf(c),
+                    mGames, outcomeCount(c, WON), outcomeCount(c, DIED),
+                    outcomeCount(c, CAPPED)));
+            Stats wall = wallTimeStats(c);
+            Stats[] stats = {scoreStats(c), lengthStats(c), tickStats(c),
+                    playTimeStats(c), wall};
+            for (int m = 0; m < stats.length; m++) {
+                // 墙钟时间用微秒
+                long unit = stats[m] == wall ? 1000 : 1;
+                Stats s = stats[m];
+                out.write(String.format(Locale.US, ",%.2f,%.2f,%d,%d,%d,%d,%d",
+                        s.mean / unit, s.stddev / unit, s.min / unit,
+                        s.p50 / unit, s.p90 / unit, s.p99 / unit, s.max / unit));
+            }
+            out.write("\n");
+        }
+    }
+
+    // 在控制台打印简要的统计
+    public void printSummary(PrintStream out) {
+        out.printf(Locale.US, "%6s %-10s %6s %7s %7s %10s %10s %12s %10s %10s%n",
+                "board", "strategy", "speed", "won", "died", "score", "length",
+                "ticks", "play_s", "wall_us");
+        for (int c = 0; c < getCaseCount(); c++) {
+            out.printf(Locale.US,
+                    "%6d %-10s %6.3f %7d %7d %10.1f %10.1f %12.1f %10.1f %10.1f%n",
+                    boardOf(c), STRATEGY_NAMES[strategyOf(c)], speedUpOf(c),
+                    outcomeCount(c, WON), outcomeCount(c, DIED),
+                    scoreStats(c).mean, lengthStats(c).mean,
+                    tickStats(c).mean, playTimeStats(c).mean / 1000,
+                    wallTimeStats(c).mean / 1000);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int games = 1000;
+        int[] boards = {20};
+        int[] strategies = {AUTOPILOT};
+        double[] speedUps = {GameEngine.SPEED_UP};
+        long seed = 1;
+        long maxTicks = 1000000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String csv = null;
+        String summary = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if (args[i].equals("--games")) {
+                games = Integer.parseInt(value);
+            } else if (args[i].equals("--boards")) {
+                String[] parts = value.split(",");
+                boards = new int[parts.length];
+                for (int k = 0; k < parts.length; k++) {
+                    boards[k] = Integer.parseInt(parts[k].trim());
+                }
+            } else if (args[i].equals("--strategies")) {
+                String[] parts = value.split(",");
+                strategies = new int[parts.length];
+                for (int k = 0; k < parts.length; k++) {
+                    strategies[k] = Arrays.asList(STRATEGY_NAMES)
+                            .indexOf(parts[k].trim());
+                    if (strategies[k] < 0) {
+                        throw new IllegalArgumentException("Unknown strategy "
+                                + parts[k]);
+                    }
+                }
+            } else if (args[i].equals("--speedups")) {
+                String[] parts = value.split(",");
+                speedUps = new double[parts.length];
+                for (int k = 0; k < parts.length; k++) {
+                    speedUps[k] = Double.parseDouble(parts[k].trim());
+                }
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(value);
+            } else if (args[i].equals("--max-ticks")) {
+                maxTicks = Long.parseLong(value);
+            } else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(value);
+            } else if (args[i].equals("--csv")) {
+                csv = value;
+            } else if (args[i].equals("--summary")) {
+                summary = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        BatchSimulator simulator = new BatchSimulator(boards, strategies,
+                speedUps, games, seed, maxTicks);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        simulator.run(pool);
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.printf(Locale.US, "%d games on %d threads in %.2f s%n",
+                simulator.getCaseCount() * games, threads, elapsed / 1e9);
+        simulator.printSummary(System.out);
+        if (csv != null) {
+            Writer out = new BufferedWriter(new FileWriter(csv));
+            try {
+                simulator.writeGames(out);
+            } finally {
+                out.close();
+            }
+        }
+        if (summary != null) {
+            Writer out = new BufferedWriter(new FileWriter(summary));
+            try {
+                simulator.writeSummary(out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
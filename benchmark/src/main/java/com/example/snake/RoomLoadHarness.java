@@ -0,0 +1,128 @@
+package com.example.snake;
+
+import java.util.Locale;
+
+/**
+ * RoomLoadHarness: loads a RoomServer with more and more rooms and reports
+ * how late the moves run, to find how many rooms a machine can host.
+ *
+ * For each room count a fresh server is filled with bot rooms, warmed up,
+ * and then measured: moves per second, the tick lateness percentiles (upper
+ * bucket bounds, see LatencyHistogram) and the moves skipped because a room
+ * fell a whole move behind.
+ *
+ * Run with e.g.
+ * <pre>
+ * gradle -p benchmark loadtest -Pargs="--rooms 1000,5000,20000 --workers 4"
+ * </pre>
+ */
+// 房间负载测试：房间数逐渐增加时，每一步延迟的百分位数
+public class RoomLoadHarness {
+
+    /**
+     * Lateness and throughput at one room count.
+     */
+    public static class Result {
+        public int rooms;
+        public double movesPerSecond;
+        public long p50Nanos;
+        public long p90Nanos;
+        public long p99Nanos;
+        public long maxNanos;
+        public long skipped;
+    }
+
+    private RoomLoadHarness() {
+    }
+
+    /**
+     * Runs one room count and returns what was measured.
+     */
+    // 测一种房间数
+    public static Result run(int rooms, int workers, int board, int bot,
+            long resolutionNanos, long warmupMillis, long measureMillis)
+            throws InterruptedException {
+        RoomServer server = new RoomServer(workers, resolutionNanos);
+        server.start();
+        // 房间的第一步均匀分散在一个初始延迟内
+        long stagger = GameEngine.INITIAL_MOVE_DELAY * 1000000L / Math.max(1, rooms);
+        long next = System.nanoTime();
+        for (int i = 0; i < rooms; i++) {
+            server.addRoom(board, BatchSimulator.mix(i), bot);
+            next += stagger;
+            long wait = next - System.nanoTime();
+            if (wait > 1000000L) {
+                Thread.sleep(wait / 1000000L);
+            }
+        }
+        Thread.sleep(warmupMillis);
+        server.resetStats();
+        Thread.sleep(measureMillis);
+        LatencyHistogram lateness = server.getLateness();
+        Result result = new Result();
+        result.rooms = rooms;
+        result.movesPerSecond = server.getSteps() * 1000.0 / measureMillis;
+        result.p50Nanos = lateness.getPercentileNanos(50);
+        result.p90Nanos = lateness.getPercentileNanos(90);
+        result.p99Nanos = lateness.getPercentileNanos(99);
+        result.maxNanos = lateness.getMaxNanos();
+        result.skipped = server.getSkipped();
+        server.stop();
+        return result;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] rooms = {1000, 2000, 5000, 10000, 20000};
+        int workers = Runtime.getRuntime().availableProcessors();
+        int board = 20;
+        int bot = RoomServer.RANDOM_BOT;
+        long resolutionNanos = 1000000L;
+        long warmupMillis = 2000;
+        long measureMillis = 5000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if (args[i].equals("--rooms")) {
+                String[] parts = value.split(",");
+                rooms = new int[parts.length];
+                for (int k = 0; k < parts.length; k++) {
+                    rooms[k] = Integer.parseInt(parts[k].trim());
+                }
+            } else if (args[i].equals("--workers")) {
+                workers = Integer.parseInt(value);
+            } else if (args[i].equals("--board")) {
+                board = Integer.parseInt(value);
+            } else if (args[i].equals("--bot")) {
+                if (value.equals("random")) {
+                    bot = RoomServer.RANDOM_BOT;
+                } else if (value.equals("autopilot")) {
+                    bot = RoomServer.AUTOPILOT_BOT;
+                } else {
+                    throw new IllegalArgumentException("Unknown bot " + value);
+                }
+            } else if (args[i].equals("--resolution-us")) {
+                resolutionNanos = Long.parseLong(value) * 1000;
+            } else if (args[i].equals("--warmup-ms")) {
+                warmupMillis = Long.parseLong(value);
+            } else if (args[i].equals("--measure-ms")) {
+                measureMillis = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.printf(Locale.US, "%d workers, %dx%d boards, %d us wheel ticks%n",
+                workers, board, board, resolutionNanos / 1000);
+        System.out.printf(Locale.US, "%8s %12s %10s %10s %10s %10s %10s%n",
+                "rooms", "moves/s", "p50_ms", "p90_ms", "p99_ms", "max_ms",
+                "skipped");
+        for (int count : rooms) {
+            Result result = run(count, workers, board, bot, resolutionNanos,
+                    warmupMillis, measureMillis);
+            System.out.printf(Locale.US,
+                    "%8d %12.0f %10.3f %10.3f %10.3f %10.3f %10d%n",
+                    result.rooms, result.movesPerSecond, result.p50Nanos / 1e6,
+                    result.p90Nanos / 1e6, result.p99Nanos / 1e6,
+                    result.maxNanos / 1e6, result.skipped);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.snake;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the batch simulator.
+ */
+public class BatchSimulatorTest {
+
+    // 跑一批对局，返回去掉墙钟时间后的CSV
+    private static String run(int threads) throws IOException {
+        BatchSimulator simulator = new BatchSimulator(new int[] {12, 16},
+                new int[] {BatchSimulator.AUTOPILOT, BatchSimulator.RANDOM},
+                new double[] {0.9}, 20, 7, 200000);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        simulator.run(pool);
+        pool.shutdown();
+        StringWriter out = new StringWriter();
+        simulator.writeGames(out);
+        return out.toString().replaceAll(",\\d+\n", "\n");
+    }
+
+    @Test
+    public void results_doNotDependOnThreadCount() throws IOException {
+        assertEquals(run(1), run(4));
+    }
+
+    @Test
+    public void autopilot_winsOnSmallBoards() {
+        BatchSimulator simulator = new BatchSimulator(new int[] {12},
+                new int[] {BatchSimulator.AUTOPILOT}, new double[] {0.9}, 10,
+                3, 200000);
+        simulator.run(ForkJoinPool.commonPool());
+        assertEquals(10, simulator.outcomeCount(0, BatchSimulator.WON));
+        // 填满墙内10x10：初始6节，吃了94个苹果
+        assertEquals(94, simulator.scoreStats(0).max);
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * ArenaClient: mirrors an ArenaServer's game and predicts the player's own
+ * snake ahead of it.
+ *
+ * The mirror only ever applies the server's deltas, so it is exact but a
+ * round trip behind. The predicted snake moves on every local tick() using
+ * the directions sent but not yet acknowledged, one per tick as the server's
+ * InputQueue applies them. When a delta arrives, the prediction recorded
+ * for that tick is compared with the mirror (head, and which input was
+ * applied); on a mismatch the prediction is rebuilt from the mirror and the
+ * unacknowledged inputs are replayed on top of it.
+ *
+ * Not thread-safe: poll(), tick() and sendDirection() belong to one thread.
+ *
+ */
+// 竞技场客户端：镜像服务器的状态，并提前预测自己的蛇；预测与服务器不符时从镜像重新推算
+public class ArenaClient {
+
+    // 预测和未确认输入的历史长度（2的幂）
+    private static final int HISTORY = 64;
+    private static final int HISTORY_MASK = HISTORY - 1;
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final int WRITE_BUFFER = 1024;
+
+    private final SocketChannel mChannel;
+    private final ByteBuffer mIn = ByteBuffer.allocate(READ_BUFFER);
+    private final ByteBuffer mOut = ByteBuffer.allocate(WRITE_BUFFER);
+
+    // 服务器状态的镜像，收到欢迎消息之前为null
+    private ArenaGame mGame;
+    private int mPlayer = -1;
+    private long mTickMillis;
+
+    // 发出的输入：方向和发送时刻，按序号存放
+    private long mSequence;
+    private long mAcked;
+    private final int[] mSentDirections = new int[HISTORY];
+    private final long[] mSentTimes = new long[HISTORY];
+
+    // 预测的蛇，以及每一步预测的蛇头、用掉的最后一个输入序号
+    private final SnakeBody mPredicted = new SnakeBody();
+    private boolean mPredicting;
+    // 预测的蛇已经撞墙或撞到蛇：停在原地，等服务器的结果
+    private boolean mPredictedDead;
+    private long mPredictedTick;
+    private int mPredictedDirection;
+    private long mConsumed;
+    private final int[] mPredictedHeads = new int[HISTORY];
+    private final long[] mPredictedInputs = new long[HISTORY];
+
+    // 统计：输入到确认的延迟、收到的字节数、增量数和重新推算的次数
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+    private long mBytesReceived;
+    private long mDeltaCount;
+    private long mReconciliations;
+
+    public ArenaClient(InetSocketAddress address) throws IOException {
+        mChannel = SocketChannel.open(address);
+        mChannel.socket().setTcpNoDelay(true);
+        mChannel.configureBlocking(false);
+    }
+
+    // 是否已经收到欢迎消息
+    public boolean isReady() {
+        return mGame != null;
+    }
+
+    // 服务器状态的镜像
+    public ArenaGame getGame() {
+        return mGame;
+    }
+
+    public int getPlayer() {
+        return mPlayer;
+    }
+
+    // 服务器的步长（毫秒），本地tick()应按这个间隔调用
+    public long getTickMillis() {
+        return mTickMillis;
+    }
+
+    /**
+     * Returns the predicted snake, which is ahead of the mirror by the
+     * ticks not yet confirmed; empty while the own snake is dead.
+     */
+    // 预测的自己的蛇
+    public SnakeBody getPredictedSnake() {
+        return mPredicted;
+    }
+
+    // 最后发出的输入序号
+    public long getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * Whether the predicted snake has run into a wall or a snake; it then
+     * stays where it is until the server's delta confirms or corrects it.
+     */
+    public boolean isPredictedDead() {
+        return mPredictedDead;
+    }
+
+    public long getPredictedTick() {
+        return mPredictedTick;
+    }
+
+    // 输入发出到服务器确认的延迟
+    public LatencyHistogram getLatency() {
+        return mLatency;
+    }
+
+    public long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    public long getDeltaCount() {
+        return mDeltaCount;
+    }
+
+    // 平均每个增量的字节数（含欢迎消息）
+    public long getBytesPerDelta() {
+        return mDeltaCount == 0 ? 0 : mBytesReceived / mDeltaCount;
+    }
+
+    public long getReconciliationCount() {
+        return mReconciliations;
+    }
+
+    /**
+     * Reads and applies everything the server sent so far, and sends any
+     * input still pending.
+     *
+     * @return the number of deltas applied
+     */
+    // 读取并应用服务器发来的消息
+    public int poll() throws IOException {
+        flush();
+        int read = mChannel.read(mIn);
+        if (read < 0) {
+            throw new IOException("Arena server closed the connection");
+        }
+        mBytesReceived += read;
+        mIn.flip();
+        int deltas = 0;
+        int length;
+        while ((length = ArenaProtocol.nextFrame(mIn)) >= 0) {
+            int end = mIn.position() + length;
+            int type = mIn.get();
+            if (type == ArenaProtocol.WELCOME) {
+                onWelcome(ArenaProtocol.readWelcome(mIn));
+            } else if (type == ArenaProtocol.DELTA && mGame != null) {
+                onDelta(ArenaProtocol.applyDelta(mIn, mGame));
+                deltas++;
+            }
+            mIn.position(end);
+        }
+        mIn.compact();
+        return deltas;
+    }
+
+    /**
+     * Sends a direction change and lets the prediction use it on its next
+     * tick. Repeats, 180 degree turns and presses beyond the server's input
+     * queue are dropped, as the server would.
+     *
+     * @return true if the direction was sent
+     */
+    // 发送方向并用于预测
+    public boolean sendDirection(int direction) throws IOException {
+        if (mGame == null || !mPredicting
+                || mSequence - mConsumed >= InputQueue.CAPACITY
+                || mSequence - mAcked >= HISTORY) {
+            return false;
+        }
+        int previous = mSequence > mConsumed
+                ? mSentDirections[(int) (mSequence & HISTORY_MASK)]
+                : mPredictedDirection;
+        if (direction == previous || direction == GameEngine.opposite(previous)) {
+            return false;
+        }
+        mSequence++;
+        int index = (int) (mSequence & HISTORY_MASK);
+        mSentDirections[index] = direction;
+        mSentTimes[index] = System.nanoTime();
+        ArenaProtocol.writeInput(mOut, mSequence, direction);
+        flush();
+        return true;
+    }
+
+    /**
+     * Advances the predicted snake by one tick. Call at the server's tick
+     * rate; prediction stops HISTORY ticks ahead of the last delta.
+     */
+    // 预测的蛇前进一步
+    public void tick() {
+        if (mGame == null || !mGame.isAlive(mPlayer)) {
+            return;
+        }
+        if (!mPredicting) {
+            resync();
+        }
+        if (mPredictedTick - mGame.getTick() >= HISTORY - 1) {
+            return;
+        }
+        predictMove();
+    }
+
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    private void onWelcome(ArenaProtocol.Welcome welcome) {
+        mGame = welcome.game;
+        mPlayer = welcome.player;
+        mTickMillis = welcome.tickMillis;
+        mPredicting = false;
+        mPredicted.clear();
+    }
+
+    // 收到一步的增量：记录确认的输入，检查预测
+    private void onDelta(long ack) {
+        mDeltaCount++;
+        if (ack > mAcked && ack <= mSequence) {
+            long now = System.nanoTime();
+            long first = Math.max(mAcked + 1, mSequence - HISTORY + 1);
+            for (long sequence = first; sequence <= ack; sequence++) {
+                mLatency.record(now - mSentTimes[(int) (sequence & HISTORY_MASK)]);
+            }
+            mAcked = ack;
+        }
+        if (!mGame.isAlive(mPlayer)) {
+            // 死了：丢弃预测，服务器也丢弃了排队的输入
+            mPredicting = false;
+            mPredicted.clear();
+            mAcked = mSequence;
+            mConsumed = mSequence;
+            return;
+        }
+        if (!mPredicting) {
+            return;
+        }
+        long tick = mGame.getTick();
+        if (tick > mPredictedTick) {
+            // 预测落后了，直接从镜像开始
+            resync();
+            return;
+        }
+        int index = (int) (tick & HISTORY_MASK);
+        if (mPredictedHeads[index] != mGame.getSnake(mPlayer).head()
+                || mPredictedInputs[index] != mAcked) {
+            reconcile();
+        }
+    }
+
+    // 从镜像重新推算预测：复制服务器的蛇，再重放未确认的输入
+    private void reconcile() {
+        mReconciliations++;
+        long predicted = mPredictedTick;
+        resync();
+        while (mPredictedTick < predicted) {
+            predictMove();
+        }
+    }
+
+    // 预测从镜像的当前状态开始
+    private void resync() {
+        SnakeBody snake = mGame.getSnake(mPlayer);
+        mPredicted.clear();
+        for (int index = 0; index < snake.size(); index++) {
+            mPredicted.addTail(snake.getX(index), snake.getY(index));
+        }
+        mPredictedTick = mGame.getTick();
+        mPredictedDirection = mGame.getDirection(mPlayer);
+        mConsumed = mAcked;
+        mPredicting = true;
+        mPredictedDead = false;
+    }
+
+    // 预测一步：用下一个未用的输入，吃到已知的苹果时变长
+    private void predictMove() {
+        if (mConsumed < mSequence) {
+            mConsumed++;
+            int direction = mSentDirections[(int) (mConsumed & HISTORY_MASK)];
+            if (direction != GameEngine.opposite(mPredictedDirection)) {
+                mPredictedDirection = direction;
+            }
+        }
+        int head = ArenaGame.neighbour(mPredicted.head(), mPredictedDirection);
+        if (!mPredictedDead && isBlocked(head)) {
+            // 撞了：不再移动（蛇头离开墙内后不能再查格子），服务器的增量会确认或纠正
+            mPredictedDead = true;
+        }
+        if (!mPredictedDead) {
+            int x = SnakeBody.unpackX(head);
+            int y = SnakeBody.unpackY(head);
+            mPredicted.pushHead(x, y);
+            if (!mGame.hasApple(x, y)) {
+                mPredicted.removeTail();
+            }
+        }
+        mPredictedTick++;
+        int index = (int) (mPredictedTick & HISTORY_MASK);
+        mPredictedHeads[index] = mPredicted.head();
+        mPredictedInputs[index] = mConsumed;
+    }
+
+    /**
+     * Whether the predicted head would die on the given cell, as the server
+     * decides it: outside the interior, on its own predicted body (tail
+     * included) or on another snake as last mirrored.
+     */
+    // 预测的蛇头进入这一格是否会死
+    private boolean isBlocked(int head) {
+        int x = SnakeBody.unpackX(head);
+        int y = SnakeBody.unpackY(head);
+        if (!mGame.isInterior(x, y)) {
+            return true;
+        }
+        for (int i = 0; i < mPredicted.size(); i++) {
+            if (mPredicted.get(i) == head) {
+                return true;
+            }
+        }
+        if (!mGame.isSnake(x, y)) {
+            return false;
+        }
+        // 镜像中自己的蛇已经过时，以预测的蛇身为准
+        SnakeBody own = mGame.getSnake(mPlayer);
+        for (int i = 0; i < own.size(); i++) {
+            if (own.get(i) == head) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 尽量发送待发的输入
+    private void flush() throws IOException {
+        if (mOut.position() == 0) {
+            return;
+        }
+        mOut.flip();
+        mChannel.write(mOut);
+        mOut.compact();
+    }
+}
@@ -0,0 +1,482 @@
+package com.example.snake;
+
+/**
+ * ArenaGame: several snakes in one garden, the multiplayer counterpart of
+ * GameEngine.
+ *
+ * The rules are GameEngine's, applied to every snake at once each tick: a
+ * head that leaves the walled interior or lands on any snake (tails still
+ * count) dies, as do two heads landing on the same cell; a head landing on an
+ * apple grows the snake, scores a point and brings a new apple. A dead snake
+ * leaves the garden and respawns a few ticks later where there is room.
+ *
+ * On the server step() runs the tick and records what happened (deaths,
+ * moves, spawns, new apples) for the delta snapshot. Clients mirror the game
+ * by applying those same events with killSnake(), moveSnake(), placeSnake()
+ * and addApple(), so both sides share one implementation of the rules.
+ *
+ */
+// 多人竞技场：多条蛇在同一个花园里，规则与GameEngine相同。服务器执行step()，客户端按增量事件重放
+public class ArenaGame {
+
+    // 最多玩家数（玩家编号在增量快照中占5位）
+    public static final int MAX_PLAYERS = 32;
+    // 新生的蛇的长度，以及前方至少留出的空格
+    public static final int INITIAL_LENGTH = 4;
+    private static final int SPAWN_ROOM = 3;
+    // 死后多少步重生
+    public static final int RESPAWN_TICKS = 10;
+    // 花园里的苹果数
+    public static final int APPLES = 3;
+    // 找出生位置的尝试次数
+    private static final int SPAWN_ATTEMPTS = 64;
+
+    private final int mWidth;
+    private final int mHeight;
+
+    // 所有蛇共用的占用表和空闲格子索引
+    private final OccupancyGrid mOccupancy = new OccupancyGrid();
+    private final FreeCellIndex mFreeCells = new FreeCellIndex();
+    private final GameRandom mRandom;
+
+    // 苹果（打包坐标）
+    private int[] mApples = new int[APPLES];
+    private int mAppleCount;
+
+    // 每个玩家：是否加入、是否活着、蛇身、方向、得分、重生的步数
+    private final boolean[] mJoined = new boolean[MAX_PLAYERS];
+    private final boolean[] mAlive = new boolean[MAX_PLAYERS];
+    private final SnakeBody[] mSnakes = new SnakeBody[MAX_PLAYERS];
+    private final int[] mDirection = new int[MAX_PLAYERS];
+    private final int[] mNextDirection = new int[MAX_PLAYERS];
+    private final long[] mScore = new long[MAX_PLAYERS];
+    private final long[] mRespawnTick = new long[MAX_PLAYERS];
+    private final boolean[] mLeaving = new boolean[MAX_PLAYERS];
+
+    private long mTick;
+
+    // 本步的事件：死亡、移动、出生的玩家和新苹果
+    private final int[] mDied = new int[MAX_PLAYERS];
+    private int mDiedCount;
+    private final int[] mMoved = new int[MAX_PLAYERS];
+    private int mMovedCount;
+    private final int[] mSpawned = new int[MAX_PLAYERS];
+    private int mSpawnedCount;
+    private int[] mNewApples = new int[APPLES];
+    private int mNewAppleCount;
+
+    // step()用的临时数组：每条蛇的新蛇头
+    private final int[] mNewHeads = new int[MAX_PLAYERS];
+
+    public ArenaGame(int width, int height, long seed) {
+        mWidth = width;
+        mHeight = height;
+        mRandom = new GameRandom(seed);
+        mOccupancy.resize(width, height);
+        mFreeCells.reset(width, height);
+        for (int i = 0; i < MAX_PLAYERS; i++) {
+            mSnakes[i] = new SnakeBody();
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getTick() {
+        return mTick;
+    }
+
+    public void setTick(long tick) {
+        mTick = tick;
+    }
+
+    /**
+     * Places the initial apples of a new arena.
+     */
+    // 放置初始的苹果
+    public void start() {
+        mNewAppleCount = 0;
+        while (mAppleCount < APPLES && addRandomApple()) {
+        }
+    }
+
+    /**
+     * Adds a player, whose snake appears at the next tick.
+     *
+     * @return the player number, or -1 if the arena is full
+     */
+    // 加入一个玩家，蛇在下一步出现
+    public int join() {
+        for (int player = 0; player < MAX_PLAYERS; player++) {
+            if (!mJoined[player] && !mLeaving[player]) {
+                mJoined[player] = true;
+                mAlive[player] = false;
+                mScore[player] = 0;
+                mRespawnTick[player] = mTick + 1;
+                return player;
+            }
+        }
+        return -1;
+    }
+
+    // 玩家离开，蛇在下一步从花园中消失
+    public void leave(int player) {
+        mLeaving[player] = true;
+    }
+
+    public boolean isJoined(int player) {
+        return mJoined[player];
+    }
+
+    public boolean isAlive(int player) {
+        return mAlive[player];
+    }
+
+    public SnakeBody getSnake(int player) {
+        return mSnakes[player];
+    }
+
+    public int getDirection(int player) {
+        return mDirection[player];
+    }
+
+    public long getScore(int player) {
+        return mScore[player];
+    }
+
+    public int getAppleCount() {
+        return mAppleCount;
+    }
+
+    // 第index个苹果（打包坐标）
+    public int getApple(int index) {
+        return mApples[index];
+    }
+
+    public boolean hasApple(int x, int y) {
+        return mOccupancy.appleCount(x, y) > 0;
+    }
+
+    public boolean isSnake(int x, int y) {
+        return mOccupancy.isSnake(x, y);
+    }
+
+    /**
+     * Sets the direction of the player's next move, unless it would turn the
+     * snake straight back onto itself.
+     *
+     * @return true if the direction was accepted
+     */
+    // 设置玩家下一步的方向：不能180度掉头
+    public boolean setNextDirection(int player, int direction) {
+        if (!mAlive[player]
+                || direction == GameEngine.opposite(mDirection[player])) {
+            return false;
+        }
+        mNextDirection[player] = direction;
+        return true;
+    }
+
+    /**
+     * Runs one tick for every snake (server side). The events are then
+     * available from getDied(), getMoved(), getSpawned() and getNewApple().
+     */
+    // 服务器上前进一步，并记录本步的事件
+    public void step() {
+        mTick++;
+        mDiedCount = 0;
+        mMovedCount = 0;
+        mSpawnedCount = 0;
+        mNewAppleCount = 0;
+
+        // 先算出所有新蛇头，并判断谁会死（蛇尾也算障碍）
+        for (int player = 0; player < MAX_PLAYERS; player++) {
+            if (!mAlive[player]) {
+                continue;
+            }
+            int head = mSnakes[player].head();
+            int next = neighbour(head, mNextDirection[player]);
+            mNewHeads[player] = next;
+            int x = SnakeBody.unpackX(next);
+            int y = SnakeBody.unpackY(next);
+            if (!isInterior(x, y) || mOccupancy.isSnake(x, y)) {
+                mDied[mDiedCount++] = player;
+            }
+        }
+        // 两个以上的蛇头撞到同一格：都死
+        int collided = mDiedCount;
+        for (int a = 0; a < MAX_PLAYERS; a++) {
+            if (!mAlive[a] || isDying(a, collided)) {
+                continue;
+            }
+            for (int b = 0; b < MAX_PLAYERS; b++) {
+                if (b != a && mAlive[b] && mNewHeads[a] == mNewHeads[b]) {
+                    mDied[mDiedCount++] = a;
+                    break;
+                }
+            }
+        }
+        // 离开的玩家也作为死亡发出
+        for (int player = 0; player < MAX_PLAYERS; player++) {
+            if (mLeaving[player]) {
+                mLeaving[player] = false;
+                mJoined[player] = false;
+                if (mAlive[player] && !isDying(player, mDiedCount)) {
+                    mDied[mDiedCount++] = player;
+                }
+            }
+        }
+        for (int i = 0; i < mDiedCount; i++) {
+            killSnake(mDied[i]);
+            mRespawnTick[mDied[i]] = mTick + RESPAWN_TICKS;
+        }
+
+        // 活着的蛇前进，吃到的苹果换成新的
+        int eaten = 0;
+        for (int player = 0; player < MAX_PLAYERS; player++) {
+            if (!mAlive[player]) {
+                continue;
+            }
+            mMoved[mMovedCount++] = player;
+            if (moveSnake(player, mNextDirection[player]) == GameEngine.ATE) {
+                eaten++;
+            }
+        }
+        for (int i = 0; i < eaten; i++) {
+            addRandomApple();
+        }
+
+        // 到时间的玩家重生（没有地方时下一步再试）
+        for (int player = 0; player < MAX_PLAYERS; player++) {
+            if (mJoined[player] && !mAlive[player]
+                    && mTick >= mRespawnTick[player] && spawn(player)) {
+                mSpawned[mSpawnedCount++] = player;
+            }
+        }
+    }
+
+    // 本步死亡的玩家
+    public int getDiedCount() {
+        return mDiedCount;
+    }
+
+    public int getDied(int index) {
+        return mDied[index];
+    }
+
+    // 本步移动的玩家（方向见getDirection）
+    public int getMovedCount() {
+        return mMovedCount;
+    }
+
+    public int getMoved(int index) {
+        return mMoved[index];
+    }
+
+    // 本步出生的玩家
+    public int getSpawnedCount() {
+        return mSpawnedCount;
+    }
+
+    public int getSpawned(int index) {
+        return mSpawned[index];
+    }
+
+    // 本步新生成的苹果（打包坐标）
+    public int getNewAppleCount() {
+        return mNewAppleCount;
+    }
+
+    public int getNewApple(int index) {
+        return mNewApples[index];
+    }
+
+    /**
+     * Moves the player's snake one cell in the given direction, eating the
+     * apple there if any. No collision check and no new apple; used by step()
+     * and to replay a move on a client.
+     *
+     * @return GameEngine.ATE or MOVED
+     */
+    // 蛇前进一格（不检查碰撞，不补苹果）
+    public int moveSnake(int player, int direction) {
+        SnakeBody snake = mSnakes[player];
+        int next = neighbour(snake.head(), direction);
+        int x = SnakeBody.unpackX(next);
+        int y = SnakeBody.unpackY(next);
+        mDirection[player] = direction;
+        mNextDirection[player] = direction;
+        snake.pushHead(x, y);
+        mOccupancy.setSnake(x, y);
+        mFreeCells.remove(x, y);
+        if (mOccupancy.appleCount(x, y) > 0) {
+            mOccupancy.clearApples(x, y);
+            removeApple(next);
+            mScore[player]++;
+            return GameEngine.ATE;
+        }
+        int tail = snake.removeTail();
+        int tailX = SnakeBody.unpackX(tail);
+        int tailY = SnakeBody.unpackY(tail);
+        // 另一条蛇不会在同一步占据这个格子（蛇尾也算障碍）
+        mOccupancy.clearSnake(tailX, tailY);
+        mFreeCells.add(tailX, tailY);
+        return GameEngine.MOVED;
+    }
+
+    // 蛇从花园中消失
+    public void killSnake(int player) {
+        SnakeBody snake = mSnakes[player];
+        for (int index = 0; index < snake.size(); index++) {
+            int x = snake.getX(index);
+            int y = snake.getY(index);
+            mOccupancy.clearSnake(x, y);
+            if (mOccupancy.appleCount(x, y) == 0) {
+                mFreeCells.add(x, y);
+            }
+        }
+        snake.clear();
+        mAlive[player] = false;
+    }
+
+    /**
+     * Puts the player's snake into the garden, e.g. from a snapshot.
+     *
+     * @param cells
+     *            [x1,y1,x2,y2,...], head first
+     */
+    // 按给定的蛇身放置玩家的蛇
+    public void placeSnake(int player, int[] cells, int direction) {
+        if (mAlive[player]) {
+            killSnake(player);
+        }
+        SnakeBody snake = mSnakes[player];
+        snake.fromArray(cells);
+        for (int index = 0; index < snake.size(); index++) {
+            mOccupancy.setSnake(snake.getX(index), snake.getY(index));
+            mFreeCells.remove(snake.getX(index), snake.getY(index));
+        }
+        mJoined[player] = true;
+        mAlive[player] = true;
+        mDirection[player] = direction;
+        mNextDirection[player] = direction;
+    }
+
+    public void setScore(int player, long score) {
+        mScore[player] = score;
+    }
+
+    // 在指定格子放一个苹果
+    public void addApple(int x, int y) {
+        int packed = SnakeBody.pack(x, y);
+        if (mAppleCount == mApples.length) {
+            int[] apples = new int[mApples.length * 2];
+            System.arraycopy(mApples, 0, apples, 0, mAppleCount);
+            mApples = apples;
+        }
+        mApples[mAppleCount++] = packed;
+        mOccupancy.addApple(x, y);
+        mFreeCells.remove(x, y);
+    }
+
+    // 随机放一个苹果，并记为本步的新苹果
+    private boolean addRandomApple() {
+        int cell = mFreeCells.random(mRandom);
+        if (cell < 0) {
+            return false;
+        }
+        addApple(SnakeBody.unpackX(cell), SnakeBody.unpackY(cell));
+        if (mNewAppleCount == mNewApples.length) {
+            int[] apples = new int[mNewApples.length * 2];
+            System.arraycopy(mNewApples, 0, apples, 0, mNewAppleCount);
+            mNewApples = apples;
+        }
+        mNewApples[mNewAppleCount++] = cell;
+        return true;
+    }
+
+    private void removeApple(int packed) {
+        for (int index = 0; index < mAppleCount; index++) {
+            if (mApples[index] == packed) {
+                mApples[index] = mApples[--mAppleCount];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds room for a new snake heading east: INITIAL_LENGTH free cells in a
+     * row plus SPAWN_ROOM free cells ahead of the head.
+     */
+    // 找一个能向东放下新蛇的位置
+    private boolean spawn(int player) {
+        int span = INITIAL_LENGTH + SPAWN_ROOM;
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            int cell = mFreeCells.random(mRandom);
+            if (cell < 0) {
+                return false;
+            }
+            int x = SnakeBody.unpackX(cell);
+            int y = SnakeBody.unpackY(cell);
+            if (x + span > mWidth - 1) {
+                continue;
+            }
+            boolean free = true;
+            for (int i = 0; i < span && free; i++) {
+                free = mFreeCells.isFree(x + i, y);
+            }
+            if (!free) {
+                continue;
+            }
+            int[] cells = new int[INITIAL_LENGTH * 2];
+            for (int i = 0; i < INITIAL_LENGTH; i++) {
+                cells[2 * i] = x + INITIAL_LENGTH - 1 - i;
+                cells[2 * i + 1] = y;
+            }
+            placeSnake(player, cells, GameEngine.EAST);
+            return true;
+        }
+        return false;
+    }
+
+    // 是否在死亡列表的前count个里
+    private boolean isDying(int player, int count) {
+        for (int i = 0; i < count; i++) {
+            if (mDied[i] == player) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 是否在墙内
+    public boolean isInterior(int x, int y) {
+        return x > 0 && y > 0 && x < mWidth - 1 && y < mHeight - 1;
+    }
+
+    // 某个方向上相邻的格子（打包坐标）
+    static int neighbour(int packed, int direction) {
+        int x = SnakeBody.unpackX(packed);
+        int y = SnakeBody.unpackY(packed);
+        switch (direction) {
+            case GameEngine.NORTH:
+                y--;
+                break;
+            case GameEngine.SOUTH:
+                y++;
+                break;
+            case GameEngine.EAST:
+                x++;
+                break;
+            case GameEngine.WEST:
+                x--;
+                break;
+        }
+        return SnakeBody.pack(x, y);
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.snake;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * ArenaProtocol: the messages between an ArenaServer and its clients.
+ *
+ * Every message is framed by its length as a varint. The server sends one
+ * WELCOME with the whole arena when a client connects and then one DELTA per
+ * tick holding only what happened in it: the players that died, a byte per
+ * moving snake (player and direction; tails and growth follow from the
+ * apples the client already knows), new snakes and new apples. Clients send
+ * INPUT messages with a sequence number that the server acknowledges in the
+ * delta of the tick it was applied in.
+ *
+ * Layouts (all numbers unsigned varints unless noted):
+ * <pre>
+ * WELCOME  type, player, tick millis, width, height, tick,
+ *          snake count, { player, direction, score, length, x, y... },
+ *          apple count, { x, y }
+ * DELTA    type, tick, last input sequence applied,
+ *          died count, { player byte },
+ *          moved count, { player &lt;&lt; 3 | direction byte },
+ *          spawned count, { player, direction, length, x, y... },
+ *          new apple count, { x, y }
+ * INPUT    type, sequence, direction
+ * </pre>
+ *
+ */
+// 竞技场协议：欢迎消息发送完整状态，之后每步只发送增量（死亡、每条蛇一个字节的移动、出生和新苹果）
+public class ArenaProtocol {
+
+    // 消息类型
+    public static final int WELCOME = 1;
+    public static final int DELTA = 2;
+    public static final int INPUT = 3;
+
+    // 长度前缀最多的字节数
+    private static final int MAX_LENGTH_BYTES = 5;
+
+    /**
+     * What a client learns from the WELCOME message.
+     */
+    // 欢迎消息的内容
+    public static class Welcome {
+        public int player;
+        public long tickMillis;
+        public ArenaGame game;
+    }
+
+    private ArenaProtocol() {
+    }
+
+    /**
+     * Turns what was written since beginFrame() into a frame: moves the
+     * payload down to right after its length.
+     *
+     * @param frameStart
+     *            the value returned by beginFrame()
+     */
+    // 在消息内容前面写上长度
+    static void endFrame(ByteBuffer out, int frameStart) {
+        int start = frameStart + MAX_LENGTH_BYTES;
+        int length = out.position() - start;
+        int prefix = varintSize(length);
+        int dest = frameStart + prefix;
+        // 把内容前移到长度前缀之后
+        for (int i = 0; i < length; i++) {
+            out.put(dest + i, out.get(start + i));
+        }
+        out.position(frameStart);
+        writeVarint(out, length);
+        out.position(dest + length);
+    }
+
+    // 开始一帧：留出长度前缀的位置
+    static int beginFrame(ByteBuffer out) {
+        int frameStart = out.position();
+        out.position(frameStart + MAX_LENGTH_BYTES);
+        return frameStart;
+    }
+
+    /**
+     * Finds the next complete frame in the buffer (read mode).
+     *
+     * @return the payload length with the position at the payload, or -1 with
+     *         the position unchanged if the frame is not complete yet
+     */
+    // 读出下一帧的长度；不完整时返回-1
+    public static int nextFrame(ByteBuffer in) {
+        int start = in.position();
+        long length = 0;
+        for (int shift = 0; shift < 7 * MAX_LENGTH_BYTES; shift += 7) {
+            if (!in.hasRemaining()) {
+                in.position(start);
+                return -1;
+            }
+            int b = in.get();
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (in.remaining() < length) {
+                    in.position(start);
+                    return -1;
+                }
+                return (int) length;
+            }
+        }
+        throw new IllegalArgumentException("Bad frame length");
+    }
+
+    /**
+     * Writes the whole arena for a newly connected player.
+     */
+    // 欢迎消息：完整的竞技场状态
+    public static void writeWelcome(ByteBuffer out, ArenaGame game, int player,
+            long tickMillis) {
+        int frame = beginFrame(out);
+        out.put((byte) WELCOME);
+        writeVarint(out, player);
+        writeVarint(out, tickMillis);
+        writeVarint(out, game.getWidth());
+        writeVarint(out, game.getHeight());
+        writeVarint(out, game.getTick());
+        int snakes = 0;
+        for (int p = 0; p < ArenaGame.MAX_PLAYERS; p++) {
+            if (game.isAlive(p)) {
+                snakes++;
+            }
+        }
+        writeVarint(out, snakes);
+        for (int p = 0; p < ArenaGame.MAX_PLAYERS; p++) {
+            if (game.isAlive(p)) {
+                writeVarint(out, p);
+                writeVarint(out, game.getDirection(p));
+                writeVarint(out, game.getScore(p));
+                writeSnake(out, game.getSnake(p));
+            }
+        }
+        writeVarint(out, game.getAppleCount());
+        for (int i = 0; i < game.getAppleCount(); i++) {
+            writeCell(out, game.getApple(i));
+        }
+        endFrame(out, frame);
+    }
+
+    /**
+     * Reads a WELCOME payload into a new mirror of the arena.
+     */
+    // 读取欢迎消息，建立竞技场的镜像
+    public static Welcome readWelcome(ByteBuffer in) {
+        try {
+            Welcome welcome = new Welcome();
+            welcome.player = (int) readVarint(in);
+            welcome.tickMillis = readVarint(in);
+            int width = (int) readVarint(in);
+            int height = (int) readVarint(in);
+            ArenaGame game = new ArenaGame(width, height, 0);
+            game.setTick(readVarint(in));
+            int snakes = (int) readVarint(in);
+            for (int i = 0; i < snakes; i++) {
+                int player = checkPlayer(readVarint(in));
+                int direction = (int) readVarint(in);
+                long score = readVarint(in);
+                game.placeSnake(player, readSnake(in), direction);
+                game.setScore(player, score);
+            }
+            int apples = (int) readVarint(in);
+            for (int i = 0; i < apples; i++) {
+                game.addApple((int) readVarint(in), (int) readVarint(in));
+            }
+            welcome.game = game;
+            return welcome;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated welcome", e);
+        }
+    }
+
+    /**
+     * Writes what happened in the arena's last step(): everything after the
+     * acknowledged sequence number, which differs per client. The same body
+     * is sent to every client.
+     */
+    // 增量消息的主体（所有客户端相同）
+    public static void writeDeltaBody(ByteBuffer out, ArenaGame game) {
+        writeVarint(out, game.getDiedCount());
+        for (int i = 0; i < game.getDiedCount(); i++) {
+            out.put((byte) game.getDied(i));
+        }
+        writeVarint(out, game.getMovedCount());
+        for (int i = 0; i < game.getMovedCount(); i++) {
+            int player = game.getMoved(i);
+            out.put((byte) (player << 3 | game.getDirection(player)));
+        }
+        writeVarint(out, game.getSpawnedCount());
+        for (int i = 0; i < game.getSpawnedCount(); i++) {
+            int player = game.getSpawned(i);
+            writeVarint(out, player);
+            writeVarint(out, game.getDirection(player));
+            writeSnake(out, game.getSnake(player));
+        }
+        writeVarint(out, game.getNewAppleCount());
+        for (int i = 0; i < game.getNewAppleCount(); i++) {
+            writeCell(out, game.getNewApple(i));
+        }
+    }
+
+    /**
+     * Writes a whole DELTA frame for one client.
+     *
+     * @param body
+     *            the output of writeDeltaBody, in read mode; not consumed
+     */
+    // 给一个客户端写出完整的增量消息
+    public static void writeDelta(ByteBuffer out, long tick, long ack,
+            ByteBuffer body) {
+        int frame = beginFrame(out);
+        out.put((byte) DELTA);
+        writeVarint(out, tick);
+        writeVarint(out, ack);
+        out.put(body.duplicate());
+        endFrame(out, frame);
+    }
+
+    /**
+     * Applies a DELTA payload (after its type) to the client's mirror: deaths
+     * first, then moves, new snakes and new apples, the order step() used.
+     *
+     * @return the last input sequence the server applied
+     */
+    // 把增量应用到客户端的镜像上
+    public static long applyDelta(ByteBuffer in, ArenaGame game) {
+        try {
+            game.setTick(readVarint(in));
+            long ack = readVarint(in);
+            int died = (int) readVarint(in);
+            for (int i = 0; i < died; i++) {
+                game.killSnake(checkPlayer(in.get()));
+            }
+            int moved = (int) readVarint(in);
+            for (int i = 0; i < moved; i++) {
+                int b = in.get() & 0xFF;
+                game.moveSnake(checkPlayer(b >> 3), b & 7);
+            }
+            int spawned = (int) readVarint(in);
+            for (int i = 0; i < spawned; i++) {
+                int player = checkPlayer(readVarint(in));
+                int direction = (int) readVarint(in);
+                game.placeSnake(player, readSnake(in), direction);
+            }
+            int apples = (int) readVarint(in);
+            for (int i = 0; i < apples; i++) {
+                game.addApple((int) readVarint(in), (int) readVarint(in));
+            }
+            return ack;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated delta", e);
+        }
+    }
+
+    // 客户端输入：序号和方向
+    public static void writeInput(ByteBuffer out, long sequence, int direction) {
+        int frame = beginFrame(out);
+        out.put((byte) INPUT);
+        writeVarint(out, sequence);
+        writeVarint(out, direction);
+        endFrame(out, frame);
+    }
+
+    // 蛇身：长度和每节的坐标
+    private static void writeSnake(ByteBuffer out, SnakeBody snake) {
+        writeVarint(out, snake.size());
+        for (int index = 0; index < snake.size(); index++) {
+            writeCell(out, snake.get(index));
+        }
+    }
+
+    private static int[] readSnake(ByteBuffer in) {
+        int length = (int) readVarint(in);
+        if (length <= 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Bad snake length " + length);
+        }
+        int[] cells = new int[length * 2];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (int) readVarint(in);
+        }
+        return cells;
+    }
+
+    private static void writeCell(ByteBuffer out, int packed) {
+        writeVarint(out, SnakeBody.unpackX(packed));
+        writeVarint(out, SnakeBody.unpackY(packed));
+    }
+
+    private static int checkPlayer(long player) {
+        if (player < 0 || player >= ArenaGame.MAX_PLAYERS) {
+            throw new IllegalArgumentException("Bad player " + player);
+        }
+        return (int) player;
+    }
+
+    // 无符号变长整数：每字节7位，低位在前
+    public static void writeVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Bad varint");
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * ArenaServer: runs the authoritative ArenaGame and replicates it to its
+ * clients over non-blocking sockets.
+ *
+ * One selector handles accepting, reading and writing. Each client gets a
+ * WELCOME with the whole arena and then, every tick, a DELTA with what
+ * changed (see ArenaProtocol); the body of the delta is encoded once per
+ * tick and shared by all clients. Inputs go through a per-client InputQueue,
+ * as on the device, with their sequence number taking the place of the time
+ * so that the delta can acknowledge the last one applied. A client that
+ * stops reading is dropped once its output backlog is full, instead of
+ * buffering without limit.
+ *
+ * Either drive it with poll() and tick() (e.g. from a test) or call start()
+ * to run it on its own thread at a fixed tick. If the selector fails, that
+ * thread stops and keeps the exception for getError(), so a dead server can
+ * be told apart from a quiet one.
+ *
+ */
+// 竞技场服务器：权威的游戏循环，每步通过非阻塞NIO给每个客户端发送增量快照
+public class ArenaServer implements Runnable {
+
+    // 每个客户端的输出积压上限，超过时断开
+    private static final int MAX_BACKLOG = 64 * 1024;
+    private static final int READ_BUFFER = 4 * 1024;
+
+    private final ArenaGame mGame;
+    private final long mTickMillis;
+    private final Selector mSelector;
+    private final ServerSocketChannel mServer;
+    private final Connection[] mConnections = new Connection[ArenaGame.MAX_PLAYERS];
+
+    // 本步增量的主体，所有客户端共用
+    private final ByteBuffer mBody = ByteBuffer.allocate(MAX_BACKLOG);
+
+    // 统计：步数、发送的字节数、上一步发送的字节数和收到增量的客户端数
+    private volatile long mTickCount;
+    private volatile long mBytesSent;
+    private volatile int mLastTickBytes;
+    private volatile int mLastTickClients;
+    private int mDropped;
+
+    private Thread mThread;
+    private volatile boolean mRunning;
+    // 让服务器线程停止的错误，没有时为null
+    private volatile IOException mError;
+
+    /**
+     * One connected client.
+     */
+    // 一个客户端连接
+    private static class Connection {
+        final SocketChannel channel;
+        final int player;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER);
+        final ByteBuffer out = ByteBuffer.allocate(MAX_BACKLOG);
+        final InputQueue inputs = new InputQueue();
+        // 收到的和已经应用的最后一个输入序号
+        long received;
+        long ack;
+
+        Connection(SocketChannel channel, int player) {
+            this.channel = channel;
+            this.player = player;
+        }
+    }
+
+    /**
+     * Opens the server socket.
+     *
+     * @param address
+     *            where to listen; port 0 picks a free port (see getPort())
+     */
+    public ArenaServer(ArenaGame game, long tickMillis, InetSocketAddress address)
+            throws IOException {
+        mGame = game;
+        mTickMillis = tickMillis;
+        mSelector = Selector.open();
+        mServer = ServerSocketChannel.open();
+        mServer.configureBlocking(false);
+        mServer.socket().bind(address);
+        mServer.register(mSelector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return mServer.socket().getLocalPort();
+    }
+
+    public ArenaGame getGame() {
+        return mGame;
+    }
+
+    public long getTickCount() {
+        return mTickCount;
+    }
+
+    // 一共发送的字节数
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    // 上一步发给所有客户端的字节数
+    public int getLastTickBytes() {
+        return mLastTickBytes;
+    }
+
+    // 上一步平均每个客户端的字节数
+    public int getLastTickBytesPerClient() {
+        int clients = mLastTickClients;
+        return clients == 0 ? 0 : mLastTickBytes / clients;
+    }
+
+    // 服务器线程是否在运行（出错停止后为false）
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    // 让服务器线程停止的错误，没有时为null
+    public IOException getError() {
+        return mError;
+    }
+
+    // 断开的客户端数（关闭连接、积压过多或消息错误）
+    public int getDroppedCount() {
+        return mDropped;
+    }
+
+    // 从玩家收到的最后一个输入序号（测试用）
+    long getReceivedSequence(int player) {
+        Connection connection = mConnections[player];
+        return connection == null ? -1 : connection.received;
+    }
+
+    public int getClientCount() {
+        int count = 0;
+        for (Connection connection : mConnections) {
+            if (connection != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Accepts new clients, reads their inputs and flushes pending output.
+     *
+     * @param timeoutMillis
+     *            how long to wait for network events; 0 does not wait
+     */
+    // 处理网络事件：接受连接、读取输入、继续发送积压的数据
+    public void poll(long timeoutMillis) throws IOException {
+        if (timeoutMillis > 0) {
+            mSelector.select(timeoutMillis);
+        } else {
+            mSelector.selectNow();
+        }
+        Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(connection);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush(connection);
+                }
+            } catch (IOException e) {
+                drop(connection);
+            }
+        }
+    }
+
+    /**
+     * Applies one queued input per client, steps the game and sends every
+     * client the delta.
+     */
+    // 执行一步并发送增量
+    public void tick() {
+        for (Connection connection : mConnections) {
+            if (connection == null) {
+                continue;
+            }
+            int direction = connection.inputs.poll();
+            if (direction != InputQueue.NONE) {
+                mGame.setNextDirection(connection.player, direction);
+                connection.ack = connection.inputs.getPolledTime();
+            }
+        }
+        mGame.step();
+
+        mBody.clear();
+        ArenaProtocol.writeDeltaBody(mBody, mGame);
+        mBody.flip();
+        int bytes = 0;
+        int clients = 0;
+        for (Connection connection : mConnections) {
+            if (connection == null) {
+                continue;
+            }
+            // 死了的蛇，排队的方向作废
+            if (!mGame.isAlive(connection.player)) {
+                connection.inputs.clear();
+            }
+            ByteBuffer out = connection.out;
+            int before = out.position();
+            try {
+                ArenaProtocol.writeDelta(out, mGame.getTick(), connection.ack,
+                        mBody);
+                bytes += out.position() - before;
+                clients++;
+                flush(connection);
+            } catch (BufferOverflowException e) {
+                // 客户端跟不上
+                drop(connection);
+            } catch (IOException e) {
+                drop(connection);
+            }
+        }
+        mLastTickBytes = bytes;
+        mLastTickClients = clients;
+        mBytesSent += bytes;
+        mTickCount++;
+    }
+
+    /**
+     * Runs the server on its own thread, ticking every tickMillis.
+     */
+    // 在独立线程上按固定步长运行
+    public void start() {
+        mError = null;
+        mRunning = true;
+        mThread = new Thread(this, "SnakeArena");
+        mThread.start();
+    }
+
+    @Override
+    public void run() {
+        long tickNanos = mTickMillis * 1000000L;
+        long next = System.nanoTime() + tickNanos;
+        try {
+            while (mRunning) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    poll(Math.max(1, wait / 1000000L));
+                    continue;
+                }
+                tick();
+                next += tickNanos;
+                // 落后一步以上时不追赶
+                long now = System.nanoTime();
+                if (now - next > tickNanos) {
+                    next = now + tickNanos;
+                }
+            }
+        } catch (IOException e) {
+            // 保存错误，调用者据此区分服务器已停止和没有消息
+            mError = e;
+            mRunning = false;
+        }
+    }
+
+    /**
+     * Stops the thread if started and closes all sockets.
+     */
+    // 停止并关闭所有连接
+    public void close() throws IOException {
+        if (mThread != null) {
+            mRunning = false;
+            mSelector.wakeup();
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+        for (Connection connection : mConnections) {
+            if (connection != null) {
+                connection.channel.close();
+            }
+        }
+        mServer.close();
+        mSelector.close();
+    }
+
+    // 接受新连接：加入游戏并发送欢迎消息
+    private void accept() throws IOException {
+        SocketChannel channel = mServer.accept();
+        if (channel == null) {
+            return;
+        }
+        int player = mGame.join();
+        if (player < 0) {
+            // 竞技场已满
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel, player);
+        mConnections[player] = connection;
+        channel.register(mSelector, SelectionKey.OP_READ, connection);
+        try {
+            ArenaProtocol.writeWelcome(connection.out, mGame, player, mTickMillis);
+            flush(connection);
+        } catch (BufferOverflowException e) {
+            drop(connection);
+        } catch (IOException e) {
+            drop(connection);
+        }
+    }
+
+    // 读取并处理完整的输入消息
+    private void read(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        if (connection.channel.read(in) < 0) {
+            drop(connection);
+            return;
+        }
+        in.flip();
+        try {
+            int length;
+            while ((length = ArenaProtocol.nextFrame(in)) >= 0) {
+                int end = in.position() + length;
+                if (in.get() == ArenaProtocol.INPUT) {
+                    long sequence = ArenaProtocol.readVarint(in);
+                    int direction = (int) ArenaProtocol.readVarint(in);
+                    onInput(connection, sequence, direction);
+                }
+                in.position(end);
+            }
+        } catch (IllegalArgumentException e) {
+            drop(connection);
+            return;
+        } catch (BufferUnderflowException e) {
+            drop(connection);
+            return;
+        }
+        in.compact();
+        // 缓冲区满了还没有完整的消息
+        if (!in.hasRemaining()) {
+            drop(connection);
+        }
+    }
+
+    // 输入排队；丢弃的输入在队列为空时直接确认
+    private void onInput(Connection connection, long sequence, int direction) {
+        if (direction < GameEngine.NORTH || direction > GameEngine.WEST) {
+            throw new IllegalArgumentException("Bad direction " + direction);
+        }
+        connection.received = sequence;
+        if (!connection.inputs.offer(direction, sequence,
+                mGame.getDirection(connection.player))
+                && connection.inputs.size() == 0) {
+            connection.ack = sequence;
+        }
+    }
+
+    // 尽量发送积压的数据，发不完时等待可写
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        boolean pending = out.hasRemaining();
+        out.compact();
+        SelectionKey key = connection.channel.keyFor(mSelector);
+        if (key != null && key.isValid()) {
+            key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_READ);
+        }
+    }
+
+    // 断开客户端，蛇在下一步离开
+    private void drop(Connection connection) {
+        if (mConnections[connection.player] != connection) {
+            return;
+        }
+        mConnections[connection.player] = null;
+        mGame.leave(connection.player);
+        mDropped++;
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.example.snake;
+
+import java.util.Arrays;
+
+/**
+ * Autopilot: picks the snake's next direction in place of the player.
+ *
+ * It takes the shortest path (BFS) to the nearest apple, as long as that is
+ * safe. When the garden has a Hamiltonian cycle (one interior side even) the
+ * snake keeps its body in cycle order: a BFS step is taken only if it jumps
+ * ahead along the cycle without getting too close to the tail, otherwise it
+ * follows the cycle, which can never trap it. With both sides odd there is no
+ * such cycle; instead the cycle skips the top-left corner, which shares its
+ * position on the cycle with the cell it can stand in for, so an apple there
+ * is still eaten on the way round. Without a cycle, a path is taken only if
+ * after eating the apple the snake could still reach its own tail; failing
+ * that it chases its tail or moves into the roomiest neighbour.
+ *
+ * On large boards a BFS per tick is too expensive, so only neighbours are
+ * considered as shortcuts along the cycle; once the snake fills half the
+ * garden it follows the cycle exactly.
+ *
+ * The searches are time-aware: a body segment blocks a cell only until the
+ * tail has moved past it. All working arrays are allocated once per board
+ * size and reused, using generation stamps instead of clearing, so a
+ * decision allocates nothing.
+ *
+ */
+// 自动驾驶：BFS找最近的苹果并检查吃完后能否到达蛇尾，大棋盘或蛇很长时沿哈密顿环走。决策不分配对象
+public class Autopilot {
+
+    // 墙内格子数超过这个值时不再每步BFS，只在相邻格子里找近路
+    public static final int LARGE_BOARD = 64 * 64;
+    // 蛇长超过墙内格子的这个百分比后严格沿环走，不再抄近路
+    private static final int CYCLE_FILL_PERCENT = 50;
+    // 抄近路时与蛇尾至少保留的距离
+    private static final int SHORTCUT_MARGIN = 4;
+
+    // 搜索目标：最近的苹果，或统计可到达的格子数
+    private static final int APPLE = -2;
+    private static final int FLOOD = -3;
+
+    private int mWidth;
+    private int mHeight;
+    // 墙
+    private boolean[] mWall;
+
+    // BFS：队列、父格子和步数，mSeen[cell] == mSearch 表示本次已访问
+    private int[] mQueue;
+    private int[] mParent;
+    private int[] mDist;
+    private int[] mSeen;
+    private int mSearch;
+
+    // 蛇身：mBodyStamp[cell] == mBodyMark 时，mBodyIndex[cell]是第几节（0是蛇头）
+    private int[] mBodyStamp;
+    private int[] mBodyIndex;
+    private int mBodyMark;
+    private int mBodySize;
+
+    // 蛇头，以及掉头方向上的格子（引擎不允许180度掉头，即使那里是空的）
+    private int mHead;
+    private int mBackCell;
+
+    // 吃到苹果后的虚拟蛇身（安全检查用）
+    private int[] mVirtual;
+
+    // 哈密顿环：格子在环上的序号，没有环时为null
+    private int[] mCycleIndex;
+    private int[] mCycleCells;
+    private int mInterior;
+    // 两边都是奇数时环跳过的角落格子（与环上第0个格子可以互换），没有时为-1
+    private int mSpare = -1;
+
+    /**
+     * Chooses the direction for the engine's next tick.
+     *
+     * @return GameEngine.NORTH, SOUTH, EAST or WEST
+     */
+    // 选择下一步的方向
+    public int chooseDirection(GameEngine engine) {
+        ensureSize(engine.getWidth(), engine.getHeight());
+        SnakeBody snake = engine.getSnake();
+        markBody(snake);
+        int head = cellOf(snake.head());
+        mHead = head;
+        mBackCell = neighbourTowards(head,
+                GameEngine.opposite(engine.getDirection()));
+
+        int direction = 0;
+        if (mCycleIndex != null) {
+            direction = cycleDirection(engine, snake, head);
+        }
+        if (direction == 0) {
+            direction = appleDirection(engine, snake, head);
+        }
+        if (direction == 0) {
+            direction = tailDirection(snake, head);
+        }
+        if (direction == 0) {
+            direction = roomiestDirection(head);
+        }
+        return direction != 0 ? direction : engine.getDirection();
+    }
+
+    // 棋盘大小改变时重新分配数组（只有这里分配）
+    private void ensureSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+        int cells = width * height;
+        mWall = new boolean[cells];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                mWall[y * width + x] = x == 0 || y == 0 || x == width - 1
+                        || y == height - 1;
+            }
+        }
+        mQueue = new int[cells];
+        mParent = new int[cells];
+        mDist = new int[cells];
+        mSeen = new int[cells];
+        mSearch = 0;
+        mBodyStamp = new int[cells];
+        mBodyIndex = new int[cells];
+        mBodyMark = 0;
+        mVirtual = new int[cells + 1];
+        buildCycle();
+    }
+
+    private int cellOf(int packed) {
+        return SnakeBody.unpackY(packed) * mWidth + SnakeBody.unpackX(packed);
+    }
+
+    // 标记蛇身每一节所在的格子
+    private void markBody(SnakeBody snake) {
+        mBodyMark++;
+        mBodySize = snake.size();
+        for (int i = 0; i < mBodySize; i++) {
+            int cell = cellOf(snake.get(i));
+            mBodyStamp[cell] = mBodyMark;
+            mBodyIndex[cell] = i;
+        }
+    }
+
+    // 用虚拟蛇身重新标记
+    private void markVirtual(int size) {
+        mBodyMark++;
+        mBodySize = size;
+        for (int i = size - 1; i >= 0; i--) {
+            mBodyStamp[mVirtual[i]] = mBodyMark;
+            mBodyIndex[mVirtual[i]] = i;
+        }
+    }
+
+    /**
+     * Whether the cell can be entered on the given move (1 = next tick). A
+     * segment leaves its cell once the tail has passed it; the engine still
+     * counts the tail on the tick it moves, hence the strict comparison.
+     */
+    // 蛇头下一步能否进入相邻格子
+    private boolean canEnter(int cell) {
+        return cell != mBackCell && isFreeAt(cell, 1);
+    }
+
+    // 第move步时该格子是否可以进入
+    private boolean isFreeAt(int cell, int move) {
+        if (mWall[cell]) {
+            return false;
+        }
+        return mBodyStamp[cell] != mBodyMark
+                || move > mBodySize - mBodyIndex[cell];
+    }
+
+    /**
+     * Breadth-first search from start. Stops at the target cell, or at the
+     * first apple for APPLE, and returns it, or -1 if unreachable. For FLOOD
+     * it visits every reachable cell and returns how many there are.
+     */
+    // 广度优先搜索：找到目标格子就返回；target为FLOOD时返回可到达的格子数
+    private int search(GameEngine engine, int start, int target) {
+        if (++mSearch == 0) {
+            Arrays.fill(mSeen, 0);
+            mSearch = 1;
+        }
+        int head = 0;
+        int tail = 0;
+        mQueue[tail++] = start;
+        mSeen[start] = mSearch;
+        mDist[start] = 0;
+        mParent[start] = -1;
+        while (head < tail) {
+            int cell = mQueue[head++];
+            int move = mDist[cell] + 1;
+            for (int k = 0; k < 4; k++) {
+                int next = neighbour(cell, k);
+                if (mSeen[next] == mSearch || !isFreeAt(next, move)
+                        || (cell == mHead && next == mBackCell)) {
+                    continue;
+                }
+                mSeen[next] = mSearch;
+                mDist[next] = move;
+                mParent[next] = cell;
+                if (next == target || (target == APPLE && engine.hasApple(
+                        next % mWidth, next / mWidth))) {
+                    return next;
+                }
+                mQueue[tail++] = next;
+            }
+        }
+        return target == FLOOD ? tail : -1;
+    }
+
+    // 第k个相邻格子：北、东、南、西（墙保证不会越界）
+    private int neighbour(int cell, int k) {
+        switch (k) {
+            case 0:
+                return cell - mWidth;
+            case 1:
+                return cell + 1;
+            case 2:
+                return cell + mWidth;
+            default:
+                return cell - 1;
+        }
+    }
+
+    // 朝某个方向的相邻格子
+    private int neighbourTowards(int cell, int direction) {
+        switch (direction) {
+            case GameEngine.NORTH:
+                return cell - mWidth;
+            case GameEngine.SOUTH:
+                return cell + mWidth;
+            case GameEngine.EAST:
+                return cell + 1;
+            default:
+                return cell - 1;
+        }
+    }
+
+    // 从from走到相邻格子to的方向
+    private int directionTo(int from, int to) {
+        if (to == from - mWidth) {
+            return GameEngine.NORTH;
+        } else if (to == from + mWidth) {
+            return GameEngine.SOUTH;
+        } else if (to == from + 1) {
+            return GameEngine.EAST;
+        }
+        return GameEngine.WEST;
+    }
+
+    // 沿搜索树回溯到蛇头后的第一个格子
+    private int firstCell(int head, int target) {
+        int cell = target;
+        while (mParent[cell] != head) {
+            cell = mParent[cell];
+        }
+        return cell;
+    }
+
+    private int firstStep(int head, int target) {
+        return directionTo(head, firstCell(head, target));
+    }
+
+    // 去最近的苹果，前提是吃完之后还能到达蛇尾
+    private int appleDirection(GameEngine engine, SnakeBody snake, int head) {
+        int apple = search(engine, head, APPLE);
+        if (apple < 0) {
+            return 0;
+        }
+        int direction = firstStep(head, apple);
+
+        // 吃完苹果后的蛇身：路径（倒序）接上原来的蛇身，长度加一
+        int size = Math.min(mBodySize + 1, mVirtual.length);
+        int n = 0;
+        for (int cell = apple; cell != head && n < size; cell = mParent[cell]) {
+            mVirtual[n++] = cell;
+        }
+        for (int i = 0; n < size; i++) {
+            mVirtual[n++] = cellOf(snake.get(i));
+        }
+        int tail = mVirtual[size - 1];
+        markVirtual(size);
+        boolean safe = search(null, mVirtual[0], tail) >= 0;
+        markBody(snake);
+        return safe ? direction : 0;
+    }
+
+    // 追着蛇尾走
+    private int tailDirection(SnakeBody snake, int head) {
+        int tail = cellOf(snake.tail());
+        if (tail == head) {
+            return 0;
+        }
+        int found = search(null, head, tail);
+        return found >= 0 ? firstStep(head, found) : 0;
+    }
+
+    // 走向可到达空间最大的相邻格子
+    private int roomiestDirection(int head) {
+        int best = 0;
+        int bestRoom = -1;
+        for (int k = 0; k < 4; k++) {
+            int next = neighbour(head, k);
+            if (!canEnter(next)) {
+                continue;
+            }
+            int room = search(null, next, FLOOD);
+            if (room > bestRoom) {
+                bestRoom = room;
+                best = directionTo(head, next);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Follows the Hamiltonian cycle. While the snake is short it may jump
+     * ahead along the cycle, towards an apple but never past it, as long as
+     * the head stays SHORTCUT_MARGIN cells behind the tail. The body then
+     * stays in cycle order, so the cycle always leads back to the tail.
+     *
+     * @return the direction, or 0 if the next cell on the cycle is blocked
+     *         (the body is not in cycle order yet)
+     */
+    // 沿哈密顿环走，蛇短时可以抄近路
+    private int cycleDirection(GameEngine engine, SnakeBody snake, int head) {
+        int headIndex = mCycleIndex[head];
+        if (mBodySize * 100 < mInterior * CYCLE_FILL_PERCENT) {
+            int tailDistance = cycleDistance(headIndex,
+                    mCycleIndex[cellOf(snake.tail())]);
+            if (tailDistance == 0) {
+                tailDistance = mCycleCells.length;
+            }
+            // 前进的步数必须小于limit
+            int limit = tailDistance - SHORTCUT_MARGIN;
+
+            // 不能越过任何一个苹果（否则两个苹果之间可能来回绕圈）
+            int appleDistance = mCycleCells.length;
+            for (int i = 0; i < engine.getAppleCount(); i++) {
+                appleDistance = Math.min(appleDistance, cycleDistance(headIndex,
+                        mCycleIndex[cellOf(engine.getApple(i))]));
+            }
+            limit = Math.min(limit, appleDistance + 1);
+
+            // 棋盘不大时按BFS的最短路走
+            if (mInterior <= LARGE_BOARD) {
+                int apple = search(engine, head, APPLE);
+                if (apple >= 0) {
+                    int next = firstCell(head, apple);
+                    int d = cycleDistance(headIndex, mCycleIndex[next]);
+                    if (d > 0 && d < limit) {
+                        return directionTo(head, next);
+                    }
+                }
+            }
+
+            // 否则在相邻格子中选沿环最远的一个
+            int best = 0;
+            int bestDistance = 1;
+            for (int k = 0; k < 4; k++) {
+                int next = neighbour(head, k);
+                if (!canEnter(next)) {
+                    continue;
+                }
+                int d = cycleDistance(headIndex, mCycleIndex[next]);
+                if (d > bestDistance && d < limit) {
+                    bestDistance = d;
+                    best = directionTo(head, next);
+                }
+            }
+            if (best != 0) {
+                return best;
+            }
+        }
+
+        // 环上的下一个格子
+        int next = mCycleCells[(headIndex + 1) % mCycleCells.length];
+        if (mSpare >= 0 && next == mCycleCells[0]) {
+            next = spareOrFirst(engine, next);
+        }
+        return canEnter(next) ? directionTo(head, next) : 0;
+    }
+
+    /**
+     * Chooses between the cycle's first cell and the spare corner, which can
+     * take its place: the one with an apple, else the first one that can be
+     * entered.
+     */
+    // 在环上第0个格子和角落格子之间选一个：有苹果的优先，其次能进入的
+    private int spareOrFirst(GameEngine engine, int first) {
+        if (engine.hasApple(mSpare % mWidth, mSpare / mWidth)
+                && canEnter(mSpare)) {
+            return mSpare;
+        }
+        return canEnter(first) ? first : mSpare;
+    }
+
+    // 沿环从from走到to的步数
+    private int cycleDistance(int from, int to) {
+        int d = to - from;
+        return d < 0 ? d + mCycleCells.length : d;
+    }
+
+    /**
+     * Builds a Hamiltonian cycle through the garden's interior: a serpentine
+     * over all but the first column (or row), which then leads back to the
+     * start. With both interior sides odd the cycle skips the top-left corner
+     * (mSpare): the first two columns are covered as a ladder from the second
+     * row down, the rest as a serpentine, and the first row leads back. The
+     * corner touches the cycle's last and second cells, so it gets the same
+     * index as the first one.
+     */
+    // 构造哈密顿环（墙内宽和高都是奇数时跳过左上角）
+    private void buildCycle() {
+        int w = mWidth - 2;
+        int h = mHeight - 2;
+        mInterior = Math.max(w, 0) * Math.max(h, 0);
+        mCycleIndex = null;
+        mCycleCells = null;
+        mSpare = -1;
+        boolean rows = h % 2 == 0 && w >= 2 && h >= 2;
+        boolean columns = w % 2 == 0 && w >= 2 && h >= 2;
+        boolean spare = !rows && !columns && w >= 3 && h >= 3;
+        if (!rows && !columns && !spare) {
+            return;
+        }
+        int[] cells = new int[spare ? mInterior - 1 : mInterior];
+        int n = 0;
+        if (spare) {
+            // 前两列：从第2行起每行两格，来回走梯子
+            for (int y = 2; y <= h; y++) {
+                int first = y % 2 == 0 ? 2 : 1;
+                cells[n++] = y * mWidth + first;
+                cells[n++] = y * mWidth + 3 - first;
+            }
+            // 其余的列：上下蛇形
+            for (int x = 3; x <= w; x++) {
+                for (int i = 0; i < h - 1; i++) {
+                    int y = x % 2 == 1 ? h - i : 2 + i;
+                    cells[n++] = y * mWidth + x;
+                }
+            }
+            // 第1行回到起点（不含角落）
+            for (int x = w; x >= 2; x--) {
+                cells[n++] = mWidth + x;
+            }
+        } else if (rows) {
+            for (int y = 1; y <= h; y++) {
+                for (int i = 0; i < w - 1; i++) {
+                    int x = y % 2 == 1 ? 2 + i : w - i;
+                    cells[n++] = y * mWidth + x;
+                }
+            }
+            for (int y = h; y >= 1; y--) {
+                cells[n++] = y * mWidth + 1;
+            }
+        } else {
+            for (int x = 1; x <= w; x++) {
+                for (int i = 0; i < h - 1; i++) {
+                    int y = x % 2 == 1 ? 2 + i : h - i;
+                    cells[n++] = y * mWidth + x;
+                }
+            }
+            for (int x = w; x >= 1; x--) {
+                cells[n++] = mWidth + x;
+            }
+        }
+        mCycleCells = cells;
+        mCycleIndex = new int[mWidth * mHeight];
+        for (int i = 0; i < cells.length; i++) {
+            mCycleIndex[cells[i]] = i;
+        }
+        if (spare) {
+            mSpare = mWidth + 1;
+            mCycleIndex[mSpare] = 0;
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package com.example.snake;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * AutosaveJournal: keeps the running game on disk so it survives the process
+ * being killed, not just an Activity recreation.
+ *
+ * The file starts with a snapshot (the StateCodec bytes plus the board size,
+ * the apple generator's state, the game's seed and the playing time so far),
+ * followed by an append-only record of each move and each apple that
+ * spawned. Recovery decodes the snapshot and replays
+ * the moves; the recorded apples are checked against the ones the replay
+ * produces, and replay stops at the first mismatch or at a torn record left
+ * by a crash. Every SNAPSHOT_INTERVAL moves the journal is compacted by
+ * writing a new snapshot to a temporary file and renaming it over the old one.
+ *
+ * Recording only copies a few ints into a preallocated buffer under a short
+ * lock; a background thread batches them into a direct buffer and writes
+ * them through a FileChannel, so the tick loop never waits for I/O.
+ *
+ */
+// 自动存档日志：快照 + 只追加的移动/苹果记录，由后台线程批量写入，进程被杀后也能恢复
+public class AutosaveJournal {
+
+    // 记录类型（RECORD_SNAPSHOT是不含种子和游戏时长的旧格式，只在恢复时读取）
+    private static final int RECORD_SNAPSHOT = 1;
+    private static final int RECORD_MOVE = 2;
+    private static final int RECORD_APPLE = 3;
+    private static final int RECORD_GAME_SNAPSHOT = 4;
+
+    // 每隔多少步写一次完整快照（压缩日志）
+    public static final int SNAPSHOT_INTERVAL = 256;
+
+    // 待写记录缓冲区的容量
+    private static final int CAPACITY = 1024;
+    // 积累多少条记录或多久（毫秒）批量写一次
+    private static final int FLUSH_THRESHOLD = CAPACITY / 2;
+    private static final long FLUSH_INTERVAL_MS = 250;
+    // 单条记录的最大字节数（类型 + int）
+    private static final int MAX_RECORD_BYTES = 5;
+
+    private final File mFile;
+    private final File mTempFile;
+
+    private final Object mLock = new Object();
+    // 待写的记录（由mLock保护）
+    private final byte[] mTypes = new byte[CAPACITY];
+    private final int[] mValues = new int[CAPACITY];
+    private int mCount;
+    // 队列满时丢弃记录，直到下一次快照
+    private boolean mOverflow;
+    // 上一次快照之后的步数
+    private int mMovesSinceSnapshot;
+    // 等待写入的快照记录，或删除存档的请求
+    private byte[] mPendingSnapshot;
+    private boolean mPendingDiscard;
+    private boolean mQuit;
+
+    // 以下只在写线程中使用
+    private final byte[] mWriteTypes = new byte[CAPACITY];
+    private final int[] mWriteValues = new int[CAPACITY];
+    private final ByteBuffer mBuffer = ByteBuffer
+            .allocateDirect(CAPACITY * MAX_RECORD_BYTES);
+    private FileOutputStream mOutput;
+    private FileChannel mChannel;
+
+    private Thread mWriter;
+    private volatile IOException mError;
+
+    // 恢复出的游戏时长（毫秒）
+    private long mRecoveredPlayMillis;
+
+    public AutosaveJournal(File file) {
+        mFile = file;
+        mTempFile = new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Starts the background writer. Call {@link #recover} first, since a
+     * snapshot written afterwards replaces the journal.
+     */
+    // 启动后台写线程
+    public void start() {
+        synchronized (mLock) {
+            if (mWriter != null) {
+                return;
+            }
+            mQuit = false;
+            mWriter = new Thread(mWriteLoop, "SnakeAutosave");
+            mWriter.setPriority(Thread.MIN_PRIORITY);
+            mWriter.start();
+        }
+    }
+
+    /**
+     * Writes out everything recorded so far and stops the writer.
+     */
+    // 写完所有记录后停止写线程
+    public void close() {
+        Thread writer;
+        synchronized (mLock) {
+            writer = mWriter;
+            mWriter = null;
+            mQuit = true;
+            mLock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Records the direction applied by one tick. Apples spawned by that tick
+     * must be recorded first.
+     *
+     * @return true if a new snapshot is due
+     */
+    // 记录一步移动，需要写快照时返回true
+    public boolean recordMove(int direction) {
+        synchronized (mLock) {
+            append(RECORD_MOVE, direction);
+            mMovesSinceSnapshot++;
+            return mOverflow || mMovesSinceSnapshot >= SNAPSHOT_INTERVAL;
+        }
+    }
+
+    // 记录一个新生成的苹果
+    public void recordApple(int x, int y) {
+        synchronized (mLock) {
+            append(RECORD_APPLE, SnakeBody.pack(x, y));
+        }
+    }
+
+    // 写快照（游戏时长记为0）
+    public void writeSnapshot(GameEngine engine) {
+        writeSnapshot(engine, 0);
+    }
+
+    /**
+     * Replaces the journal with a snapshot of the engine, its seed and the
+     * playing time so far. The state is encoded on the calling thread; the file is
+     * written in the background.
+     */
+    // 写快照：在调用线程编码，后台线程写入
+    public void writeSnapshot(GameEngine engine, long playMillis) {
+        byte[] state = StateCodec.encode(engine);
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 * 3 + 8 * 3
+                + state.length + 8);
+        record.put((byte) RECORD_GAME_SNAPSHOT);
+        record.putInt(engine.getWidth());
+        record.putInt(engine.getHeight());
+        record.putLong(engine.getRandomState());
+        record.putLong(engine.getSeed());
+        record.putLong(playMillis);
+        record.putInt(state.length);
+        record.put(state);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 1, record.position() - 1);
+        record.putLong(crc.getValue());
+
+        synchronized (mLock) {
+            // 快照之前的记录都已包含在快照里
+            mCount = 0;
+            mOverflow = false;
+            mMovesSinceSnapshot = 0;
+            mPendingSnapshot = record.array();
+            mPendingDiscard = false;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Deletes the journal, e.g. when the game is over.
+     */
+    // 删除存档（游戏结束时）
+    public void discard() {
+        synchronized (mLock) {
+            mCount = 0;
+            mOverflow = false;
+            mMovesSinceSnapshot = 0;
+            mPendingSnapshot = null;
+            mPendingDiscard = true;
+            mLock.notifyAll();
+        }
+    }
+
+    // 最近一次写入失败的原因，没有时为null
+    public IOException getError() {
+        return mError;
+    }
+
+    /**
+     * Returns the playing time of the game restored by {@link #recover}: the
+     * snapshot's plus the move delay of every move replayed after it.
+     */
+    // 恢复出的游戏的时长（毫秒）
+    public long getRecoveredPlayMillis() {
+        return mRecoveredPlayMillis;
+    }
+
+    private void append(int type, int value) {
+        if (mOverflow) {
+            return;
+        }
+        if (mCount == CAPACITY) {
+            mOverflow = true;
+            return;
+        }
+        mTypes[mCount] = (byte) type;
+        mValues[mCount] = value;
+        mCount++;
+        // 队列从空变为非空，或积累够一批时唤醒写线程
+        if (mCount == 1 || mCount == FLUSH_THRESHOLD) {
+            mLock.notifyAll();
+        }
+    }
+
+    private final Runnable mWriteLoop = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                byte[] snapshot;
+                boolean discard;
+                boolean quit;
+                int count;
+                synchronized (mLock) {
+                    try {
+                        // 没有记录时一直等待
+                        while (!mQuit && mPendingSnapshot == null
+                                && !mPendingDiscard && mCount == 0) {
+                            mLock.wait();
+                        }
+                        // 有记录后再等一个批次间隔，攒够一批再写
+                        if (!mQuit && mPendingSnapshot == null
+                                && !mPendingDiscard && mCount < FLUSH_THRESHOLD) {
+                            mLock.wait(FLUSH_INTERVAL_MS);
+                        }
+                    } catch (InterruptedException e) {
+                        mQuit = true;
+                    }
+                    snapshot = mPendingSnapshot;
+                    discard = mPendingDiscard;
+                    quit = mQuit;
+                    count = mCount;
+                    System.arraycopy(mTypes, 0, mWriteTypes, 0, count);
+                    System.arraycopy(mValues, 0, mWriteValues, 0, count);
+                    mPendingSnapshot = null;
+                    mPendingDiscard = false;
+                    mCount = 0;
+                }
+                try {
+                    if (discard) {
+                        closeChannel();
+                        mFile.delete();
+                    }
+                    if (snapshot != null) {
+                        replaceWithSnapshot(snapshot);
+                    }
+                    if (count > 0) {
+                        appendRecords(count);
+                    }
+                } catch (IOException e) {
+                    mError = e;
+                    closeChannel();
+                }
+                if (quit) {
+                    closeChannel();
+                    return;
+                }
+            }
+        }
+    };
+
+    // 把快照写到临时文件，同步到磁盘后改名替换原日志
+    private void replaceWithSnapshot(byte[] snapshot) throws IOException {
+        closeChannel();
+        FileOutputStream out = new FileOutputStream(mTempFile);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+        if (!mTempFile.renameTo(mFile)) {
+            mFile.delete();
+            if (!mTempFile.renameTo(mFile)) {
+                throw new IOException("Cannot replace " + mFile);
+            }
+        }
+        mError = null;
+    }
+
+    // 把一批记录追加到日志末尾
+    private void appendRecords(int count) throws IOException {
+        if (mChannel == null) {
+            // 没有快照的日志无法恢复，这些记录没有意义
+            if (!mFile.exists()) {
+                return;
+            }
+            mOutput = new FileOutputStream(mFile, true);
+            mChannel = mOutput.getChannel();
+        }
+        mBuffer.clear();
+        for (int i = 0; i < count; i++) {
+            mBuffer.put(mWriteTypes[i]);
+            if (mWriteTypes[i] == RECORD_MOVE) {
+                mBuffer.put((byte) mWriteValues[i]);
+            } else {
+                mBuffer.putInt(mWriteValues[i]);
+            }
+        }
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+    }
+
+    private void closeChannel() {
+        if (mOutput != null) {
+            try {
+                mOutput.close();
+            } catch (IOException e) {
+                mError = e;
+            }
+            mOutput = null;
+            mChannel = null;
+        }
+    }
+
+    /**
+     * Restores the journalled game into the engine: the last snapshot plus
+     * every move after it whose apples match the recording. Must be called
+     * before {@link #start}.
+     *
+     * @return true if a game was restored
+     */
+    // 从日志恢复游戏
+    public boolean recover(GameEngine engine) {
+        if (!mFile.exists()) {
+            return false;
+        }
+        int width;
+        int height;
+        long randomState;
+        // 旧格式的快照没有种子和游戏时长
+        long seed = Leaderboard.UNKNOWN_SEED;
+        long playMillis = 0;
+        byte[] state;
+        // 快照之后的记录
+        byte[] types = new byte[CAPACITY];
+        int[] values = new int[CAPACITY];
+        int count = 0;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(mFile)));
+            try {
+                int snapshotType = in.readUnsignedByte();
+                if (snapshotType != RECORD_SNAPSHOT
+                        && snapshotType != RECORD_GAME_SNAPSHOT) {
+                    return false;
+                }
+                width = in.readInt();
+                height = in.readInt();
+                randomState = in.readLong();
+                if (snapshotType == RECORD_GAME_SNAPSHOT) {
+                    seed = in.readLong();
+                    playMillis = in.readLong();
+                }
+                int length = in.readInt();
+                if (width <= 0 || height <= 0 || length < 0
+                        || length > mFile.length()) {
+                    return false;
+                }
+                state = new byte[length];
+                in.readFully(state);
+                CRC32 crc = new CRC32();
+                ByteBuffer header = ByteBuffer.allocate(4 * 3 + 8 * 3);
+                header.putInt(width).putInt(height).putLong(randomState);
+                if (snapshotType == RECORD_GAME_SNAPSHOT) {
+                    header.putLong(seed).putLong(playMillis);
+                }
+                header.putInt(length);
+                crc.update(header.array(), 0, header.position());
+                crc.update(state);
+                if (in.readLong() != crc.getValue()) {
+                    return false;
+                }
+                // 读到文件末尾或半条记录（崩溃时没写完）为止
+                try {
+                    while (true) {
+                        int type = in.readUnsignedByte();
+                        int value;
+                        if (type == RECORD_MOVE) {
+                            value = in.readUnsignedByte();
+                        } else if (type == RECORD_APPLE) {
+                            value = in.readInt();
+                        } else {
+                            break;
+                        }
+                        if (count == types.length) {
+                            types = Arrays.copyOf(types, count * 2);
+                            values = Arrays.copyOf(values, count * 2);
+                        }
+                        types[count] = (byte) type;
+                        values[count] = value;
+                        count++;
+                    }
+                } catch (EOFException e) {
+                    // 日志末尾
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        GameEngine replay = new GameEngine(0);
+        long[] replayedMillis = new long[1];
+        int moves;
+        try {
+            moves = replay(replay, width, height, randomState, state, types,
+                    values, count, Integer.MAX_VALUE, replayedMillis);
+            if (moves < 0) {
+                // 有苹果对不上：从快照重新回放到出错之前
+                moves = replay(replay, width, height, randomState, state,
+                        types, values, count, -moves - 1, replayedMillis);
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        mRecoveredPlayMillis = playMillis + replayedMillis[0];
+        engine.resize(width, height);
+        StateCodec.decode(StateCodec.encode(replay), engine);
+        engine.setRandomState(replay.getRandomState());
+        engine.restoreSeed(seed);
+        return true;
+    }
+
+    /**
+     * Restores the snapshot into the engine and replays up to maxMoves moves,
+     * summing their move delays into playMillis[0].
+     *
+     * @return the number of moves replayed, or -(n + 1) if move n spawned
+     *         different apples from the recording
+     */
+    private static int replay(GameEngine engine, int width, int height,
+            long randomState, byte[] state, byte[] types, int[] values,
+            int count, int maxMoves, long[] playMillis) {
+        final int[] spawned = new int[2];
+        final int[] spawnedCount = new int[1];
+        engine.setListener(null);
+        engine.resize(width, height);
+        StateCodec.decode(state, engine);
+        engine.setRandomState(randomState);
+        engine.setListener(new GameEngine.Listener() {
+            @Override
+            public void onCellChanged(int x, int y, int content) {
+                if (content == GameEngine.APPLE
+                        && spawnedCount[0] < spawned.length) {
+                    spawned[spawnedCount[0]++] = SnakeBody.pack(x, y);
+                }
+            }
+        });
+
+        int moves = 0;
+        int first = 0;
+        playMillis[0] = 0;
+        for (int i = 0; i < count && moves < maxMoves; i++) {
+            if (types[i] != RECORD_MOVE) {
+                continue;
+            }
+            // 这一步之前记录的苹果就是这一步生成的
+            int expected = i - first;
+            spawnedCount[0] = 0;
+            // 与SnakeView一样：每一步按走这一步之前的移动延迟计时
+            long delay = engine.getMoveDelay();
+            int result = engine.step(values[i]);
+            boolean match = spawnedCount[0] == expected;
+            for (int k = 0; match && k < expected; k++) {
+                match = spawned[k] == values[first + k];
+            }
+            if (!match || result == GameEngine.DIED) {
+                return -(moves + 1);
+            }
+            playMillis[0] += delay;
+            moves++;
+            first = i + 1;
+        }
+        return moves;
+    }
+}
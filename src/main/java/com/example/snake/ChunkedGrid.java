@@ -0,0 +1,121 @@
+package com.example.snake;
+
+/**
+ * ChunkedGrid: a sparse byte per cell for very large boards, stored in square
+ * chunks that are allocated when a cell in them becomes non-zero and dropped
+ * again once all their cells are back to zero.
+ *
+ * Memory follows the occupied area: only a table of chunk references (one
+ * per CHUNK x CHUNK cells) depends on the board size, e.g. about 25,000
+ * references for 10,000 x 10,000 cells. Readers that visit a region, like a
+ * viewport, can skip whole empty chunks.
+ *
+ */
+// 分块稀疏表：大棋盘每格一个字节，按块在需要时分配，整块变空后释放
+public class ChunkedGrid {
+
+    /**
+     * Boards with more cells than this use chunked storage instead of dense
+     * arrays.
+     */
+    // 超过这个格子数的棋盘使用分块存储
+    public static final int SPARSE_CELLS = 1 << 20;
+
+    // 块的边长（2的幂）
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK - 1;
+
+    private final int mWidth;
+    private final int mHeight;
+    // 横向和纵向的块数
+    private final int mChunksX;
+    private final int mChunksY;
+    // 每个块的格子（行优先），全空的块为null
+    private final byte[][] mChunks;
+    // 每个块中不为0的格子数
+    private final int[] mUsed;
+    private int mChunkCount;
+
+    public ChunkedGrid(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mChunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        mChunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+        mChunks = new byte[mChunksX * mChunksY][];
+        mUsed = new int[mChunksX * mChunksY];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    // 已分配的块数
+    public int getChunkCount() {
+        return mChunkCount;
+    }
+
+    public int get(int x, int y) {
+        byte[] chunk = mChunks[chunkIndex(x, y)];
+        return chunk == null ? 0 : chunk[cellIndex(x, y)];
+    }
+
+    /**
+     * Sets a cell, allocating or dropping its chunk as needed.
+     *
+     * @return the previous value
+     */
+    // 设置一个格子：需要时分配块，块变空时释放
+    public int set(int x, int y, int value) {
+        int index = chunkIndex(x, y);
+        byte[] chunk = mChunks[index];
+        if (chunk == null) {
+            if (value == 0) {
+                return 0;
+            }
+            chunk = new byte[CHUNK * CHUNK];
+            mChunks[index] = chunk;
+            mChunkCount++;
+        }
+        int cell = cellIndex(x, y);
+        int old = chunk[cell];
+        chunk[cell] = (byte) value;
+        if (old == 0 && value != 0) {
+            mUsed[index]++;
+        } else if (old != 0 && value == 0 && --mUsed[index] == 0) {
+            mChunks[index] = null;
+            mChunkCount--;
+        }
+        return old;
+    }
+
+    // 释放所有块
+    public void clear() {
+        for (int i = 0; i < mChunks.length; i++) {
+            mChunks[i] = null;
+            mUsed[i] = 0;
+        }
+        mChunkCount = 0;
+    }
+
+    /**
+     * Returns the chunk at chunk coordinates cx/cy, or null if all its cells
+     * are zero. Cells are row-major, CHUNK per row; read only.
+     */
+    // 块坐标处的格子数组，全空时为null（只读）
+    public byte[] getChunk(int cx, int cy) {
+        return mChunks[cy * mChunksX + cx];
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (y >> CHUNK_SHIFT) * mChunksX + (x >> CHUNK_SHIFT);
+    }
+
+    private static int cellIndex(int x, int y) {
+        return ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.snake;
+
+import java.util.Random;
+
+/**
+ * FreeCellIndex: the set of garden cells that are neither under the snake nor
+ * holding an apple.
+ *
+ * Cells live in a dense array with a reverse position map, so adding, removing
+ * (by swapping with the last entry) and picking a uniformly random free cell
+ * are all O(1), however full the garden is. Cells are identified by their
+ * row-major index y * width + x.
+ *
+ * Boards larger than ChunkedGrid.SPARSE_CELLS cannot afford two ints per
+ * cell. There only the taken cells are marked, in a ChunkedGrid, and a random
+ * free cell is found by drawing interior cells until one is free, which is
+ * still uniform and takes about one draw while the garden is mostly empty.
+ *
+ */
+// 空闲格子索引：稠密数组 + 反向位置表，增删（与末尾交换）和均匀随机抽取都是O(1)
+public class FreeCellIndex {
+
+    // 不在索引中
+    private static final int ABSENT = -1;
+
+    // 空闲格子（行优先下标）
+    private int[] mCells = new int[0];
+    // 每个格子在mCells中的位置，不空闲时为ABSENT
+    private int[] mPos = new int[0];
+    // 空闲格子的个数
+    private int mCount;
+    private int mWidth;
+    private int mHeight;
+    // 大棋盘：只标记被占用的墙内格子，小棋盘时为null
+    private ChunkedGrid mTaken;
+
+    /**
+     * Resizes the index to the given garden and marks every cell inside the
+     * one-tile border as free.
+     */
+    // 重新设置大小：四周墙内的格子全部空闲
+    public void reset(int width, int height) {
+        int total = width * height;
+        mWidth = width;
+        mHeight = height;
+        if (total > ChunkedGrid.SPARSE_CELLS) {
+            mCells = new int[0];
+            mPos = new int[0];
+            mTaken = new ChunkedGrid(width, height);
+            mCount = (width - 2) * (height - 2);
+            return;
+        }
+        mTaken = null;
+        if (mPos.length < total) {
+            mPos = new int[total];
+            mCells = new int[total];
+        }
+        mCount = 0;
+        for (int i = 0; i < total; i++) {
+            mPos[i] = ABSENT;
+        }
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                add(x, y);
+            }
+        }
+    }
+
+    // 空闲格子的个数
+    public int size() {
+        return mCount;
+    }
+
+    public boolean isFree(int x, int y) {
+        if (mTaken != null) {
+            return isInterior(x, y) && mTaken.get(x, y) == 0;
+        }
+        return mPos[y * mWidth + x] != ABSENT;
+    }
+
+    // 标记为空闲（已空闲时忽略）
+    public void add(int x, int y) {
+        if (mTaken != null) {
+            if (isInterior(x, y) && mTaken.set(x, y, 0) != 0) {
+                mCount++;
+            }
+            return;
+        }
+        int cell = y * mWidth + x;
+        if (mPos[cell] != ABSENT) {
+            return;
+        }
+        mCells[mCount] = cell;
+        mPos[cell] = mCount;
+        mCount++;
+    }
+
+    // 标记为占用：与最后一个交换后删除（已占用时忽略）
+    public void remove(int x, int y) {
+        if (mTaken != null) {
+            if (isInterior(x, y) && mTaken.set(x, y, 1) == 0) {
+                mCount--;
+            }
+            return;
+        }
+        int cell = y * mWidth + x;
+        int pos = mPos[cell];
+        if (pos == ABSENT) {
+            return;
+        }
+        mCount--;
+        int last = mCells[mCount];
+        mCells[pos] = last;
+        mPos[last] = pos;
+        mPos[cell] = ABSENT;
+    }
+
+    /**
+     * Picks a free cell uniformly at random.
+     *
+     * @return the packed coordinate (see {@link SnakeBody#pack}) of the cell,
+     *         or -1 if the garden is full
+     */
+    // 均匀随机取一个空闲格子，没有时返回-1
+    public int random(Random rng) {
+        if (mCount == 0) {
+            return -1;
+        }
+        if (mTaken != null) {
+            // 拒绝采样：随机取墙内格子直到空闲
+            while (true) {
+                int x = 1 + rng.nextInt(mWidth - 2);
+                int y = 1 + rng.nextInt(mHeight - 2);
+                if (mTaken.get(x, y) == 0) {
+                    return SnakeBody.pack(x, y);
+                }
+            }
+        }
+        int cell = mCells[rng.nextInt(mCount)];
+        return SnakeBody.pack(cell % mWidth, cell / mWidth);
+    }
+
+    // 是否在四周的墙内
+    private boolean isInterior(int x, int y) {
+        return x > 0 && y > 0 && x < mWidth - 1 && y < mHeight - 1;
+    }
+}
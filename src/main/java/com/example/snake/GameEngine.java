@@ -0,0 +1,462 @@
+package com.example.snake;
+
+/**
+ * GameEngine: the rules of Snake with no Android dependencies.
+ *
+ * The engine owns the garden (a one-tile wall around width x height cells),
+ * the snake, the apples, the score and the move delay, and advances them one
+ * tick per call to step(). Randomness comes from a seeded Random, so a game is
+ * fully determined by its seed and the directions applied.
+ *
+ * A tick allocates nothing; views learn about changed cells through a
+ * Listener rather than by rescanning the board.
+ *
+ */
+// 游戏引擎：不依赖Android的贪吃蛇规则，可以在普通JVM里运行
+public class GameEngine {
+
+    // 游戏方向设定 北 南 东 西
+    public static final int NORTH = 1;
+    public static final int SOUTH = 2;
+    public static final int EAST = 3;
+    public static final int WEST = 4;
+
+    // step()的结果：移动、吃到苹果、撞死、填满花园
+    public static final int MOVED = 0;
+    public static final int ATE = 1;
+    public static final int DIED = 2;
+    public static final int WON = 3;
+
+    // 格子内容：空、蛇头、蛇身、苹果
+    public static final int EMPTY = 0;
+    public static final int HEAD = 1;
+    public static final int BODY = 2;
+    public static final int APPLE = 3;
+
+    // 初始移动延迟（毫秒）
+    public static final long INITIAL_MOVE_DELAY = 600;
+    // 每吃一个苹果，移动延迟乘以这个系数
+    public static final double SPEED_UP = 0.9;
+
+    /**
+     * Receives every cell whose content changes, as it changes.
+     */
+    public interface Listener {
+        void onCellChanged(int x, int y, int content);
+    }
+
+    // 花园大小（含四周的墙）
+    private int mWidth;
+    private int mHeight;
+
+    // 蛇身、占用表和空闲格子索引
+    private final SnakeBody mSnake = new SnakeBody();
+    private final OccupancyGrid mOccupancy = new OccupancyGrid();
+    private final FreeCellIndex mFreeCells = new FreeCellIndex();
+
+    // 苹果（打包坐标）
+    private int[] mApples = new int[4];
+    private int mAppleCount;
+
+    // 当前方向和下一步方向
+    private int mDirection = NORTH;
+    private int mNextDirection = NORTH;
+
+    // 得分和移动延迟
+    private long mScore;
+    private long mMoveDelay = INITIAL_MOVE_DELAY;
+    private double mSpeedUp = SPEED_UP;
+
+    // 游戏是否已经结束（撞死或胜利）
+    private boolean mOver;
+
+    // 随机数及其种子
+    private final GameRandom mRandom;
+    private long mSeed;
+
+    private Listener mListener;
+
+    public GameEngine(long seed) {
+        mSeed = seed;
+        mRandom = new GameRandom(seed);
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Resizes the garden. The snake and apples are kept; the occupancy grid and
+     * free-cell index are rebuilt around them.
+     */
+    // 改变花园大小，并重建占用表和空闲格子索引
+    public void resize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        rebuildIndexes();
+    }
+
+    /**
+     * Starts a new game: a short snake heading north and two apples, with the
+     * random sequence reseeded so the game can be reproduced from the seed.
+     */
+    // 开始新游戏
+    public void newGame(long seed) {
+        mSeed = seed;
+        mRandom.setSeed(seed);
+        mSnake.clear();
+        mAppleCount = 0;
+
+        // For now we're just going to load up a short default eastbound snake
+        // that's just turned north
+        // 创建蛇身
+        for (int x = 7; x >= 2; x--) {
+            mSnake.addTail(x, 7);
+        }
+        rebuildIndexes();
+
+        // 新的方向 ：北方
+        mDirection = NORTH;
+        mNextDirection = NORTH;
+
+        // 2个随机位置的苹果
+        addRandomApple();
+        addRandomApple();
+
+        mMoveDelay = INITIAL_MOVE_DELAY;
+        mScore = 0;
+        mOver = false;
+    }
+
+    /**
+     * Replaces the whole game state, e.g. from a saved Bundle. Coordinates are
+     * flattened as [x1,y1,x2,y2,...], the snake head first.
+     */
+    // 恢复状态
+    public void restoreState(int[] snake, int[] apples, int direction,
+            int nextDirection, long moveDelay, long score) {
+        mSnake.fromArray(snake);
+        mAppleCount = 0;
+        for (int index = 0; index + 1 < apples.length; index += 2) {
+            appendApple(SnakeBody.pack(apples[index], apples[index + 1]));
+        }
+        mDirection = direction;
+        mNextDirection = nextDirection;
+        mMoveDelay = moveDelay;
+        mScore = score;
+        mOver = false;
+        rebuildIndexes();
+    }
+
+    /**
+     * Queues the direction for the next step, unless it would turn the snake
+     * straight back onto itself.
+     *
+     * @return true if the direction was accepted
+     */
+    // 设置下一步方向：只能90度转向，不能180度掉头
+    public boolean setNextDirection(int direction) {
+        if (direction == opposite(mDirection)) {
+            return false;
+        }
+        mNextDirection = direction;
+        return true;
+    }
+
+    // 相反方向
+    public static int opposite(int direction) {
+        switch (direction) {
+            case NORTH:
+                return SOUTH;
+            case SOUTH:
+                return NORTH;
+            case EAST:
+                return WEST;
+            case WEST:
+                return EAST;
+        }
+        return 0;
+    }
+
+    /**
+     * Queues the direction and advances one tick.
+     *
+     * @see #setNextDirection(int)
+     * @see #step()
+     */
+    public int step(int direction) {
+        setNextDirection(direction);
+        return step();
+    }
+
+    /**
+     * Figure out which way the snake is going, see if he's run into anything
+     * (the walls, himself, or an apple). If he's not going to die, we then add
+     * to the front and subtract from the rear in order to simulate motion. If
+     * we want to grow him, we don't subtract from the rear.
+     *
+     * @return MOVED, ATE, DIED or WON
+     */
+    // 前进一步
+    public int step() {
+        if (mOver) {
+            return DIED;
+        }
+        int head = mSnake.head();
+        int newX = SnakeBody.unpackX(head);
+        int newY = SnakeBody.unpackY(head);
+
+        // 当前方向改成新的方向
+        mDirection = mNextDirection;
+
+        // 根据方向确定蛇头新坐标
+        switch (mDirection) {
+            case EAST:
+                newX++;
+                break;
+            case WEST:
+                newX--;
+                break;
+            case NORTH:
+                newY--;
+                break;
+            case SOUTH:
+                newY++;
+                break;
+        }
+
+        // Collision detection
+        // For now we have a 1-square wall around the entire arena
+        // 冲突检测 新蛇头是否四面墙重叠，那么游戏结束
+        if ((newX < 1) || (newY < 1) || (newX > mWidth - 2)
+                || (newY > mHeight - 2)) {
+            mOver = true;
+            return DIED;
+        }
+
+        // Look for collisions with itself. The tail still counts, since it
+        // has not moved out of the way yet.
+        // 冲突检测 新蛇头是否和自身坐标重叠
+        if (mOccupancy.isSnake(newX, newY)) {
+            mOver = true;
+            return DIED;
+        }
+
+        // push a new head onto the ring buffer; it is marked before any new
+        // apple is placed so that an apple can never appear under it
+        // 在蛇头的位置增加一个新坐标
+        mSnake.pushHead(newX, newY);
+        mOccupancy.setSnake(newX, newY);
+        mFreeCells.remove(newX, newY);
+        cellChanged(newX, newY, HEAD);
+        cellChanged(SnakeBody.unpackX(head), SnakeBody.unpackY(head), BODY);
+
+        // Look for apples
+        // 看新蛇头和苹果是否重叠
+        boolean growSnake = false;
+        if (mOccupancy.appleCount(newX, newY) > 0) {
+            mOccupancy.clearApples(newX, newY);
+            removeApple(SnakeBody.pack(newX, newY));
+            // 再立刻增加一个新苹果
+            addRandomApple();
+            // 得分加一
+            mScore++;
+            // 延迟是以前的90%（默认）
+            mMoveDelay *= mSpeedUp;
+            growSnake = true;
+        }
+
+        // pull off the tail, except if we want the snake to grow
+        // 如果没有增长，删去最后一个坐标，相当于蛇向前走了一步
+        if (!growSnake) {
+            int tail = mSnake.removeTail();
+            int tailX = SnakeBody.unpackX(tail);
+            int tailY = SnakeBody.unpackY(tail);
+            mOccupancy.clearSnake(tailX, tailY);
+            mFreeCells.add(tailX, tailY);
+            cellChanged(tailX, tailY, EMPTY);
+        }
+
+        // The snake covers every cell and there is nothing left to eat
+        // 蛇已经填满整个花园，也没有苹果可吃了：胜利
+        if (mFreeCells.size() == 0 && mAppleCount == 0) {
+            mOver = true;
+            return WON;
+        }
+        return growSnake ? ATE : MOVED;
+    }
+
+    /**
+     * Selects a random location within the garden that is not currently covered
+     * by the snake or another apple, uniformly from the free-cell index. If
+     * the garden is full no apple is added.
+     *
+     * @return true if an apple was placed
+     */
+    // 添加苹果：从空闲格子里均匀随机取一个
+    private boolean addRandomApple() {
+        int cell = mFreeCells.random(mRandom);
+        if (cell < 0) {
+            return false;
+        }
+        int x = SnakeBody.unpackX(cell);
+        int y = SnakeBody.unpackY(cell);
+        appendApple(cell);
+        mOccupancy.addApple(x, y);
+        mFreeCells.remove(x, y);
+        cellChanged(x, y, APPLE);
+        return true;
+    }
+
+    private void appendApple(int packed) {
+        if (mAppleCount == mApples.length) {
+            int[] apples = new int[mApples.length * 2];
+            System.arraycopy(mApples, 0, apples, 0, mAppleCount);
+            mApples = apples;
+        }
+        mApples[mAppleCount++] = packed;
+    }
+
+    // 从苹果列表中删除（与最后一个交换）
+    private void removeApple(int packed) {
+        for (int index = 0; index < mAppleCount; index++) {
+            if (mApples[index] == packed) {
+                mApples[index] = mApples[--mAppleCount];
+                return;
+            }
+        }
+    }
+
+    // 根据蛇身和苹果重建占用表和空闲格子索引
+    private void rebuildIndexes() {
+        mOccupancy.resize(mWidth, mHeight);
+        mFreeCells.reset(mWidth, mHeight);
+        int snakelength = mSnake.size();
+        for (int index = 0; index < snakelength; index++) {
+            int x = mSnake.getX(index);
+            int y = mSnake.getY(index);
+            if (mOccupancy.contains(x, y)) {
+                mOccupancy.setSnake(x, y);
+                mFreeCells.remove(x, y);
+            }
+        }
+        for (int index = 0; index < mAppleCount; index++) {
+            int x = SnakeBody.unpackX(mApples[index]);
+            int y = SnakeBody.unpackY(mApples[index]);
+            if (mOccupancy.contains(x, y)) {
+                mOccupancy.addApple(x, y);
+                mFreeCells.remove(x, y);
+            }
+        }
+    }
+
+    private void cellChanged(int x, int y, int content) {
+        if (mListener != null) {
+            mListener.onCellChanged(x, y, content);
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    /**
+     * Sets the seed reported by getSeed() for a game restored mid-way; the
+     * apple generator is left as it is (see setRandomState).
+     */
+    // 恢复存档时设置种子（不改变随机数的状态）
+    public void restoreSeed(long seed) {
+        mSeed = seed;
+    }
+
+    /**
+     * The state of the apple generator, for saving a game mid-way.
+     *
+     * @see #setRandomState(long)
+     */
+    public long getRandomState() {
+        return mRandom.getState();
+    }
+
+    // 恢复苹果随机数的状态，之后生成的苹果与保存前完全相同
+    public void setRandomState(long state) {
+        mRandom.setState(state);
+    }
+
+    public long getScore() {
+        return mScore;
+    }
+
+    public long getMoveDelay() {
+        return mMoveDelay;
+    }
+
+    /**
+     * Sets the factor the move delay is multiplied by for each apple eaten,
+     * SPEED_UP by default. Used to try out other speed curves.
+     */
+    public void setSpeedUp(double speedUp) {
+        mSpeedUp = speedUp;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    public int getNextDirection() {
+        return mNextDirection;
+    }
+
+    public boolean isOver() {
+        return mOver;
+    }
+
+    // 该格子是否被蛇占据（蛇尾也算）
+    public boolean isSnake(int x, int y) {
+        return mOccupancy.isSnake(x, y);
+    }
+
+    // 该格子上是否有苹果
+    public boolean hasApple(int x, int y) {
+        return mOccupancy.appleCount(x, y) > 0;
+    }
+
+    // 蛇身（只读使用）
+    public SnakeBody getSnake() {
+        return mSnake;
+    }
+
+    // 空闲格子个数
+    public int getFreeCellCount() {
+        return mFreeCells.size();
+    }
+
+    public int getAppleCount() {
+        return mAppleCount;
+    }
+
+    // 第index个苹果（打包坐标）
+    public int getApple(int index) {
+        return mApples[index];
+    }
+
+    /**
+     * Flattens the apples into [x1,y1,x2,y2,...].
+     */
+    public int[] getApplesArray() {
+        int[] rawArray = new int[mAppleCount * 2];
+        for (int index = 0; index < mAppleCount; index++) {
+            rawArray[2 * index] = SnakeBody.unpackX(mApples[index]);
+            rawArray[2 * index + 1] = SnakeBody.unpackY(mApples[index]);
+        }
+        return rawArray;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.snake;
+
+/**
+ * GameMetrics: timing of the game loop's phases and of the tick schedule.
+ *
+ * Each phase (update(), the engine step, drawing a frame) has its own
+ * LatencyHistogram and is written by one thread only. Every tick also
+ * records how late it ran against the time it was due on the move clock's
+ * absolute timeline, so several moves run back to back in one frame are not
+ * mistaken for jitter; moves the loop gives up catching up are counted as
+ * dropped. Input latency is the time from a key press to the tick that
+ * applies it.
+ *
+ * The overlay text is formatted into a caller-owned char array, so showing it
+ * every frame allocates nothing.
+ *
+ */
+// 游戏循环各阶段的耗时、每步的延迟和丢失的步数
+public class GameMetrics {
+
+    // 阶段：update()、引擎前进一步、画一帧
+    public static final int PHASE_UPDATE = 0;
+    public static final int PHASE_STEP = 1;
+    public static final int PHASE_DRAW = 2;
+    public static final int PHASE_COUNT = 3;
+    private static final String[] PHASE_NAMES = {"update", "step  ", "draw  "};
+
+    // 浮层的行数和每行最多的字符数
+    public static final int LINE_COUNT = PHASE_COUNT + 2;
+    public static final int MAX_LINE = 64;
+
+    private final LatencyHistogram[] mPhases = new LatencyHistogram[PHASE_COUNT];
+    // 每一步比应该执行的时刻晚了多少
+    private final LatencyHistogram mLateness = new LatencyHistogram();
+    // 从按键到这个方向生效的延迟
+    private final LatencyHistogram mInputLatency = new LatencyHistogram();
+    private long mDroppedTicks;
+
+    public GameMetrics() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            mPhases[i] = new LatencyHistogram();
+        }
+    }
+
+    // 阶段开始时刻
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    // 阶段结束，记录耗时
+    public void end(int phase, long start) {
+        mPhases[phase].record(System.nanoTime() - start);
+    }
+
+    public LatencyHistogram getPhase(int phase) {
+        return mPhases[phase];
+    }
+
+    public LatencyHistogram getLateness() {
+        return mLateness;
+    }
+
+    public LatencyHistogram getInputLatency() {
+        return mInputLatency;
+    }
+
+    public long getDroppedTicks() {
+        return mDroppedTicks;
+    }
+
+    /**
+     * Records a tick that ran latenessNanos after it was due (see
+     * MoveClock).
+     */
+    // 记录一步比应该执行的时刻晚了多少
+    public void tick(long latenessNanos) {
+        mLateness.record(latenessNanos);
+    }
+
+    // 记录落后太多时丢弃的步数
+    public void dropTicks(long count) {
+        mDroppedTicks += count;
+    }
+
+    public void reset() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            mPhases[i].reset();
+        }
+        mLateness.reset();
+        mInputLatency.reset();
+        mDroppedTicks = 0;
+    }
+
+    /**
+     * Formats one line of the overlay into out (at least MAX_LINE chars).
+     *
+     * @return the number of chars written
+     */
+    // 把浮层的第line行格式化到字符数组里（不分配对象）
+    public int formatLine(int line, char[] out) {
+        int n = 0;
+        if (line < PHASE_COUNT) {
+            LatencyHistogram phase = mPhases[line];
+            n = append(out, n, PHASE_NAMES[line]);
+            n = append(out, n, " avg ");
+            n = appendMicros(out, n, phase.getMeanNanos());
+            n = append(out, n, " p99 ");
+            n = appendMicros(out, n, phase.getPercentileNanos(99));
+            n = append(out, n, " max ");
+            n = appendMicros(out, n, phase.getMaxNanos());
+        } else if (line == PHASE_COUNT) {
+            n = append(out, n, "late   p50 ");
+            n = appendMicros(out, n, mLateness.getPercentileNanos(50));
+            n = append(out, n, " p99 ");
+            n = appendMicros(out, n, mLateness.getPercentileNanos(99));
+            n = append(out, n, " dropped ");
+            n = appendLong(out, n, mDroppedTicks);
+        } else {
+            n = append(out, n, "input  p50 ");
+            n = appendMicros(out, n, mInputLatency.getPercentileNanos(50));
+            n = append(out, n, " p99 ");
+            n = appendMicros(out, n, mInputLatency.getPercentileNanos(99));
+            n = append(out, n, " max ");
+            n = appendMicros(out, n, mInputLatency.getMaxNanos());
+        }
+        return n;
+    }
+
+    /**
+     * Writes every phase and the tick lateness, with counts and bucket-level
+     * percentiles, e.g. for logcat or a file.
+     */
+    // 完整的文本报告
+    public void dump(StringBuilder out) {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            dump(out, PHASE_NAMES[i].trim(), mPhases[i]);
+        }
+        dump(out, "lateness", mLateness);
+        dump(out, "input", mInputLatency);
+        out.append("dropped ticks: ").append(mDroppedTicks).append('\n');
+    }
+
+    private static void dump(StringBuilder out, String name,
+            LatencyHistogram histogram) {
+        out.append(name).append(": n=").append(histogram.getCount())
+                .append(" avg=").append(histogram.getMeanNanos() / 1000)
+                .append("us p50=")
+                .append(histogram.getPercentileNanos(50) / 1000)
+                .append("us p90=")
+                .append(histogram.getPercentileNanos(90) / 1000)
+                .append("us p99=")
+                .append(histogram.getPercentileNanos(99) / 1000)
+                .append("us max=").append(histogram.getMaxNanos() / 1000)
+                .append("us\n");
+    }
+
+    private static int append(char[] out, int n, String s) {
+        int length = Math.min(s.length(), out.length - n);
+        s.getChars(0, length, out, n);
+        return n + length;
+    }
+
+    // 纳秒转成微秒，超过10毫秒时用毫秒
+    private static int appendMicros(char[] out, int n, long nanos) {
+        long micros = nanos / 1000;
+        if (micros >= 10000) {
+            n = appendLong(out, n, micros / 1000);
+            return append(out, n, "ms");
+        }
+        n = appendLong(out, n, micros);
+        return append(out, n, "us");
+    }
+
+    private static int appendLong(char[] out, int n, long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        // 先算出位数，再从后往前写
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        if (n + digits > out.length) {
+            return n;
+        }
+        for (int i = n + digits - 1; i >= n; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return n + digits;
+    }
+}
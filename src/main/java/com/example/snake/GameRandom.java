@@ -0,0 +1,51 @@
+package com.example.snake;
+
+import java.util.Random;
+
+/**
+ * GameRandom: a java.util.Random whose 48-bit generator state can be read and
+ * restored, so a game saved mid-way continues with exactly the apples it
+ * would have had.
+ *
+ * It uses the same linear congruential generator as java.util.Random, so a
+ * given seed produces the same sequence as before.
+ *
+ */
+// 可以读取和恢复内部状态的随机数（算法与java.util.Random相同）
+public class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // 生成器状态（不能有初始值：父类构造函数会先调用setSeed）
+    private long mState;
+
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        mState = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected synchronized int next(int bits) {
+        mState = (mState * MULTIPLIER + ADDEND) & MASK;
+        return (int) (mState >>> (48 - bits));
+    }
+
+    // 当前生成器状态
+    public synchronized long getState() {
+        return mState;
+    }
+
+    // 恢复生成器状态
+    public synchronized void setState(long state) {
+        mState = state & MASK;
+    }
+}
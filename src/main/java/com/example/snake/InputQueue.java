@@ -0,0 +1,84 @@
+package com.example.snake;
+
+/**
+ * InputQueue: a small bounded queue of timestamped direction changes, so that
+ * quick presses within one tick are applied on consecutive ticks instead of
+ * overwriting each other.
+ *
+ * Each direction is checked against the one queued before it (or the
+ * snake's next direction when the queue is empty): repeats and 180 degree
+ * turns are dropped, as are presses once the queue is full.
+ *
+ */
+// 方向输入队列：一步只取一个，快速连按不会丢失
+public class InputQueue {
+
+    // 队列容量：超过几步之后的按键已经没有意义
+    public static final int CAPACITY = 3;
+
+    // 队列为空时poll()的返回值
+    public static final int NONE = 0;
+
+    private final int[] mDirections = new int[CAPACITY];
+    private final long[] mTimes = new long[CAPACITY];
+    private int mFirst;
+    private int mSize;
+    // 最后取出的方向的入队时刻
+    private long mPolledTime;
+
+    /**
+     * Queues a direction pressed at the given time.
+     *
+     * @param direction
+     * @param timeNanos
+     * @param nextDirection
+     *            the direction the snake will take if nothing is queued
+     * @return false if the direction was dropped
+     */
+    // 方向入队：与前一个方向相同或相反时丢弃
+    public boolean offer(int direction, long timeNanos, int nextDirection) {
+        int previous = mSize == 0 ? nextDirection
+                : mDirections[(mFirst + mSize - 1) % CAPACITY];
+        if (direction == previous || direction == GameEngine.opposite(previous)
+                || mSize == CAPACITY) {
+            return false;
+        }
+        int index = (mFirst + mSize) % CAPACITY;
+        mDirections[index] = direction;
+        mTimes[index] = timeNanos;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Takes the oldest direction; its time is then available from
+     * {@link #getPolledTime()}.
+     *
+     * @return the direction, or NONE if the queue is empty
+     */
+    // 取出最早的方向
+    public int poll() {
+        if (mSize == 0) {
+            return NONE;
+        }
+        int direction = mDirections[mFirst];
+        mPolledTime = mTimes[mFirst];
+        mFirst = (mFirst + 1) % CAPACITY;
+        mSize--;
+        return direction;
+    }
+
+    // 最后取出的方向按下的时刻（纳秒）
+    public long getPolledTime() {
+        return mPolledTime;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        mFirst = 0;
+        mSize = 0;
+    }
+}
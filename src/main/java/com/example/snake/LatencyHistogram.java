@@ -0,0 +1,101 @@
+package com.example.snake;
+
+/**
+ * LatencyHistogram: counts durations in fixed power-of-two buckets, from
+ * under a microsecond up to several seconds, plus their count, sum and
+ * maximum.
+ *
+ * Recording is a few arithmetic operations and never allocates. There is a
+ * single writer; readers on other threads may see a slightly stale or torn
+ * snapshot, which is fine for display.
+ *
+ */
+// 延迟直方图：按2的幂分桶（微秒），记录时不分配对象
+public class LatencyHistogram {
+
+    // 桶的个数：第0桶小于1微秒，第k桶是[2^(k-1), 2^k)微秒
+    public static final int BUCKETS = 24;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    // 记录一次耗时（纳秒）
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        // 纳秒右移10位约等于微秒
+        long micros = nanos >> 10;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        if (bucket >= BUCKETS) {
+            bucket = BUCKETS - 1;
+        }
+        mCounts[bucket]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+    }
+
+    // 加上另一个直方图的计数（例如合并多个线程各自的统计）
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts[i] += other.mCounts[i];
+        }
+        mCount += other.mCount;
+        mTotalNanos += other.mTotalNanos;
+        if (other.mMaxNanos > mMaxNanos) {
+            mMaxNanos = other.mMaxNanos;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getBucketCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    // 平均耗时（纳秒）
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile (0-100), i.e. the upper
+     * edge of the bucket it falls in, capped at the maximum recorded.
+     */
+    // 百分位数（所在桶的上界，纳秒）
+    public long getPercentileNanos(int percentile) {
+        long count = mCount;
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (count * percentile + 99) / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min((1L << i) << 10, mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+}
@@ -0,0 +1,545 @@
+package com.example.snake;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+/**
+ * Leaderboard: every finished game on disk, with the high scores and daily
+ * totals ready to show without reading the games back.
+ *
+ * Games are appended to a log of fixed-size records (seed, end time, score,
+ * length, play time and a CRC). Next to it, a small memory-mapped index
+ * holds the TOP_COUNT best games in order and one aggregate per day for the
+ * last DAY_COUNT days, plus the number of log records it covers. Opening
+ * maps the index and only reads the log records it does not cover yet (e.g.
+ * after a crash between the two writes); a missing or foreign index is
+ * rebuilt from the whole log, and a torn last record is cut off. So queries
+ * cost the same with ten games or hundreds of thousands.
+ *
+ * record() only queues the game; the log and the index are written on a
+ * background thread, which also opens the files, so the UI thread never
+ * waits for I/O. Queries read the mapped index under a short lock and see
+ * nothing until it is open.
+ *
+ */
+// 排行榜：只追加的对局记录 + 内存映射的索引（前N名和每日统计），由后台线程写入
+public class Leaderboard {
+
+    // 索引中保存的最高分个数和天数
+    public static final int TOP_COUNT = 100;
+    public static final int DAY_COUNT = 366;
+
+    // 种子未知的对局（从没有保存种子的旧存档恢复）记录的种子
+    public static final long UNKNOWN_SEED = 0;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    // 对局记录：种子、结束时刻、得分、长度、游戏时长、CRC
+    private static final int RECORD_BYTES = 32;
+    private static final int RECORD_DATA_BYTES = RECORD_BYTES - 4;
+
+    // 索引：文件头、前N名（与对局记录相同的格式）、每日统计
+    private static final int INDEX_MAGIC = 0x534E4C42;
+    private static final int INDEX_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int DAY_BYTES = 32;
+    private static final int TOP_OFFSET = HEADER_BYTES;
+    private static final int DAY_OFFSET = TOP_OFFSET + TOP_COUNT * RECORD_BYTES;
+    private static final int INDEX_BYTES = DAY_OFFSET + DAY_COUNT * DAY_BYTES;
+    // 文件头中的字段位置
+    private static final int HEADER_RECORDS = 8;
+    private static final int HEADER_TOP = 16;
+
+    // 一次读取日志的记录数（重建和追赶时）
+    private static final int READ_BATCH = 2048;
+
+    /**
+     * One finished game.
+     */
+    // 一局的结果
+    public static class Game {
+        public long seed;
+        public long timeMillis;
+        public int score;
+        public int length;
+        public int durationMillis;
+
+        public Game() {
+        }
+
+        public Game(long seed, long timeMillis, int score, int length,
+                int durationMillis) {
+            this.seed = seed;
+            this.timeMillis = timeMillis;
+            this.score = score;
+            this.length = length;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    /**
+     * The games of one day, counted in the default time zone.
+     */
+    // 一天的统计
+    public static class Day {
+        // 从1970-01-01起的天数
+        public long day;
+        public int games;
+        public long totalScore;
+        public int bestScore;
+        public long totalDurationMillis;
+    }
+
+    private final File mLogFile;
+    private final File mIndexFile;
+
+    private final Object mLock = new Object();
+    // 等待写入的对局（由mLock保护）
+    private final List<Game> mPending = new ArrayList<Game>();
+    private boolean mQuit;
+    // 写线程是否已经尝试过打开文件
+    private boolean mOpened;
+    // 写线程正在处理的对局数，flush()据此等待
+    private int mWriting;
+    private Thread mWriter;
+    private volatile IOException mError;
+
+    // 索引（由mIndexLock保护，打开之前为null）
+    private final Object mIndexLock = new Object();
+    private MappedByteBuffer mIndex;
+
+    // 以下只在写线程中使用
+    private RandomAccessFile mIndexAccess;
+    private FileOutputStream mLogOutput;
+    private FileChannel mLog;
+    private final CRC32 mCrc = new CRC32();
+
+    /**
+     * @param dir
+     *            the directory holding the log and the index; created if
+     *            needed
+     */
+    public Leaderboard(File dir) {
+        mLogFile = new File(dir, "games.log");
+        mIndexFile = new File(dir, "games.idx");
+    }
+
+    /**
+     * Starts the background thread, which opens the files first.
+     */
+    // 启动后台线程（先在后台打开文件）
+    public void start() {
+        synchronized (mLock) {
+            if (mWriter != null) {
+                return;
+            }
+            mQuit = false;
+            mOpened = false;
+            mWriter = new Thread(mWriteLoop, "SnakeLeaderboard");
+            mWriter.setPriority(Thread.MIN_PRIORITY);
+            mWriter.start();
+        }
+    }
+
+    /**
+     * Writes every queued game and stops the background thread.
+     */
+    // 写完所有对局后停止
+    public void close() {
+        Thread writer;
+        synchronized (mLock) {
+            writer = mWriter;
+            mWriter = null;
+            mQuit = true;
+            mLock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queues a finished game; it is written and indexed in the background.
+     */
+    // 记录一局（只是放入队列）
+    public void record(Game game) {
+        synchronized (mLock) {
+            mPending.add(game);
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the index is open and every game queued so far has been
+     * written.
+     */
+    // 等待索引打开并写完已经排队的对局
+    public void flush() throws InterruptedException {
+        synchronized (mLock) {
+            while (mWriter != null && (!mOpened || !mPending.isEmpty() || mWriting > 0)) {
+                mLock.wait();
+            }
+        }
+    }
+
+    // 最近一次读写失败的原因，没有时为null
+    public IOException getError() {
+        return mError;
+    }
+
+    // 索引是否已经打开
+    public boolean isOpen() {
+        synchronized (mIndexLock) {
+            return mIndex != null;
+        }
+    }
+
+    // 记录的总局数
+    public long getGameCount() {
+        synchronized (mIndexLock) {
+            return mIndex == null ? 0 : mIndex.getLong(HEADER_RECORDS);
+        }
+    }
+
+    // 最高分，没有记录时为0
+    public int getBestScore() {
+        synchronized (mIndexLock) {
+            if (mIndex == null || mIndex.getInt(HEADER_TOP) == 0) {
+                return 0;
+            }
+            return readGame(mIndex, TOP_OFFSET).score;
+        }
+    }
+
+    /**
+     * Returns up to count best games, best first; of equal scores the
+     * earlier game comes first.
+     */
+    // 前count名
+    public List<Game> getTopScores(int count) {
+        List<Game> games = new ArrayList<Game>();
+        synchronized (mIndexLock) {
+            if (mIndex == null) {
+                return games;
+            }
+            int n = Math.min(count, mIndex.getInt(HEADER_TOP));
+            for (int i = 0; i < n; i++) {
+                games.add(readGame(mIndex, TOP_OFFSET + i * RECORD_BYTES));
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Returns the totals of the given day (see dayOf), or null if no game
+     * was recorded on it within the last DAY_COUNT days.
+     */
+    // 某一天的统计
+    public Day getDay(long day) {
+        synchronized (mIndexLock) {
+            if (mIndex == null) {
+                return null;
+            }
+            int offset = dayOffset(day);
+            if (mIndex.getLong(offset) != day || mIndex.getInt(offset + 8) == 0) {
+                return null;
+            }
+            return readDay(mIndex, offset);
+        }
+    }
+
+    // 某个时刻是哪一天（默认时区，从1970-01-01起）
+    public static long dayOf(long timeMillis) {
+        long local = timeMillis + TimeZone.getDefault().getOffset(timeMillis);
+        // 向下取整（1970年以前为负）
+        return local >= 0 ? local / DAY_MILLIS : (local - DAY_MILLIS + 1) / DAY_MILLIS;
+    }
+
+    private final Runnable mWriteLoop = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                open();
+            } catch (IOException e) {
+                mError = e;
+            }
+            synchronized (mLock) {
+                mOpened = true;
+                mLock.notifyAll();
+            }
+            List<Game> batch = new ArrayList<Game>();
+            while (true) {
+                boolean quit;
+                synchronized (mLock) {
+                    mWriting = 0;
+                    mLock.notifyAll();
+                    try {
+                        while (!mQuit && mPending.isEmpty()) {
+                            mLock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        mQuit = true;
+                    }
+                    quit = mQuit;
+                    batch.clear();
+                    batch.addAll(mPending);
+                    mPending.clear();
+                    mWriting = batch.size();
+                }
+                if (!batch.isEmpty() && mLog != null) {
+                    try {
+                        append(batch);
+                    } catch (IOException e) {
+                        mError = e;
+                    }
+                }
+                if (quit) {
+                    closeFiles();
+                    synchronized (mLock) {
+                        mWriting = 0;
+                        mLock.notifyAll();
+                    }
+                    return;
+                }
+            }
+        }
+    };
+
+    // 打开日志和索引：索引落后时只读日志的尾部，索引无效时从整个日志重建
+    private void open() throws IOException {
+        File dir = mLogFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        mLogOutput = new FileOutputStream(mLogFile, true);
+        mLog = mLogOutput.getChannel();
+        // 去掉崩溃时写了一半的记录
+        long records = mLog.size() / RECORD_BYTES;
+        if (mLog.size() != records * RECORD_BYTES) {
+            mLog.truncate(records * RECORD_BYTES);
+        }
+
+        boolean fresh = !mIndexFile.exists() || mIndexFile.length() != INDEX_BYTES;
+        mIndexAccess = new RandomAccessFile(mIndexFile, "rw");
+        mIndexAccess.setLength(INDEX_BYTES);
+        MappedByteBuffer index = mIndexAccess.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, 0, INDEX_BYTES);
+        long covered = index.getLong(HEADER_RECORDS);
+        if (fresh || index.getInt(0) != INDEX_MAGIC
+                || index.getInt(4) != INDEX_VERSION || covered < 0
+                || covered > records || index.getInt(HEADER_TOP) < 0
+                || index.getInt(HEADER_TOP) > TOP_COUNT) {
+            // 重建：清空索引
+            for (int i = 0; i < INDEX_BYTES; i += 8) {
+                index.putLong(i, 0);
+            }
+            index.putInt(0, INDEX_MAGIC);
+            index.putInt(4, INDEX_VERSION);
+            covered = 0;
+        }
+        synchronized (mIndexLock) {
+            mIndex = index;
+        }
+        // 把索引还没有包含的记录补进去
+        if (covered < records) {
+            FileChannel in = new RandomAccessFile(mLogFile, "r").getChannel();
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(READ_BATCH * RECORD_BYTES);
+                long position = covered * RECORD_BYTES;
+                Game game = new Game();
+                while (position < records * RECORD_BYTES) {
+                    buffer.clear();
+                    long remaining = records * RECORD_BYTES - position;
+                    if (remaining < buffer.capacity()) {
+                        buffer.limit((int) remaining);
+                    }
+                    while (buffer.hasRemaining()) {
+                        if (in.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException("Log shrank while reading");
+                        }
+                    }
+                    buffer.flip();
+                    int count = buffer.remaining() / RECORD_BYTES;
+                    synchronized (mIndexLock) {
+                        for (int i = 0; i < count; i++) {
+                            int offset = i * RECORD_BYTES;
+                            // 损坏的记录不计入索引
+                            if (checkRecord(buffer, offset)) {
+                                readGame(buffer, offset, game);
+                                indexGame(game, buffer, offset);
+                            }
+                        }
+                        mIndex.putLong(HEADER_RECORDS,
+                                mIndex.getLong(HEADER_RECORDS) + count);
+                    }
+                    position += count * RECORD_BYTES;
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    // 把一批对局追加到日志，再加入索引
+    private void append(List<Game> batch) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(batch.size() * RECORD_BYTES);
+        for (Game game : batch) {
+            writeRecord(buffer, game);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            mLog.write(buffer);
+        }
+        mLog.force(false);
+        synchronized (mIndexLock) {
+            for (int i = 0; i < batch.size(); i++) {
+                indexGame(batch.get(i), buffer, i * RECORD_BYTES);
+            }
+            // 最后才更新包含的记录数
+            mIndex.putLong(HEADER_RECORDS, mIndex.getLong(HEADER_RECORDS)
+                    + batch.size());
+        }
+    }
+
+    /**
+     * Adds one game to the top list and its day. Caller holds mIndexLock.
+     *
+     * @param record
+     *            the game's log record, copied into the top list as is
+     */
+    // 把一局加入前N名和当天的统计
+    private void indexGame(Game game, ByteBuffer record, int recordOffset) {
+        MappedByteBuffer index = mIndex;
+        // 前N名：找到插入位置，后面的依次后移
+        int top = index.getInt(HEADER_TOP);
+        int position = top;
+        while (position > 0 && index.getInt(TOP_OFFSET
+                + (position - 1) * RECORD_BYTES + 16) < game.score) {
+            position--;
+        }
+        if (position < TOP_COUNT) {
+            int last = Math.min(top, TOP_COUNT - 1);
+            for (int i = last; i > position; i--) {
+                copyTop(index, i - 1, i);
+            }
+            for (int b = 0; b < RECORD_BYTES; b++) {
+                index.put(TOP_OFFSET + position * RECORD_BYTES + b,
+                        record.get(recordOffset + b));
+            }
+            if (top < TOP_COUNT) {
+                index.putInt(HEADER_TOP, top + 1);
+            }
+        }
+
+        // 每日统计：环形保存最近DAY_COUNT天，旧的一天被新的覆盖
+        long day = dayOf(game.timeMillis);
+        int offset = dayOffset(day);
+        long stored = index.getLong(offset);
+        if (stored != day || index.getInt(offset + 8) == 0) {
+            if (stored > day && index.getInt(offset + 8) > 0) {
+                // 比这一格里的日期还早，已经超出范围
+                return;
+            }
+            index.putLong(offset, day);
+            index.putInt(offset + 8, 0);
+            index.putLong(offset + 12, 0);
+            index.putInt(offset + 20, 0);
+            index.putLong(offset + 24, 0);
+        }
+        index.putInt(offset + 8, index.getInt(offset + 8) + 1);
+        index.putLong(offset + 12, index.getLong(offset + 12) + game.score);
+        index.putInt(offset + 20, Math.max(index.getInt(offset + 20), game.score));
+        index.putLong(offset + 24, index.getLong(offset + 24) + game.durationMillis);
+    }
+
+    private static void copyTop(ByteBuffer index, int from, int to) {
+        int src = TOP_OFFSET + from * RECORD_BYTES;
+        int dst = TOP_OFFSET + to * RECORD_BYTES;
+        for (int b = 0; b < RECORD_BYTES; b += 4) {
+            index.putInt(dst + b, index.getInt(src + b));
+        }
+    }
+
+    private static int dayOffset(long day) {
+        int slot = (int) (((day % DAY_COUNT) + DAY_COUNT) % DAY_COUNT);
+        return DAY_OFFSET + slot * DAY_BYTES;
+    }
+
+    // 对局记录：种子、时刻、得分、长度、时长，最后是前面28字节的CRC
+    private void writeRecord(ByteBuffer buffer, Game game) {
+        int start = buffer.position();
+        buffer.putLong(game.seed);
+        buffer.putLong(game.timeMillis);
+        buffer.putInt(game.score);
+        buffer.putInt(game.length);
+        buffer.putInt(game.durationMillis);
+        mCrc.reset();
+        mCrc.update(buffer.array(), start, RECORD_DATA_BYTES);
+        buffer.putInt((int) mCrc.getValue());
+    }
+
+    private boolean checkRecord(ByteBuffer buffer, int offset) {
+        mCrc.reset();
+        mCrc.update(buffer.array(), offset, RECORD_DATA_BYTES);
+        return buffer.getInt(offset + RECORD_DATA_BYTES) == (int) mCrc.getValue();
+    }
+
+    private static Game readGame(ByteBuffer buffer, int offset) {
+        Game game = new Game();
+        readGame(buffer, offset, game);
+        return game;
+    }
+
+    private static void readGame(ByteBuffer buffer, int offset, Game game) {
+        game.seed = buffer.getLong(offset);
+        game.timeMillis = buffer.getLong(offset + 8);
+        game.score = buffer.getInt(offset + 16);
+        game.length = buffer.getInt(offset + 20);
+        game.durationMillis = buffer.getInt(offset + 24);
+    }
+
+    private static Day readDay(ByteBuffer buffer, int offset) {
+        Day day = new Day();
+        day.day = buffer.getLong(offset);
+        day.games = buffer.getInt(offset + 8);
+        day.totalScore = buffer.getLong(offset + 12);
+        day.bestScore = buffer.getInt(offset + 20);
+        day.totalDurationMillis = buffer.getLong(offset + 24);
+        return day;
+    }
+
+    private void closeFiles() {
+        synchronized (mIndexLock) {
+            if (mIndex != null) {
+                mIndex.force();
+                mIndex = null;
+            }
+        }
+        try {
+            if (mIndexAccess != null) {
+                mIndexAccess.close();
+            }
+            if (mLogOutput != null) {
+                mLogOutput.close();
+            }
+        } catch (IOException e) {
+            mError = e;
+        }
+        mIndexAccess = null;
+        mLogOutput = null;
+        mLog = null;
+    }
+}
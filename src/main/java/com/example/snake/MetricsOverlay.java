@@ -0,0 +1,57 @@
+package com.example.snake;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * MetricsOverlay: draws the lines of a GameMetrics in the top left corner of
+ * a canvas, over a translucent background.
+ *
+ * Each drawing thread needs its own instance, since the text is formatted
+ * into a reused char buffer.
+ *
+ */
+// 调试浮层：把GameMetrics画在画布左上角（每个绘制线程一个实例）
+public class MetricsOverlay {
+
+    private final Paint mTextPaint = new Paint();
+    private final Paint mBackgroundPaint = new Paint();
+    private final char[] mLine = new char[GameMetrics.MAX_LINE];
+    private final float mLineHeight;
+    private final float mPadding;
+    private final float mWidth;
+
+    /**
+     * @param textSize
+     *            text size in pixels
+     */
+    public MetricsOverlay(float textSize) {
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(textSize);
+        mTextPaint.setAntiAlias(true);
+        mTextPaint.setTypeface(Typeface.MONOSPACE);
+        mBackgroundPaint.setColor(0x80000000);
+        mLineHeight = textSize * 1.25f;
+        mPadding = textSize / 2;
+        // 等宽字体，按最长一行的字符数算宽度
+        mWidth = mTextPaint.measureText("0") * GameMetrics.MAX_LINE + 2 * mPadding;
+    }
+
+    // 浮层的高度（像素），用于只刷新这块区域
+    public int getHeight() {
+        return (int) Math.ceil(mLineHeight * GameMetrics.LINE_COUNT + 2 * mPadding);
+    }
+
+    // 画出所有行
+    public void draw(Canvas canvas, GameMetrics metrics) {
+        canvas.drawRect(0, 0, mWidth, getHeight(), mBackgroundPaint);
+        float y = mPadding - mTextPaint.ascent();
+        for (int line = 0; line < GameMetrics.LINE_COUNT; line++) {
+            int length = metrics.formatLine(line, mLine);
+            canvas.drawText(mLine, 0, length, mPadding, y, mTextPaint);
+            y += mLineHeight;
+        }
+    }
+}
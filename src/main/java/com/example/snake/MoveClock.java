@@ -0,0 +1,80 @@
+package com.example.snake;
+
+/**
+ * MoveClock: when the snake's moves are due, on an absolute timeline.
+ *
+ * Each move is due one move delay after the previous one was due, not after
+ * it actually ran, so moves made late (or several in one frame, when the
+ * delay is shorter than a frame) keep the average speed exact. After a pause
+ * or a long stall the backlog is dropped instead of replayed in a burst.
+ *
+ */
+// 移动时钟：按绝对时间线安排每一步，晚了不累积误差
+public class MoveClock {
+
+    // 下一步应该执行的时刻（纳秒）
+    private long mNextMove;
+
+    /**
+     * Starts or resumes the clock: a move that is already overdue becomes due
+     * now rather than being caught up.
+     */
+    // 开始或恢复：过期的步骤马上执行一次，不追赶
+    public void resume(long now) {
+        if (now - mNextMove > 0) {
+            mNextMove = now;
+        }
+    }
+
+    // 下一步是否到时间了
+    public boolean isDue(long now) {
+        return now - mNextMove >= 0;
+    }
+
+    /**
+     * Records that the due move was made; the next one is due delayNanos
+     * after it.
+     */
+    // 执行了一步，下一步在一个移动延迟之后
+    public void advance(long delayNanos) {
+        mNextMove += delayNanos;
+    }
+
+    /**
+     * Drops the backlog after a long stall: of the moves already due only
+     * one is still made, due now.
+     *
+     * @return how many due moves were dropped
+     */
+    // 落后太多时丢弃积压的步骤（只保留一步），返回丢弃的步数
+    public long dropBacklog(long now, long delayNanos) {
+        if (!isDue(now)) {
+            return 0;
+        }
+        long dropped = delayNanos > 0 ? (now - mNextMove) / delayNanos : 0;
+        mNextMove = now;
+        return dropped;
+    }
+
+    public long getNextMove() {
+        return mNextMove;
+    }
+
+    // 到下一步的毫秒数（向上取整，不为负）
+    public long millisUntilNext(long now) {
+        return Math.max(0, (mNextMove - now + 999999) / 1000000L);
+    }
+
+    /**
+     * Returns how far the current move has progressed, from 0 right after a
+     * move to 1 when the next one is due.
+     */
+    // 这一步已经过去的比例（0到1）
+    public float progress(long now, long delayNanos) {
+        if (delayNanos <= 0) {
+            return 1f;
+        }
+        float f = 1f - (float) (mNextMove - now) / delayNanos;
+        return Math.max(0f, Math.min(1f, f));
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.snake;
+
+import java.util.Random;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.util.Log;
+
+/**
+ * MultiBoardView: N games played by the autopilot side by side in a grid,
+ * e.g. for AI matches or an attract screen.
+ *
+ * All boards are laid out on this view's single tile grid, so they share one
+ * tile atlas, one static layer holding every wall and one retained board
+ * bitmap. A tick only repaints the cells its moves changed and a frame is
+ * two bitmap draws, so frame time stays flat as boards are added. The boards
+ * also share one Autopilot, since they are all stepped on the UI thread.
+ *
+ * A finished game stays on screen for a moment and then starts over with a
+ * new seed.
+ *
+ */
+// 多棋盘视图：在一个贴片网格上同时显示多局自动驾驶的游戏，共用图集、静态图层和画板
+public class MultiBoardView extends TileView {
+
+    private static final String TAG = "Deaboway";
+
+    // 每个棋盘至少的贴片数（含墙），再小放不下初始的蛇
+    public static final int MIN_BOARD = 10;
+    // 一局结束后停留的时间
+    private static final long RESTART_DELAY = 1000;
+
+    // 棋盘数量，以及排成的行列数和每个棋盘的大小
+    private int mBoardCount = 4;
+    private int mColumns;
+    private int mRows;
+    private int mBoardWidth;
+    private int mBoardHeight;
+    private Board[] mBoards = new Board[0];
+
+    // 所有棋盘共用的自动驾驶（都在UI线程上走）
+    private final Autopilot mAutopilot = new Autopilot();
+    private final Random mRandom = new Random();
+    private boolean mRunning;
+
+    private final RefreshHandler mRedrawHandler = new RefreshHandler();
+
+    // 一个棋盘：引擎和它在贴片网格上的位置
+    class Board implements GameEngine.Listener {
+        final GameEngine mEngine = new GameEngine(0);
+        final int mLeft;
+        final int mTop;
+        // 下一次移动（或重新开始）的时刻
+        long mNextMove;
+
+        Board(int left, int top) {
+            mLeft = left;
+            mTop = top;
+            mEngine.resize(mBoardWidth, mBoardHeight);
+            mEngine.setListener(this);
+        }
+
+        @Override
+        public void onCellChanged(int x, int y, int content) {
+            setTile(SnakeView.tileFor(content), mLeft + x, mTop + y);
+        }
+
+        // 开始新的一局：清空墙内的贴片，画出蛇（苹果由监听器画出）
+        void newGame(long now) {
+            for (int y = 1; y < mBoardHeight - 1; y++) {
+                for (int x = 1; x < mBoardWidth - 1; x++) {
+                    setTile(0, mLeft + x, mTop + y);
+                }
+            }
+            mEngine.newGame(mRandom.nextLong());
+            SnakeBody snake = mEngine.getSnake();
+            for (int index = 0; index < snake.size(); index++) {
+                int c = snake.get(index);
+                setTile(index == 0 ? SnakeView.YELLOW_STAR : SnakeView.RED_STAR,
+                        mLeft + SnakeBody.unpackX(c), mTop + SnakeBody.unpackY(c));
+            }
+            mNextMove = now + mEngine.getMoveDelay();
+        }
+
+        // 到时间就走一步；结束的游戏停留一会儿后重新开始
+        void update(long now) {
+            if (now < mNextMove) {
+                return;
+            }
+            if (mEngine.isOver()) {
+                newGame(now);
+                return;
+            }
+            int result = mEngine.step(mAutopilot.chooseDirection(mEngine));
+            if (result == GameEngine.DIED || result == GameEngine.WON) {
+                mNextMove = now + RESTART_DELAY;
+            } else {
+                mNextMove = now + mEngine.getMoveDelay();
+            }
+        }
+    }
+
+    class RefreshHandler extends Handler {
+
+        @Override
+        public void handleMessage(Message msg) {
+            MultiBoardView.this.update();
+        }
+
+        public void sleep(long delayMillis) {
+            this.removeMessages(0);
+            sendMessageDelayed(obtainMessage(0), delayMillis);
+        }
+    }
+
+    public MultiBoardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        initMultiBoardView();
+    }
+
+    public MultiBoardView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        initMultiBoardView();
+    }
+
+    // 与SnakeView使用相同（缓存）的贴片
+    private void initMultiBoardView() {
+        SnakeView.loadStarTiles(this);
+    }
+
+    /**
+     * Sets how many games to show. Takes effect at once if the view already
+     * has a size.
+     *
+     * @param count
+     */
+    // 设置棋盘数量
+    public void setBoardCount(int count) {
+        mBoardCount = Math.max(count, 1);
+        if (getWidth() > 0 && getHeight() > 0) {
+            onSizeChanged(getWidth(), getHeight(), getWidth(), getHeight());
+        }
+    }
+
+    // 实际显示的棋盘数量（太小放不下时为0）
+    public int getBoardCount() {
+        return mBoards.length;
+    }
+
+    public GameEngine getEngine(int board) {
+        return mBoards[board].mEngine;
+    }
+
+    // 开始所有游戏
+    public void start() {
+        mRunning = true;
+        update();
+    }
+
+    // 暂停所有游戏
+    public void stop() {
+        mRunning = false;
+        mRedrawHandler.removeMessages(0);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stop();
+    }
+
+    // 尺寸改变时重新排列棋盘，所有游戏重新开始
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        layoutBoards(w / mTileSize, h / mTileSize);
+        super.onSizeChanged(w, h, oldw, oldh);
+        long now = SystemClock.uptimeMillis();
+        for (Board board : mBoards) {
+            board.newGame(now);
+        }
+        invalidate();
+        update();
+    }
+
+    // 按接近正方形的行列排列棋盘，每个棋盘一样大
+    private void layoutBoards(int xTileCount, int yTileCount) {
+        mColumns = (int) Math.ceil(Math.sqrt(mBoardCount));
+        mRows = (mBoardCount + mColumns - 1) / mColumns;
+        mBoardWidth = xTileCount / mColumns;
+        mBoardHeight = yTileCount / mRows;
+        if (mBoardWidth < MIN_BOARD || mBoardHeight < MIN_BOARD) {
+            Log.w(TAG, "No room for " + mBoardCount + " boards");
+            mBoards = new Board[0];
+            return;
+        }
+        mBoards = new Board[mBoardCount];
+        for (int i = 0; i < mBoardCount; i++) {
+            mBoards[i] = new Board(i % mColumns * mBoardWidth, i / mColumns
+                    * mBoardHeight);
+        }
+    }
+
+    // 每个棋盘的墙只画在静态图层上
+    @Override
+    protected void onBuildStaticLayer() {
+        for (Board board : mBoards) {
+            int right = board.mLeft + mBoardWidth - 1;
+            int bottom = board.mTop + mBoardHeight - 1;
+            for (int x = board.mLeft; x <= right; x++) {
+                setStaticTile(SnakeView.GREEN_STAR, x, board.mTop);
+                setStaticTile(SnakeView.GREEN_STAR, x, bottom);
+            }
+            for (int y = board.mTop + 1; y < bottom; y++) {
+                setStaticTile(SnakeView.GREEN_STAR, board.mLeft, y);
+                setStaticTile(SnakeView.GREEN_STAR, right, y);
+            }
+        }
+    }
+
+    /**
+     * Steps every board that is due, repaints only the changed tiles and
+     * sleeps until the next board is due.
+     */
+    // 推进到时间的棋盘，只刷新有变化的贴片
+    public void update() {
+        if (!mRunning || mBoards.length == 0 || !hasTileGrid()) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long next = Long.MAX_VALUE;
+        for (Board board : mBoards) {
+            board.update(now);
+            next = Math.min(next, board.mNextMove);
+        }
+        invalidateTiles();
+        mRedrawHandler.sleep(Math.max(next - now, 1));
+    }
+}
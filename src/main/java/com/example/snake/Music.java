@@ -1,23 +1,132 @@
 package com.example.snake;
 
+import java.io.IOException;
+
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioManager;
 import android.media.MediaPlayer;
+import android.media.SoundPool;
+import android.util.Log;
 
+/**
+ * Music: the background track and the short sound effects.
+ *
+ * The track is prepared asynchronously, so decoding never blocks the UI
+ * thread, and starts once it is ready. Effects are decoded into a SoundPool
+ * up front, so playing one is just a mix into an already open stream and can
+ * be called from the simulation thread every tick.
+ *
+ * Create one in onResume and release it in onPause.
+ *
+ */
+// 音频：异步准备的背景音乐，以及预先载入SoundPool的短音效
 public class Music {
-    private static MediaPlayer mp = null;
 
-    public static void play(Context context, int resource) {
-        stop(context);
-        mp = MediaPlayer.create(context, resource);
-        mp.setLooping(true);
-        mp.start();
+    private static final String TAG = "Deaboway";
+
+    // 音效
+    public static final int EFFECT_EAT = 0;
+    public static final int EFFECT_LOSE = 1;
+    private static final int[] EFFECT_RESOURCES = {R.raw.eat, R.raw.lose};
+
+    // 同时播放的音效数
+    private static final int MAX_STREAMS = 4;
+
+    private final Context mContext;
+    private MediaPlayer mPlayer;
+    // 音效可能在模拟线程上播放
+    private volatile SoundPool mSoundPool;
+    // 载入后的音效编号
+    private final int[] mSoundIds = new int[EFFECT_RESOURCES.length];
+
+    public Music(Context context) {
+        mContext = context;
+        // 音效很短，解码后常驻内存（载入本身在SoundPool的线程上进行）
+        mSoundPool = new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+        for (int i = 0; i < EFFECT_RESOURCES.length; i++) {
+            mSoundIds[i] = mSoundPool.load(context, EFFECT_RESOURCES[i], 1);
+        }
+    }
+
+    /**
+     * Starts looping the given track as soon as it has been prepared in the
+     * background.
+     *
+     * @param resource
+     */
+    // 异步准备背景音乐，准备好后开始循环播放
+    public synchronized void playMusic(int resource) {
+        stopMusic();
+        AssetFileDescriptor afd = mContext.getResources().openRawResourceFd(
+                resource);
+        final MediaPlayer player = new MediaPlayer();
+        try {
+            try {
+                player.setDataSource(afd.getFileDescriptor(),
+                        afd.getStartOffset(), afd.getLength());
+            } finally {
+                afd.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot open music", e);
+            player.release();
+            return;
+        }
+        player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        player.setLooping(true);
+        player.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            @Override
+            public void onPrepared(MediaPlayer mp) {
+                synchronized (Music.this) {
+                    // 准备期间可能已经停止或换了音乐
+                    if (mPlayer == mp) {
+                        mp.start();
+                    }
+                }
+            }
+        });
+        player.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            @Override
+            public boolean onError(MediaPlayer mp, int what, int extra) {
+                Log.w(TAG, "Music error " + what + "/" + extra);
+                return true;
+            }
+        });
+        mPlayer = player;
+        player.prepareAsync();
+    }
+
+    // 停止背景音乐
+    public synchronized void stopMusic() {
+        if (mPlayer != null) {
+            // 还在准备时也可以直接release
+            mPlayer.release();
+            mPlayer = null;
+        }
+    }
+
+    /**
+     * Plays a preloaded effect. Safe to call from any thread; does nothing
+     * once released or before the effect has finished loading.
+     *
+     * @param effect
+     *            EFFECT_EAT or EFFECT_LOSE
+     */
+    // 播放音效（任何线程都可调用）
+    public void playEffect(int effect) {
+        SoundPool pool = mSoundPool;
+        if (pool != null) {
+            pool.play(mSoundIds[effect], 1f, 1f, 1, 0, 1f);
+        }
     }
 
-    public static void stop(Context context) {
-        if (mp != null) {
-            mp.stop();
-            mp.release();
-            mp = null;
+    // 释放音乐和音效占用的资源
+    public synchronized void release() {
+        stopMusic();
+        if (mSoundPool != null) {
+            mSoundPool.release();
+            mSoundPool = null;
         }
     }
 }
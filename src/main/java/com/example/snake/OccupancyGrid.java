@@ -0,0 +1,113 @@
+package com.example.snake;
+
+import java.util.Arrays;
+
+/**
+ * OccupancyGrid: one byte per garden cell recording whether the snake covers
+ * it and how many apples lie on it.
+ *
+ * The grid is kept in step with the snake (head pushed, tail popped) and the
+ * apple list, so collision and apple tests are a single array lookup no
+ * matter how long the snake is. Boards larger than ChunkedGrid.SPARSE_CELLS
+ * keep the same bytes in a ChunkedGrid, so memory follows the occupied area.
+ *
+ */
+// 占用表：每个格子一个字节，记录是否被蛇占据、有几个苹果。蛇头入队、蛇尾出队时增量更新
+public class OccupancyGrid {
+
+    // 最低位：蛇身标志
+    private static final int SNAKE = 0x01;
+    // 其余位：苹果个数（每个苹果加2）
+    private static final int APPLE = 0x02;
+    private static final int APPLE_MASK = 0xFE;
+
+    private byte[] mCells = new byte[0];
+    // 大棋盘的分块存储，小棋盘时为null
+    private ChunkedGrid mSparse;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Resizes the grid to the given number of tiles and empties it.
+     */
+    // 重新设置大小，并清空
+    public void resize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        int count = width * height;
+        if (count > ChunkedGrid.SPARSE_CELLS) {
+            mCells = new byte[0];
+            mSparse = new ChunkedGrid(width, height);
+            return;
+        }
+        mSparse = null;
+        if (mCells.length < count) {
+            mCells = new byte[count];
+        } else {
+            clear();
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    // 清空所有格子
+    public void clear() {
+        if (mSparse != null) {
+            mSparse.clear();
+            return;
+        }
+        Arrays.fill(mCells, 0, mWidth * mHeight, (byte) 0);
+    }
+
+    // 坐标是否在表内
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < mWidth && y < mHeight;
+    }
+
+    public boolean isSnake(int x, int y) {
+        return (get(x, y) & SNAKE) != 0;
+    }
+
+    public void setSnake(int x, int y) {
+        set(x, y, get(x, y) | SNAKE);
+    }
+
+    public void clearSnake(int x, int y) {
+        set(x, y, get(x, y) & ~SNAKE);
+    }
+
+    // 该格子上的苹果个数
+    public int appleCount(int x, int y) {
+        return (get(x, y) & APPLE_MASK) >> 1;
+    }
+
+    public void addApple(int x, int y) {
+        set(x, y, get(x, y) + APPLE);
+    }
+
+    // 移除该格子上的所有苹果
+    public void clearApples(int x, int y) {
+        set(x, y, get(x, y) & SNAKE);
+    }
+
+    private int get(int x, int y) {
+        if (mSparse != null) {
+            return mSparse.get(x, y) & 0xFF;
+        }
+        return mCells[y * mWidth + x] & 0xFF;
+    }
+
+    private void set(int x, int y, int value) {
+        if (mSparse != null) {
+            mSparse.set(x, y, value);
+        } else {
+            mCells[y * mWidth + x] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.snake;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Replay: everything needed to re-run a game exactly, namely the board size,
+ * the engine seed and the direction applied on every tick, plus the final
+ * score so a re-run can be checked.
+ *
+ * Directions take 2 bits per tick, so an hour-long game at full speed is a
+ * few kilobytes.
+ *
+ * File layout:
+ * <pre>
+ * magic "SNKR", version      int, byte
+ * width, height              short each
+ * seed, final score          long each
+ * tick count                 int
+ * directions                 2 bits per tick (direction - 1), low bits first
+ * </pre>
+ *
+ */
+// 回放：棋盘大小、种子和每一步的方向（每步2位），以及最终得分
+public class Replay {
+
+    private static final int MAGIC = 0x534E4B52;
+    private static final int VERSION = 1;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final long mSeed;
+    private long mScore;
+
+    // 每步的方向，每个字节4步
+    private byte[] mDirections;
+    private int mTickCount;
+
+    public Replay(int width, int height, long seed) {
+        this(width, height, seed, new byte[64], 0);
+    }
+
+    private Replay(int width, int height, long seed, byte[] directions,
+            int tickCount) {
+        mWidth = width;
+        mHeight = height;
+        mSeed = seed;
+        mDirections = directions;
+        mTickCount = tickCount;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    // 记录的最终得分
+    public long getScore() {
+        return mScore;
+    }
+
+    public void setScore(long score) {
+        mScore = score;
+    }
+
+    public int getTickCount() {
+        return mTickCount;
+    }
+
+    /**
+     * Appends the direction the engine applied on the next tick.
+     */
+    // 记录一步的方向
+    public void record(int direction) {
+        if (mTickCount / 4 == mDirections.length) {
+            mDirections = Arrays.copyOf(mDirections, mDirections.length * 2);
+        }
+        int shift = (mTickCount & 3) * 2;
+        mDirections[mTickCount >> 2] |= (byte) ((direction - 1) << shift);
+        mTickCount++;
+    }
+
+    // 第tick步的方向
+    public int getDirection(int tick) {
+        int shift = (tick & 3) * 2;
+        return ((mDirections[tick >> 2] >> shift) & 3) + 1;
+    }
+
+    /**
+     * Writes the replay. The stream is not closed.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(mWidth);
+        out.writeShort(mHeight);
+        out.writeLong(mSeed);
+        out.writeLong(mScore);
+        out.writeInt(mTickCount);
+        out.write(mDirections, 0, (mTickCount + 3) / 4);
+        out.flush();
+    }
+
+    /**
+     * Reads a replay written by {@link #writeTo}. The stream is not closed.
+     *
+     * @throws IOException if the stream is truncated or is not a replay
+     */
+    public static Replay readFrom(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Not a replay");
+        }
+        int width = in.readUnsignedShort();
+        int height = in.readUnsignedShort();
+        long seed = in.readLong();
+        long score = in.readLong();
+        int tickCount = in.readInt();
+        if (tickCount < 0) {
+            throw new IOException("Bad tick count " + tickCount);
+        }
+        byte[] directions = new byte[Math.max(64, (tickCount + 3) / 4)];
+        in.readFully(directions, 0, (tickCount + 3) / 4);
+        Replay replay = new Replay(width, height, seed, directions, tickCount);
+        replay.mScore = score;
+        return replay;
+    }
+}
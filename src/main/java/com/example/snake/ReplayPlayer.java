@@ -0,0 +1,89 @@
+package com.example.snake;
+
+/**
+ * ReplayPlayer: re-runs a Replay on a GameEngine, one recorded direction per
+ * tick.
+ *
+ * A view can drive it tick by tick with {@link #nextDirection()}; headless
+ * callers use {@link #play}, either paced by the engine's move delay like the
+ * original game or as fast as possible.
+ *
+ */
+// 回放播放器：每步使用记录的方向重新运行游戏
+public class ReplayPlayer {
+
+    private final Replay mReplay;
+    private int mTick;
+
+    public ReplayPlayer(Replay replay) {
+        mReplay = replay;
+    }
+
+    public Replay getReplay() {
+        return mReplay;
+    }
+
+    /**
+     * Starts the recorded game on the engine, which is resized to the
+     * recorded board.
+     */
+    // 在引擎上开始回放的游戏
+    public void start(GameEngine engine) {
+        engine.resize(mReplay.getWidth(), mReplay.getHeight());
+        engine.newGame(mReplay.getSeed());
+        mTick = 0;
+    }
+
+    public boolean hasNext() {
+        return mTick < mReplay.getTickCount();
+    }
+
+    // 已回放的步数
+    public int getTick() {
+        return mTick;
+    }
+
+    // 下一步的方向
+    public int nextDirection() {
+        return mReplay.getDirection(mTick++);
+    }
+
+    /**
+     * Plays the whole replay on the engine.
+     *
+     * @param paced
+     *            true to wait the engine's move delay before each tick, as
+     *            the game did; false to run as fast as possible
+     * @return the result of the last tick (GameEngine.MOVED, ATE, DIED or WON)
+     */
+    // 播放整个回放：按原来的速度，或者尽可能快
+    public int play(GameEngine engine, boolean paced)
+            throws InterruptedException {
+        start(engine);
+        int result = GameEngine.MOVED;
+        while (hasNext() && !engine.isOver()) {
+            if (paced) {
+                Thread.sleep(engine.getMoveDelay());
+            }
+            result = engine.step(nextDirection());
+        }
+        return result;
+    }
+
+    /**
+     * Plays the replay as fast as possible and checks the recorded score.
+     *
+     * @return true if the re-run reaches the recorded score
+     */
+    // 快速重跑，检查得分是否一致
+    public boolean verify(GameEngine engine) {
+        try {
+            play(engine, false);
+        } catch (InterruptedException e) {
+            // 不等待时不会被中断
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return engine.getScore() == mReplay.getScore();
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.snake;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RoomServer: hosts many independent snake rooms on a few worker threads.
+ *
+ * On the device one RefreshHandler loop drives one game. Here each room is
+ * a GameEngine whose next move is a timer on a TimingWheel, due one move
+ * delay after the previous one, so every room keeps its own speed as the
+ * delay shrinks with each apple. Rooms are spread round-robin over the
+ * workers; each worker owns its wheel and its rooms outright, so there are
+ * no locks on the tick path and no thread or timer per room.
+ *
+ * Moves are scheduled on an absolute timeline like SimulationThread. Each
+ * worker records how late every move ran (its tick lateness); a room that
+ * falls a whole move behind skips ahead instead of replaying a burst, and
+ * the skipped moves are counted.
+ *
+ */
+// 房间服务器：少量工作线程用时间轮调度成千上万个房间，每个房间按自己的速度前进
+public class RoomServer {
+
+    // 房间里的蛇由谁控制：玩家（setDirection）、随机转向、自动驾驶
+    public static final int PLAYER = 0;
+    public static final int RANDOM_BOT = 1;
+    public static final int AUTOPILOT_BOT = 2;
+
+    // 随机转向的概率（百分比）
+    private static final int RANDOM_TURN_PERCENT = 20;
+
+    private final Worker[] mWorkers;
+    private final long mResolutionNanos;
+    private final long mOrigin = System.nanoTime();
+    private int mNextWorker;
+    private final AtomicInteger mRoomCount = new AtomicInteger();
+
+    /**
+     * One game room; its next move is its timer.
+     */
+    // 一个房间：一局游戏，下一步是它在时间轮上的定时器
+    public static class Room extends TimingWheel.Entry {
+        private final GameEngine mEngine = new GameEngine(0);
+        private final int mBot;
+        private final GameRandom mBotRandom;
+        private final Autopilot mAutopilot;
+        private long mSeed;
+        // 玩家请求的方向，没有时为0
+        private final AtomicInteger mRequested = new AtomicInteger();
+        private volatile boolean mClosed;
+        // 下一步应该执行的时刻
+        private long mDue;
+        private volatile long mGames;
+
+        Room(int size, long seed, int bot) {
+            mBot = bot;
+            mSeed = seed;
+            mBotRandom = new GameRandom(~seed);
+            mAutopilot = bot == AUTOPILOT_BOT ? new Autopilot() : null;
+            mEngine.resize(size, size);
+            mEngine.newGame(seed);
+        }
+
+        // 玩家的方向，下一步生效（任何线程）
+        public void setDirection(int direction) {
+            mRequested.set(direction);
+        }
+
+        // 关闭房间，工作线程不再调度它（任何线程）
+        public void close() {
+            mClosed = true;
+        }
+
+        // 已经开始的局数
+        public long getGameCount() {
+            return mGames;
+        }
+
+        // 走一步，结束时开始新的一局
+        void step() {
+            int direction = mRequested.getAndSet(0);
+            if (mBot == RANDOM_BOT) {
+                direction = mBotRandom.nextInt(100) < RANDOM_TURN_PERCENT
+                        ? 1 + mBotRandom.nextInt(4) : mEngine.getDirection();
+            } else if (mBot == AUTOPILOT_BOT) {
+                direction = mAutopilot.chooseDirection(mEngine);
+            }
+            if (direction != 0) {
+                mEngine.step(direction);
+            } else {
+                mEngine.step();
+            }
+            if (mEngine.isOver()) {
+                mEngine.newGame(++mSeed);
+                mGames++;
+            }
+        }
+
+        long getMoveDelayNanos() {
+            return mEngine.getMoveDelay() * 1000000L;
+        }
+    }
+
+    /**
+     * A worker thread with its own wheel and rooms.
+     */
+    // 工作线程：自己的时间轮和房间，只有新房间通过队列交给它
+    private class Worker extends Thread {
+        private final TimingWheel mWheel = new TimingWheel(0);
+        private final ConcurrentLinkedQueue<Room> mAdded = new ConcurrentLinkedQueue<Room>();
+        private final LatencyHistogram mLateness = new LatencyHistogram();
+        private volatile long mSteps;
+        private volatile long mSkipped;
+        private volatile boolean mResetRequested;
+        private volatile boolean mRunning = true;
+
+        Worker(int index) {
+            super("SnakeRooms-" + index);
+        }
+
+        @Override
+        public void run() {
+            while (mRunning) {
+                if (mResetRequested) {
+                    mLateness.reset();
+                    mSteps = 0;
+                    mSkipped = 0;
+                    mResetRequested = false;
+                }
+                Room room;
+                while ((room = mAdded.poll()) != null) {
+                    room.mDue = System.nanoTime() + room.getMoveDelayNanos();
+                    mWheel.schedule(room, tickFor(room.mDue));
+                }
+
+                long now = System.nanoTime();
+                TimingWheel.Entry entry = mWheel.advance((now - mOrigin) / mResolutionNanos);
+                while (entry != null) {
+                    TimingWheel.Entry next = TimingWheel.next(entry);
+                    runMove((Room) entry);
+                    entry = next;
+                }
+
+                // 睡到下一个刻度
+                long wait = mOrigin + (mWheel.getNow() + 1) * mResolutionNanos
+                        - System.nanoTime();
+                if (mRunning && wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+            }
+        }
+
+        // 执行房间的一步，并安排下一步
+        private void runMove(Room room) {
+            if (room.mClosed) {
+                mRoomCount.decrementAndGet();
+                return;
+            }
+            long start = System.nanoTime();
+            mLateness.record(start - room.mDue);
+            room.step();
+            mSteps++;
+            room.mDue += room.getMoveDelayNanos();
+            // 落后一整步以上时不追赶
+            if (room.mDue - start < 0) {
+                room.mDue = start;
+                mSkipped++;
+            }
+            mWheel.schedule(room, tickFor(room.mDue));
+        }
+
+        void quit() {
+            mRunning = false;
+            LockSupport.unpark(this);
+        }
+    }
+
+    /**
+     * @param workers
+     *            number of worker threads, e.g. the number of cores
+     * @param resolutionNanos
+     *            length of one wheel tick; moves run at most this late on an
+     *            idle server
+     */
+    public RoomServer(int workers, long resolutionNanos) {
+        mResolutionNanos = resolutionNanos;
+        mWorkers = new Worker[workers];
+        for (int i = 0; i < workers; i++) {
+            mWorkers[i] = new Worker(i);
+        }
+    }
+
+    public void start() {
+        for (Worker worker : mWorkers) {
+            worker.start();
+        }
+    }
+
+    // 停止所有工作线程并等待它们结束
+    public void stop() throws InterruptedException {
+        for (Worker worker : mWorkers) {
+            worker.quit();
+        }
+        for (Worker worker : mWorkers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Creates a room with a size x size garden and hands it to the next
+     * worker; its first move is one move delay from now.
+     *
+     * @param bot
+     *            PLAYER, RANDOM_BOT or AUTOPILOT_BOT
+     */
+    // 新建一个房间并交给下一个工作线程
+    public Room addRoom(int size, long seed, int bot) {
+        Room room = new Room(size, seed, bot);
+        Worker worker;
+        synchronized (this) {
+            worker = mWorkers[mNextWorker];
+            mNextWorker = (mNextWorker + 1) % mWorkers.length;
+        }
+        mRoomCount.incrementAndGet();
+        worker.mAdded.add(room);
+        return room;
+    }
+
+    public int getRoomCount() {
+        return mRoomCount.get();
+    }
+
+    // 清零所有工作线程的统计（在各自的下一个刻度生效）
+    public void resetStats() {
+        for (Worker worker : mWorkers) {
+            worker.mResetRequested = true;
+        }
+    }
+
+    /**
+     * Returns the tick lateness of all workers merged into a new histogram;
+     * a slightly stale snapshot while the workers run.
+     */
+    // 所有工作线程的延迟合并后的直方图
+    public LatencyHistogram getLateness() {
+        LatencyHistogram lateness = new LatencyHistogram();
+        for (Worker worker : mWorkers) {
+            lateness.add(worker.mLateness);
+        }
+        return lateness;
+    }
+
+    // 执行的步数
+    public long getSteps() {
+        long steps = 0;
+        for (Worker worker : mWorkers) {
+            steps += worker.mSteps;
+        }
+        return steps;
+    }
+
+    // 因为落后一整步而跳过的次数
+    public long getSkipped() {
+        long skipped = 0;
+        for (Worker worker : mWorkers) {
+            skipped += worker.mSkipped;
+        }
+        return skipped;
+    }
+
+    // 某个时刻所在的刻度（向上取整，定时器不会提前到期）
+    private long tickFor(long nanos) {
+        return (nanos - mOrigin + mResolutionNanos - 1) / mResolutionNanos;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.snake;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SimulationThread: runs game ticks at a fixed timestep on its own thread.
+ *
+ * Ticks are scheduled on a MoveClock against System.nanoTime(), so a late
+ * wake-up is caught up with extra steps instead of drifting. If the thread
+ * falls more than MAX_CATCH_UP steps behind (e.g. it was descheduled) the
+ * backlog is dropped rather than replayed in a burst, and reported to the
+ * callback. After each batch of steps the callback publishes one frame.
+ *
+ */
+// 模拟线程：在独立线程上按固定时间步长运行游戏
+public class SimulationThread extends Thread {
+
+    /**
+     * Callback driven by the simulation thread.
+     */
+    public interface Callback {
+        /**
+         * Advances the game by one tick.
+         *
+         * @param latenessNanos
+         *            how long after it was due the tick runs
+         * @return nanoseconds until the next tick, or a negative value to
+         *         stop the thread
+         */
+        long onStep(long latenessNanos);
+
+        /**
+         * Called with the number of due ticks that were dropped instead of
+         * caught up.
+         */
+        void onDropped(long count);
+
+        /**
+         * Called after one or more steps, to hand a frame to the renderer.
+         */
+        void onPublishFrame();
+    }
+
+    // 一次最多追赶的步数
+    private static final int MAX_CATCH_UP = 5;
+
+    private final Callback mCallback;
+    private volatile boolean mRunning = true;
+
+    public SimulationThread(Callback callback) {
+        super("SnakeSimulation");
+        mCallback = callback;
+    }
+
+    // 请求停止（不等待线程结束）
+    public void quit() {
+        mRunning = false;
+        LockSupport.unpark(this);
+    }
+
+    @Override
+    public void run() {
+        MoveClock clock = new MoveClock();
+        clock.resume(System.nanoTime());
+        while (mRunning) {
+            long now = System.nanoTime();
+            int steps = 0;
+            // 到点的步骤全部执行，落后太多则丢弃
+            while (mRunning && clock.isDue(now)) {
+                long delay = mCallback.onStep(now - clock.getNextMove());
+                if (delay < 0) {
+                    mRunning = false;
+                    break;
+                }
+                clock.advance(delay);
+                if (++steps == MAX_CATCH_UP) {
+                    long dropped = clock.dropBacklog(now, delay);
+                    if (dropped > 0) {
+                        mCallback.onDropped(dropped);
+                    }
+                    break;
+                }
+            }
+            if (steps > 0) {
+                mCallback.onPublishFrame();
+            }
+            long wait = clock.getNextMove() - System.nanoTime();
+            if (mRunning && wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+}
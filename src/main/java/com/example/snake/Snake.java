@@ -2,7 +2,14 @@ package com.example.snake;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
+
+import java.io.File;
+
 /**
  * Snake: a simple game that everyone can enjoy.
  *
@@ -14,8 +21,26 @@ import android.widget.TextView;
  */
 // 贪吃蛇： 经典游戏，在一个花园中找苹果吃，吃了苹果会变长，速度变快。碰到自己和墙就挂掉。
 public class Snake extends Activity {
+    private static final String TAG = "Deaboway";
+
     private SnakeView mSnakeView;
     private static String ICICLE_KEY = "snake-view";
+    // 自动存档文件名
+    private static String AUTOSAVE_FILE = "autosave.journal";
+    // 最近一局的回放文件名
+    private static String REPLAY_FILE = "last.replay";
+    // 性能统计文件名
+    private static String METRICS_FILE = "metrics.txt";
+    // 排行榜目录
+    private static String LEADERBOARD_DIR = "leaderboard";
+    private AutosaveJournal mJournal;
+    private Leaderboard mLeaderboard;
+    // 音乐和音效，只在前台时持有
+    private Music mMusic;
+    // 创建时刻，以及第一帧是否已经画出（音频等到画出后再载入）
+    private long mCreateTime;
+    private boolean mFirstFrameDrawn;
+    private boolean mResumed;
     /**
      * Called when Activity is first created. Turns off the title bar, sets up
      * the content views, and fires up the SnakeView.
@@ -25,13 +50,36 @@ public class Snake extends Activity {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.snake_layout);
+        mCreateTime = SystemClock.uptimeMillis();
+        // Surface模式：游戏在独立线程上运行，画面由SnakeSurfaceView绘制（大地图模式不支持）
+        int worldSize = getResources().getInteger(R.integer.large_world_size);
+        boolean useSurface = worldSize == 0
+                && getResources().getBoolean(R.bool.use_surface_renderer);
+        setContentView(useSurface ? R.layout.snake_surface_layout
+                : R.layout.snake_layout);
         mSnakeView = (SnakeView) findViewById(R.id.snake);
         mSnakeView.setTextView((TextView) findViewById(R.id.text));
+        if (useSurface) {
+            mSnakeView.setSurfaceView((SnakeSurfaceView) findViewById(R.id.surface));
+        }
+        if (worldSize > 0) {
+            mSnakeView.setLargeWorld(worldSize, worldSize);
+        }
+        mJournal = new AutosaveJournal(new File(getFilesDir(), AUTOSAVE_FILE));
+        mSnakeView.setJournal(mJournal);
+        mSnakeView.setReplayFile(new File(getFilesDir(), REPLAY_FILE));
+        // 排行榜在后台线程打开和写入
+        mLeaderboard = new Leaderboard(new File(getFilesDir(), LEADERBOARD_DIR));
+        mLeaderboard.start();
+        mSnakeView.setLeaderboard(mLeaderboard);
+        mSnakeView.setShowMetrics(getResources().getBoolean(R.bool.show_metrics_overlay));
+        mSnakeView.setInterpolation(getResources().getBoolean(R.bool.interpolate_moves));
         // 检查存贮状态以确定是重新开始还是恢复状态
         if (savedInstanceState == null) {
-            // 存储状态为空，说明刚启动可以切换到准备状态
-            mSnakeView.setMode(SnakeView.READY);
+            // 存储状态为空：进程被杀前有自动存档就恢复，否则切换到准备状态
+            if (!mSnakeView.restoreAutosave()) {
+                mSnakeView.setMode(SnakeView.READY);
+            }
         } else {
             // 已经保存过，那么就去恢复原有状态
             Bundle map = savedInstanceState.getBundle(ICICLE_KEY);
@@ -43,6 +91,64 @@ public class Snake extends Activity {
                 mSnakeView.setMode(SnakeView.PAUSE);
             }
         }
+        // 恢复完成后再开始写存档
+        mJournal.start();
+        waitForFirstFrame();
+    }
+
+    /**
+     * Logs the time from onCreate to the first frame, then loads what the
+     * first frame does not need (the audio).
+     */
+    // 第一帧画出后记录启动耗时，再载入非必需的资源
+    private void waitForFirstFrame() {
+        final View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                        // 排在这一帧绘制之后执行
+                        decor.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                Log.i(TAG, "Time to first frame: "
+                                        + (SystemClock.uptimeMillis() - mCreateTime)
+                                        + " ms");
+                                mFirstFrameDrawn = true;
+                                if (mResumed) {
+                                    startAudio();
+                                }
+                            }
+                        });
+                        return true;
+                    }
+                });
+    }
+
+    // 载入音效并在后台准备音乐
+    private void startAudio() {
+        mMusic = new Music(this);
+        if (getResources().getBoolean(R.bool.play_music)) {
+            mMusic.playMusic(R.raw.goldensnake);
+        }
+        mSnakeView.setMusic(mMusic);
+    }
+    // 销毁时写完剩余的存档记录和排行榜
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mJournal.close();
+        mLeaderboard.close();
+    }
+    // 回到前台时载入音频（启动时等到第一帧画出之后）
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mResumed = true;
+        if (mFirstFrameDrawn) {
+            startAudio();
+        }
     }
     // 暂停事件被触发时
     @Override
@@ -50,6 +156,23 @@ public class Snake extends Activity {
         super.onPause();
         // Pause the game along with the activity
         mSnakeView.setMode(SnakeView.PAUSE);
+        // 释放音频资源
+        mResumed = false;
+        mSnakeView.setMusic(null);
+        if (mMusic != null) {
+            mMusic.release();
+            mMusic = null;
+        }
+        // 把性能统计写到logcat和文件
+        mSnakeView.dumpMetrics(new File(getFilesDir(), METRICS_FILE));
+    }
+    // 内存紧张时丢掉缓存的贴片，下次创建视图时重新载入
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            TileCache.clear();
+        }
     }
     // 状态保存
     @Override
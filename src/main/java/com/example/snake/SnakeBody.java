@@ -0,0 +1,163 @@
+package com.example.snake;
+
+/**
+ * SnakeBody: the segments of the snake, head first, stored as packed int
+ * coordinates in a ring buffer.
+ *
+ * Moving the snake pushes a new head and pops the tail, both of which are O(1)
+ * and allocation free. The backing array only grows (by doubling) when the
+ * snake gets longer than it has ever been.
+ *
+ */
+// 蛇身：环形缓冲区，坐标打包成一个int，头部入队、尾部出队都是O(1)且不分配对象
+public class SnakeBody {
+
+    // 初始容量（必须是2的幂）
+    private static final int INITIAL_CAPACITY = 64;
+
+    // 打包后的坐标，容量总是2的幂
+    private int[] mCells = new int[INITIAL_CAPACITY];
+    // 下标掩码 = 容量 - 1
+    private int mMask = INITIAL_CAPACITY - 1;
+    // 蛇头所在的下标
+    private int mHead = 0;
+    // 蛇身长度
+    private int mSize = 0;
+
+    /**
+     * Packs an x/y pair into a single int. Both ordinates must be in the range
+     * 0..65535.
+     */
+    // 把x y打包成一个int：高16位是x，低16位是y
+    public static int pack(int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+
+    // 取出打包坐标的x
+    public static int unpackX(int packed) {
+        return packed >>> 16;
+    }
+
+    // 取出打包坐标的y
+    public static int unpackY(int packed) {
+        return packed & 0xFFFF;
+    }
+
+    // 蛇身长度
+    public int size() {
+        return mSize;
+    }
+
+    // 清空蛇身
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Returns the packed coordinate of the segment at the given index, where 0
+     * is the head and size() - 1 is the tail.
+     */
+    // 取第index节（0是蛇头）
+    public int get(int index) {
+        return mCells[(mHead + index) & mMask];
+    }
+
+    public int getX(int index) {
+        return unpackX(get(index));
+    }
+
+    public int getY(int index) {
+        return unpackY(get(index));
+    }
+
+    // 蛇头（打包坐标）
+    public int head() {
+        return mCells[mHead];
+    }
+
+    // 蛇尾（打包坐标）
+    public int tail() {
+        return mCells[(mHead + mSize - 1) & mMask];
+    }
+
+    /**
+     * Pushes a new head onto the front of the snake.
+     */
+    // 在蛇头前面增加一节
+    public void pushHead(int x, int y) {
+        ensureCapacity(mSize + 1);
+        mHead = (mHead - 1) & mMask;
+        mCells[mHead] = pack(x, y);
+        mSize++;
+    }
+
+    /**
+     * Appends a segment behind the current tail. Used when building the snake
+     * up from head to tail, e.g. for a new game or a restored state.
+     */
+    // 在蛇尾后面增加一节
+    public void addTail(int x, int y) {
+        ensureCapacity(mSize + 1);
+        mCells[(mHead + mSize) & mMask] = pack(x, y);
+        mSize++;
+    }
+
+    /**
+     * Removes the tail segment.
+     *
+     * @return the packed coordinate of the removed segment
+     */
+    // 删去蛇尾
+    public int removeTail() {
+        if (mSize == 0) {
+            throw new IllegalStateException("Snake has no segments");
+        }
+        mSize--;
+        return mCells[(mHead + mSize) & mMask];
+    }
+
+    /**
+     * Flattens the body into [x1,y1,x2,y2,...], head first.
+     */
+    // 转成整数数组——用来保存状态
+    public int[] toArray() {
+        int[] rawArray = new int[mSize * 2];
+        for (int index = 0; index < mSize; index++) {
+            int c = get(index);
+            rawArray[2 * index] = unpackX(c);
+            rawArray[2 * index + 1] = unpackY(c);
+        }
+        return rawArray;
+    }
+
+    /**
+     * Replaces the body with the segments in [x1,y1,x2,y2,...], head first.
+     */
+    // 从整数数组恢复——用来恢复状态
+    public void fromArray(int[] rawArray) {
+        clear();
+        for (int index = 0; index + 1 < rawArray.length; index += 2) {
+            addTail(rawArray[index], rawArray[index + 1]);
+        }
+    }
+
+    // 容量不够时翻倍，并把环展开到新数组的开头
+    private void ensureCapacity(int needed) {
+        int capacity = mCells.length;
+        if (needed <= capacity) {
+            return;
+        }
+        int newCapacity = capacity;
+        while (newCapacity < needed) {
+            newCapacity <<= 1;
+        }
+        int[] cells = new int[newCapacity];
+        for (int index = 0; index < mSize; index++) {
+            cells[index] = mCells[(mHead + index) & mMask];
+        }
+        mCells = cells;
+        mMask = newCapacity - 1;
+        mHead = 0;
+    }
+}
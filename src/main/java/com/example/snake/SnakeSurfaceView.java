@@ -0,0 +1,168 @@
+package com.example.snake;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * SnakeSurfaceView: a SurfaceView that draws TileFrames on its own render
+ * thread, once per vsync.
+ *
+ * The simulation publishes frames with postFrame(); the render thread picks up
+ * the newest one on each Choreographer callback and skips vsyncs with nothing
+ * new, so a slow frame never holds up the simulation.
+ *
+ */
+// 在独立渲染线程上按垂直同步绘制贴片帧的SurfaceView
+public class SnakeSurfaceView extends SurfaceView implements
+        SurfaceHolder.Callback, Choreographer.FrameCallback {
+
+    // 最新发布、还没画出的帧
+    private final AtomicReference<TileFrame> mPendingFrame = new AtomicReference<TileFrame>();
+    // 最后画出的帧，Surface重建时重画
+    private TileFrame mLastFrame;
+    private final Paint mPaint = new Paint();
+    // 从图集截取贴片用的矩形（只在渲染线程使用）
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    // 性能统计：渲染线程记录绘制耗时，显示时画出浮层
+    private volatile GameMetrics mMetrics;
+    private volatile boolean mShowMetrics;
+    private MetricsOverlay mMetricsOverlay;
+
+    // 渲染线程
+    private HandlerThread mRenderThread;
+    private Handler mRenderHandler;
+    private boolean mSurfaceReady;
+
+    public SnakeSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        getHolder().addCallback(this);
+    }
+
+    public SnakeSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Hands a new frame to the render thread. Safe to call from any thread;
+     * a frame not yet drawn is replaced.
+     */
+    // 发布新的一帧（任何线程都可调用）
+    public void postFrame(TileFrame frame) {
+        mPendingFrame.set(frame);
+    }
+
+    /**
+     * Sets the metrics the draw time is recorded into, and whether they are
+     * drawn over each frame.
+     */
+    // 设置性能统计和是否显示浮层
+    public void setMetrics(GameMetrics metrics, boolean show) {
+        // 先建好浮层，再通过volatile字段交给渲染线程
+        if (show && mMetricsOverlay == null) {
+            float density = getResources().getDisplayMetrics().density;
+            mMetricsOverlay = new MetricsOverlay(10 * density);
+        }
+        mMetrics = metrics;
+        mShowMetrics = show;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mRenderThread = new HandlerThread("SnakeRender");
+        mRenderThread.start();
+        mRenderHandler = new Handler(mRenderThread.getLooper());
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurfaceReady = true;
+                // Choreographer是按线程的，这里取到的是渲染线程的
+                Choreographer.getInstance().postFrameCallback(SnakeSurfaceView.this);
+            }
+        });
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width,
+            int height) {
+        // 尺寸改变后重画最后一帧
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                render(mLastFrame);
+            }
+        });
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // 在渲染线程上停止绘制，并等待线程结束后再让Surface销毁
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurfaceReady = false;
+                Choreographer.getInstance().removeFrameCallback(SnakeSurfaceView.this);
+                mRenderThread.quit();
+            }
+        });
+        try {
+            mRenderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mRenderThread = null;
+        mRenderHandler = null;
+    }
+
+    // 垂直同步回调（渲染线程）
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mSurfaceReady) {
+            return;
+        }
+        TileFrame frame = mPendingFrame.getAndSet(null);
+        if (frame != null) {
+            render(frame);
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    // 把一帧画到Surface上
+    private void render(TileFrame frame) {
+        if (!mSurfaceReady || frame == null) {
+            return;
+        }
+        SurfaceHolder holder = getHolder();
+        Canvas canvas = holder.lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        GameMetrics metrics = mMetrics;
+        try {
+            long start = System.nanoTime();
+            canvas.drawColor(Color.BLACK);
+            frame.draw(canvas, mPaint, mSrcRect, mDstRect);
+            if (metrics != null) {
+                metrics.end(GameMetrics.PHASE_DRAW, start);
+                if (mShowMetrics) {
+                    mMetricsOverlay.draw(canvas, metrics);
+                }
+            }
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+        mLastFrame = frame;
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.snake;
 
-import java.util.ArrayList;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Random;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Canvas;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.util.AttributeSet;
-import android.os.Bundle;
 import android.util.Log;
+import android.os.Bundle;
 import android.view.KeyEvent;
 import android.view.View;
 import android.widget.TextView;
@@ -31,48 +36,53 @@ public class SnakeView extends TileView {
     // 游戏状态，默认值是准备状态
     private int mMode = READY;
 
-    // 游戏的四个状态 暂停 准备 运行 和 失败
+    // 游戏的五个状态 暂停 准备 运行 失败 和 胜利（蛇填满了整个花园）
     public static final int PAUSE = 0;
     public static final int READY = 1;
     public static final int RUNNING = 2;
     public static final int LOSE = 3;
-
-    // 游戏中蛇的前进方向，默认值北方
-    private int mDirection = NORTH;
-    // 下一步的移动方向，默认值北方
-    private int mNextDirection = NORTH;
-
-    // 游戏方向设定 北 南 东 西
-    private static final int NORTH = 1;
-    private static final int SOUTH = 2;
-    private static final int EAST = 3;
-    private static final int WEST = 4;
+    public static final int WIN = 4;
 
     /**
      * Labels for the drawables that will be loaded into the TileView class
      */
     // 三种游戏元
-    private static final int RED_STAR = 1;
-    private static final int YELLOW_STAR = 2;
-    private static final int GREEN_STAR = 3;
+    static final int RED_STAR = 1;
+    static final int YELLOW_STAR = 2;
+    static final int GREEN_STAR = 3;
+    // 贴片集在缓存中的名称
+    static final String TILE_SET = "stars";
+
+    // 保存状态时使用的Bundle键
+    private static final String STATE_KEY = "mState";
+    private static final String PLAY_MILLIS_KEY = "mPlayMillis";
+    private static final String SEED_KEY = "mSeed";
 
     /**
-     * mScore: used to track the number of apples captured mMoveDelay: number of
-     * milliseconds between snake movements. This will decrease as apples are
-     * captured.
+     * mClock: when the next move is due, in System.nanoTime(). update() makes
+     * every move that is due, several per callback once the move delay is
+     * shorter than a frame, so the speed is exact at any level instead of
+     * being capped by the callback rate.
      */
-    // 游戏得分
-    private long mScore = 0;
+    // 移动时钟
+    private final MoveClock mClock = new MoveClock();
 
-    // 移动延迟
-    private long mMoveDelay = 600;
+    // 一帧的毫秒数，以及一次update()最多追赶的步数
+    private static final long FRAME_MILLIS = 16;
+    private static final int MAX_STEPS_PER_UPDATE = 32;
 
     /**
-     * mLastMove: tracks the absolute time when the snake last moved, and is
-     * used to determine if a move should be made based on mMoveDelay.
+     * Interpolation: while the move delay is longer than a frame, the head
+     * (and the tail, unless the snake just grew) slide from their previous
+     * cell to the current one over the move delay, drawn as sprites each
+     * frame. The head's own cell stays empty in the grid until the slide
+     * ends.
      */
-    // 最后一次移动时的毫秒时刻
-    private long mLastMove;
+    // 插值绘制：蛇头和蛇尾在两个格子之间滑动
+    private boolean mInterpolate;
+    private boolean mSliding;
+    private int mFromHead;
+    private int mFromTail;
 
     /**
      * mStatusText: text shows to the user in some run states
@@ -81,19 +91,90 @@ public class SnakeView extends TileView {
     private TextView mStatusText;
 
     /**
-     * mSnakeTrail: a list of Coordinates that make up the snake's body
-     * mAppleList: the secret location of the juicy apples the snake craves.
+     * mEngine: the rules of the game (snake, apples, score and speed). The
+     * view only turns input into directions and cell changes into tiles.
+     */
+    // 游戏引擎
+    private final GameEngine mEngine = new GameEngine(0);
+
+    // 引擎中格子内容改变时，更新对应的贴片
+    private final GameEngine.Listener mCellListener = new GameEngine.Listener() {
+        @Override
+        public void onCellChanged(int x, int y, int content) {
+            if (hasTileGrid()) {
+                setTile(tileFor(content), x, y);
+            }
+            // 新生成的苹果记入自动存档（回放时不记录）
+            if (content == GameEngine.APPLE && mJournal != null
+                    && mPlayback == null) {
+                mJournal.recordApple(x, y);
+            }
+        }
+    };
+
+    /**
+     * mJournal: optional crash-safe autosave. Every tick and apple is
+     * recorded, with a full snapshot at the start of a game, on pause and
+     * periodically; a finished game is discarded.
      */
-    // 蛇身数组(数组以坐标对象为元素)
-    private ArrayList<Coordinate> mSnakeTrail = new ArrayList<Coordinate>();
+    // 自动存档日志（可选）
+    private AutosaveJournal mJournal;
 
-    // 苹果数组(数组以坐标对象为元素)
-    private ArrayList<Coordinate> mAppleList = new ArrayList<Coordinate>();
+    /**
+     * mRecording: the replay of the game in progress, kept only for games
+     * started here (a restored game cannot be re-run from its seed). When the
+     * game ends it becomes mLastReplay and is written to mReplayFile.
+     * mPlayback: while not null, directions come from a replay instead of the
+     * keys.
+     */
+    // 回放的录制与播放
+    private Replay mRecording;
+    private Replay mLastReplay;
+    private File mReplayFile;
+    private ReplayPlayer mPlayback;
 
     /**
-     * Everyone needs a little randomness in their life
+     * mAutopilot: while not null it chooses every direction instead of the
+     * keys.
      */
-    // 随机数
+    // 自动驾驶
+    private Autopilot mAutopilot;
+
+    /**
+     * mLeaderboard: optional store of finished games. mPlayMillis is the
+     * game's playing time, summed from the move delays so pauses do not
+     * count; it is saved with the game state and in the autosave snapshots.
+     */
+    // 排行榜（可选）和本局的游戏时长
+    private Leaderboard mLeaderboard;
+    private long mPlayMillis;
+
+    /**
+     * mInput: direction keys waiting for a tick, applied one per tick so two
+     * quick presses within one tick both count.
+     */
+    // 方向输入队列
+    private final InputQueue mInput = new InputQueue();
+
+    // 音效（可选）
+    private Music mMusic;
+
+    /**
+     * mMetrics: how long update(), each engine step and each draw take, and
+     * how late each tick runs against the move clock. The overlay is only
+     * drawn while mShowMetrics is set.
+     */
+    // 性能统计和调试浮层
+    private final GameMetrics mMetrics = new GameMetrics();
+    private MetricsOverlay mMetricsOverlay;
+    private boolean mShowMetrics;
+
+    /**
+     * Everyone needs a little randomness in their life. Each new game draws
+     * its seed from here; everything else comes from the engine's own seeded
+     * generator.
+     */
+    // 随机数（用于生成每局游戏的种子）
     private static final Random RNG = new Random();
 
     /**
@@ -104,16 +185,53 @@ public class SnakeView extends TileView {
     // 创建一个Refresh Handler来产生动画： 通过sleep()来实现
     private RefreshHandler mRedrawHandler = new RefreshHandler();
 
+    /**
+     * Surface mode: when a SnakeSurfaceView is attached, ticks run at a fixed
+     * timestep on a SimulationThread instead of the RefreshHandler, and each
+     * batch of ticks is handed to the surface as an immutable TileFrame. All
+     * game state is then guarded by this view's monitor.
+     */
+    // Surface模式：模拟在独立线程上以固定步长运行，画面交给SnakeSurfaceView
+    private SnakeSurfaceView mSurfaceView;
+    private SimulationThread mSimulation;
+
+    private final SimulationThread.Callback mSimulationCallback = new SimulationThread.Callback() {
+        @Override
+        public long onStep(long latenessNanos) {
+            synchronized (SnakeView.this) {
+                // 已被停止（或被新线程取代）的线程不再推进游戏
+                if (mMode != RUNNING || Thread.currentThread() != mSimulation) {
+                    return -1;
+                }
+                mMetrics.tick(latenessNanos);
+                updateSnake();
+                return mEngine.getMoveDelay() * 1000000L;
+            }
+        }
+
+        @Override
+        public void onDropped(long count) {
+            synchronized (SnakeView.this) {
+                mMetrics.dropTicks(count);
+            }
+        }
+
+        @Override
+        public void onPublishFrame() {
+            synchronized (SnakeView.this) {
+                publishFrame();
+            }
+        }
+    };
+
     // 一个Handler
     class RefreshHandler extends Handler {
 
         // 处理消息队列
         @Override
         public void handleMessage(Message msg) {
-            // 更新View对象
+            // 更新View对象（只刷新有变化的贴片）
             SnakeView.this.update();
-            // 强制重绘
-            SnakeView.this.invalidate();
         }
 
         // 延迟发送消息
@@ -146,67 +264,245 @@ public class SnakeView extends TileView {
         // 可选焦点
         setFocusable(true);
 
-        Resources r = this.getContext().getResources();
+        loadStarTiles(this);
+
+        mEngine.setListener(mCellListener);
+    }
+
+    // 载入三种星星贴片：缓存中有时直接使用，否则解码后放入缓存
+    static void loadStarTiles(TileView view) {
+        if (view.useCachedTiles(TILE_SET)) {
+            return;
+        }
+        Resources r = view.getContext().getResources();
 
         // 设置贴片图片数组
-        resetTiles(4);
+        view.resetTiles(4);
 
         // 把三种图片存到Bitmap对象数组
-        loadTile(RED_STAR, r.getDrawable(R.drawable.redstar));
-        loadTile(YELLOW_STAR, r.getDrawable(R.drawable.yellowstar));
-        loadTile(GREEN_STAR, r.getDrawable(R.drawable.greenstar));
+        view.loadTile(RED_STAR, r.getDrawable(R.drawable.redstar));
+        view.loadTile(YELLOW_STAR, r.getDrawable(R.drawable.yellowstar));
+        view.loadTile(GREEN_STAR, r.getDrawable(R.drawable.greenstar));
+        view.cacheTiles(TILE_SET);
+    }
 
+    // 格子内容对应的贴片：蛇头是黄色的（同苹果一样），蛇身是红色的
+    static int tileFor(int content) {
+        switch (content) {
+            case GameEngine.HEAD:
+            case GameEngine.APPLE:
+                return YELLOW_STAR;
+            case GameEngine.BODY:
+                return RED_STAR;
+        }
+        return 0;
     }
 
     // 开始新的游戏——初始化
     private void initNewGame() {
-        // 清空ArrayList列表
-        mSnakeTrail.clear();
-        mAppleList.clear();
+        mPlayback = null;
+        mInput.clear();
+        mEngine.newGame(RNG.nextLong());
+        mPlayMillis = 0;
+        mRecording = new Replay(mEngine.getWidth(), mEngine.getHeight(),
+                mEngine.getSeed());
+        writeSnapshot();
+        redrawGarden();
+    }
+
+    /**
+     * Sets the file the replay of each finished game is written to.
+     *
+     * @param file
+     */
+    // 设置回放文件
+    public synchronized void setReplayFile(File file) {
+        mReplayFile = file;
+    }
+
+    /**
+     * Sets the leaderboard finished games are recorded in; games played by
+     * the autopilot or from a replay are not.
+     *
+     * @param leaderboard
+     */
+    // 设置排行榜
+    public synchronized void setLeaderboard(Leaderboard leaderboard) {
+        mLeaderboard = leaderboard;
+    }
+
+    // 最近结束的一局的回放，没有时为null
+    public synchronized Replay getLastReplay() {
+        return mLastReplay;
+    }
+
+    /**
+     * Re-runs a recorded game on screen at its original pace. Keys other than
+     * pause/resume are ignored until it ends.
+     *
+     * @param replay
+     * @return false if the replay was recorded on a board of another size
+     */
+    // 在屏幕上按原来的速度播放回放
+    public synchronized boolean startReplay(Replay replay) {
+        if (replay.getWidth() != mEngine.getWidth()
+                || replay.getHeight() != mEngine.getHeight()) {
+            return false;
+        }
+        mRecording = null;
+        mInput.clear();
+        mPlayback = new ReplayPlayer(replay);
+        mPlayback.start(mEngine);
+        redrawGarden();
+        setMode(RUNNING);
+        return true;
+    }
+
+    /**
+     * Shows or hides the metrics overlay on top of the garden.
+     *
+     * @param show
+     */
+    // 显示或隐藏性能浮层
+    public synchronized void setShowMetrics(boolean show) {
+        mShowMetrics = show;
+        if (mSurfaceView != null) {
+            mSurfaceView.setMetrics(mMetrics, show);
+        } else {
+            invalidate();
+        }
+    }
+
+    public GameMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Writes the metrics to logcat and, on a background thread, to the given
+     * file. Nothing is written before the first tick.
+     *
+     * @param file
+     *            the file to write, or null for logcat only
+     */
+    // 把统计写到logcat和文件
+    public synchronized void dumpMetrics(final File file) {
+        if (mMetrics.getPhase(GameMetrics.PHASE_STEP).getCount() == 0) {
+            return;
+        }
+        StringBuilder report = new StringBuilder();
+        mMetrics.dump(report);
+        final String text = report.toString();
+        for (String line : text.split("\n")) {
+            Log.i(TAG, line);
+        }
+        if (file == null) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FileOutputStream out = new FileOutputStream(file);
+                    try {
+                        out.write(text.getBytes("UTF-8"));
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot save metrics", e);
+                }
+            }
+        }, "SnakeMetrics").start();
+    }
 
-        // For now we're just going to load up a short default eastbound snake
-        // that's just turned north
-        // 创建蛇身
+    /**
+     * Sets the audio used for the apple and lose effects, or null for none.
+     *
+     * @param music
+     */
+    // 设置音效
+    public synchronized void setMusic(Music music) {
+        mMusic = music;
+    }
 
-        mSnakeTrail.add(new Coordinate(7, 7));
-        mSnakeTrail.add(new Coordinate(6, 7));
-        mSnakeTrail.add(new Coordinate(5, 7));
-        mSnakeTrail.add(new Coordinate(4, 7));
-        mSnakeTrail.add(new Coordinate(3, 7));
-        mSnakeTrail.add(new Coordinate(2, 7));
+    /**
+     * Lets the autopilot play instead of the direction keys.
+     *
+     * @param enabled
+     */
+    // 打开或关闭自动驾驶
+    public synchronized void setAutopilot(boolean enabled) {
+        // 自动驾驶的搜索数组与棋盘一样大，大地图上不可用
+        mAutopilot = enabled && !isWorldMode() ? new Autopilot() : null;
+        mInput.clear();
+    }
 
-        // 新的方向 ：北方
-        mNextDirection = NORTH;
+    public synchronized boolean isAutopilot() {
+        return mAutopilot != null;
+    }
 
-        // 2个随机位置的苹果
-        addRandomApple();
-        addRandomApple();
+    // 在后台线程把回放写到文件
+    private void saveReplay(final Replay replay) {
+        final File file = mReplayFile;
+        if (file == null) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FileOutputStream out = new FileOutputStream(file);
+                    try {
+                        replay.writeTo(new BufferedOutputStream(out));
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot save replay", e);
+                }
+            }
+        }, "SnakeReplay").start();
+    }
 
-        // 移动延迟
-        mMoveDelay = 600;
-        // 初始得分0
-        mScore = 0;
+    /**
+     * Sets the journal that keeps the game on disk. The journal should not be
+     * started yet if {@link #restoreAutosave()} is going to be called.
+     *
+     * @param journal
+     */
+    // 设置自动存档日志
+    public synchronized void setJournal(AutosaveJournal journal) {
+        mJournal = journal;
     }
 
     /**
-     * Given a ArrayList of coordinates, we need to flatten them into an array
-     * of ints before we can stuff them into a map for flattening and storage.
+     * Restores the game from the autosave journal, paused, e.g. after the
+     * process was killed with no saved instance state. A fresh snapshot then
+     * replaces the journal, so new records are not appended after a torn or
+     * mismatched tail that recovery stopped at.
      *
-     * @param cvec
-     *            : a ArrayList of Coordinate objects
-     * @return : a simple array containing the x/y values of the coordinates as
-     *         [x1,y1,x2,y2,x3,y3...]
+     * @return true if a game was restored
      */
-    // 坐标数组转整数数组，把Coordinate对象的x y放到一个int数组中——用来保存状态
-    private int[] coordArrayListToArray(ArrayList<Coordinate> cvec) {
-        int count = cvec.size();
-        int[] rawArray = new int[count * 2];
-        for (int index = 0; index < count; index++) {
-            Coordinate c = cvec.get(index);
-            rawArray[2 * index] = c.x;
-            rawArray[2 * index + 1] = c.y;
+    // 从自动存档恢复游戏
+    public synchronized boolean restoreAutosave() {
+        if (mJournal == null || !mJournal.recover(mEngine)) {
+            return false;
+        }
+        mRecording = null;
+        mPlayback = null;
+        mPlayMillis = mJournal.getRecoveredPlayMillis();
+        setMode(PAUSE);
+        // 恢复后马上写快照：日志末尾可能有无法恢复的记录
+        writeSnapshot();
+        redrawGarden();
+        return true;
+    }
+
+    // 把当前状态写成自动存档的快照
+    private void writeSnapshot() {
+        if (mJournal != null && mPlayback == null) {
+            mJournal.writeSnapshot(mEngine, mPlayMillis);
         }
-        return rawArray;
     }
 
     /**
@@ -215,58 +511,119 @@ public class SnakeView extends TileView {
      *
      * @return a Bundle with this view's state
      */
-    // 保存状态
-    public Bundle saveState() {
+    // 保存状态：整个游戏状态编码成一个紧凑的字节数组
+    public synchronized Bundle saveState() {
 
         Bundle map = new Bundle();
 
-        map.putIntArray("mAppleList", coordArrayListToArray(mAppleList));
-        map.putInt("mDirection", Integer.valueOf(mDirection));
-        map.putInt("mNextDirection", Integer.valueOf(mNextDirection));
-        map.putLong("mMoveDelay", Long.valueOf(mMoveDelay));
-        map.putLong("mScore", Long.valueOf(mScore));
-        map.putIntArray("mSnakeTrail", coordArrayListToArray(mSnakeTrail));
+        map.putByteArray(STATE_KEY, StateCodec.encode(mEngine));
+        map.putLong(PLAY_MILLIS_KEY, mPlayMillis);
+        map.putLong(SEED_KEY, mEngine.getSeed());
 
         return map;
     }
 
     /**
-     * Given a flattened array of ordinate pairs, we reconstitute them into a
-     * ArrayList of Coordinate objects
+     * Restore game state if our process is being relaunched. Bundles saved
+     * before the compact encoding, with one entry per field, are still read.
      *
-     * @param rawArray
-     *            : [x1,y1,x2,y2,...]
-     * @return a ArrayList of Coordinates
+     * @param icicle
+     *            a Bundle containing the game state
      */
-    // 整数数组转坐标数组，把一个int数组中的x y放到Coordinate对象数组中——用来恢复状态
-    private ArrayList<Coordinate> coordArrayToArrayList(int[] rawArray) {
-        ArrayList<Coordinate> coordArrayList = new ArrayList<Coordinate>();
+    // 恢复状态
+    public synchronized void restoreState(Bundle icicle) {
 
-        int coordCount = rawArray.length;
-        for (int index = 0; index < coordCount; index += 2) {
-            Coordinate c = new Coordinate(rawArray[index], rawArray[index + 1]);
-            coordArrayList.add(c);
+        setMode(PAUSE);
+        mRecording = null;
+        mPlayback = null;
+
+        byte[] state = icicle.getByteArray(STATE_KEY);
+        if (state != null) {
+            StateCodec.decode(state, mEngine);
+        } else {
+            // 旧版本保存的格式
+            mEngine.restoreState(icicle.getIntArray("mSnakeTrail"),
+                    icicle.getIntArray("mAppleList"), icicle.getInt("mDirection"),
+                    icicle.getInt("mNextDirection"), icicle.getLong("mMoveDelay"),
+                    icicle.getLong("mScore"));
         }
-        return coordArrayList;
+        mPlayMillis = icicle.getLong(PLAY_MILLIS_KEY);
+        // 旧版本没有保存种子时记为未知
+        mEngine.restoreSeed(icicle.getLong(SEED_KEY, Leaderboard.UNKNOWN_SEED));
+        writeSnapshot();
+        redrawGarden();
     }
 
     /**
-     * Restore game state if our process is being relaunched
+     * Plays on a garden of the given size instead of one that fits the view,
+     * up to 10,000 x 10,000 tiles. The view scrolls to follow the snake's
+     * head. Not supported with a SnakeSurfaceView, and the autopilot is not
+     * available.
      *
-     * @param icicle
-     *            a Bundle containing the game state
+     * @param width
+     * @param height
      */
-    // 恢复状态
-    public void restoreState(Bundle icicle) {
+    // 大地图模式：花园比屏幕大，视图跟随蛇头滚动
+    public synchronized void setLargeWorld(int width, int height) {
+        setWorldSize(width, height, GREEN_STAR);
+        mAutopilot = null;
+        mEngine.resize(width, height);
+        redrawGarden();
+    }
 
-        setMode(PAUSE);
+    // 视图尺寸改变时，按新的贴片数量重建占用表并重画整个花园
+    @Override
+    protected synchronized void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // 大地图的大小与视图无关
+        if (!isWorldMode()) {
+            mEngine.resize(mXTileCount, mYTileCount);
+        }
+        redrawGarden();
+    }
+
+    // 大地图模式下让摄像机跟随蛇头
+    private void followHead() {
+        if (isWorldMode() && mEngine.getSnake().size() > 0) {
+            int head = mEngine.getSnake().head();
+            centerCamera(SnakeBody.unpackX(head), SnakeBody.unpackY(head));
+        }
+    }
+
+    // 墙只画在静态图层上，尺寸改变时画一次
+    @Override
+    protected void onBuildStaticLayer() {
+        updateWalls();
+    }
 
-        mAppleList = coordArrayToArrayList(icicle.getIntArray("mAppleList"));
-        mDirection = icicle.getInt("mDirection");
-        mNextDirection = icicle.getInt("mNextDirection");
-        mMoveDelay = icicle.getLong("mMoveDelay");
-        mScore = icicle.getLong("mScore");
-        mSnakeTrail = coordArrayToArrayList(icicle.getIntArray("mSnakeTrail"));
+    /**
+     * Sets every dynamic tile from scratch: apples and the whole snake. Moves
+     * only touch the tiles that change, so this is needed only for a new
+     * game, a restored state or a resized garden.
+     */
+    // 重画整个花园
+    private void redrawGarden() {
+        if (!hasTileGrid()) {
+            return;
+        }
+        clearTiles();
+        mSliding = false;
+        clearSprites();
+        updateApples();
+        SnakeBody snake = mEngine.getSnake();
+        int length = snake.size();
+        for (int index = 0; index < length; index++) {
+            int c = snake.get(index);
+            // 蛇头是黄色的（同苹果一样），蛇身是红色的
+            setTile(index == 0 ? YELLOW_STAR : RED_STAR, SnakeBody.unpackX(c),
+                    SnakeBody.unpackY(c));
+        }
+        followHead();
+        if (mSurfaceView != null) {
+            publishFrame();
+        } else {
+            invalidate();
+        }
     }
 
     /*
@@ -281,12 +638,12 @@ public class SnakeView extends TileView {
     // 监听用户键盘操作，并处理这些操作
     // 按键事件处理，确保贪吃蛇只能90度转向，而不能180度转向
     @Override
-    public boolean onKeyDown(int keyCode, KeyEvent msg) {
+    public synchronized boolean onKeyDown(int keyCode, KeyEvent msg) {
 
         // 向上键
         if (keyCode == KeyEvent.KEYCODE_DPAD_UP) {
             // 准备状态或者失败状态时
-            if (mMode == READY | mMode == LOSE) {
+            if (mMode == READY | mMode == LOSE | mMode == WIN) {
                 /*
                  * At the beginning of the game, or the end of a previous one,
                  * we should start a new game.
@@ -315,18 +672,29 @@ public class SnakeView extends TileView {
             }
 
             // 如果是运行状态时，如果方向原有方向不是向南，那么方向转向北
-            if (mDirection != SOUTH) {
-                mNextDirection = NORTH;
+            queueDirection(GameEngine.NORTH);
+            return (true);
+        }
+
+        // 中间键：游戏结束后回放刚才那一局，游戏中打开或关闭自动驾驶
+        if (keyCode == KeyEvent.KEYCODE_DPAD_CENTER) {
+            if ((mMode == LOSE | mMode == WIN) && mLastReplay != null) {
+                startReplay(mLastReplay);
+            } else if (mMode == RUNNING | mMode == PAUSE) {
+                setAutopilot(mAutopilot == null);
             }
             return (true);
         }
 
+        // 回放时忽略方向键
+        if (mPlayback != null && keyCode != KeyEvent.KEYCODE_DPAD_UP) {
+            return super.onKeyDown(keyCode, msg);
+        }
+
         // 向下键
         if (keyCode == KeyEvent.KEYCODE_DPAD_DOWN) {
             // 原方向不是向上时，方向转向南
-            if (mDirection != NORTH) {
-                mNextDirection = SOUTH;
-            }
+            queueDirection(GameEngine.SOUTH);
             // 返回
             return (true);
         }
@@ -334,9 +702,7 @@ public class SnakeView extends TileView {
         // 向左键
         if (keyCode == KeyEvent.KEYCODE_DPAD_LEFT) {
             // 原方向不是向右时，方向转向西
-            if (mDirection != EAST) {
-                mNextDirection = WEST;
-            }
+            queueDirection(GameEngine.WEST);
             // 返回
             return (true);
         }
@@ -344,9 +710,7 @@ public class SnakeView extends TileView {
         // 向右键
         if (keyCode == KeyEvent.KEYCODE_DPAD_RIGHT) {
             // 原方向不是向左时，方向转向东
-            if (mDirection != WEST) {
-                mNextDirection = EAST;
-            }
+            queueDirection(GameEngine.EAST);
             // 返回
             return (true);
         }
@@ -355,6 +719,83 @@ public class SnakeView extends TileView {
         return super.onKeyDown(keyCode, msg);
     }
 
+    // 运行时方向键入队，按下的时刻用于统计输入延迟；其它状态下直接设置
+    private void queueDirection(int direction) {
+        if (mMode == RUNNING) {
+            mInput.offer(direction, System.nanoTime(), mEngine.getNextDirection());
+        } else {
+            mEngine.setNextDirection(direction);
+        }
+    }
+
+    /**
+     * Switches to surface mode: the game ticks on its own thread at a fixed
+     * timestep and frames are drawn by the given SnakeSurfaceView, which should
+     * cover the same area as this view. This view then only handles input and
+     * layout.
+     *
+     * @param surfaceView
+     */
+    // 切换到Surface模式
+    public synchronized void setSurfaceView(SnakeSurfaceView surfaceView) {
+        mSurfaceView = surfaceView;
+        mSurfaceView.setMetrics(mMetrics, mShowMetrics);
+        setWillNotDraw(true);
+        publishFrame();
+    }
+
+    // 把当前贴片作为一帧交给SnakeSurfaceView
+    private void publishFrame() {
+        TileFrame frame = captureFrame();
+        if (frame != null) {
+            mSurfaceView.postFrame(frame);
+        }
+    }
+
+    // 启动模拟线程
+    private void startSimulation() {
+        if (mSimulation == null) {
+            mSimulation = new SimulationThread(mSimulationCallback);
+            mSimulation.start();
+        }
+    }
+
+    // 停止模拟线程（不等待，线程在下一步之前自行退出）
+    private void stopSimulation() {
+        if (mSimulation != null) {
+            mSimulation.quit();
+            mSimulation = null;
+        }
+    }
+
+    @Override
+    protected synchronized void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopSimulation();
+    }
+
+    // Surface模式下由SnakeSurfaceView负责绘制
+    @Override
+    public void onDraw(Canvas canvas) {
+        if (mSurfaceView == null) {
+            long start = mMetrics.begin();
+            super.onDraw(canvas);
+            mMetrics.end(GameMetrics.PHASE_DRAW, start);
+            if (mShowMetrics) {
+                metricsOverlay().draw(canvas, mMetrics);
+            }
+        }
+    }
+
+    // 浮层在第一次显示时创建
+    private MetricsOverlay metricsOverlay() {
+        if (mMetricsOverlay == null) {
+            float density = getResources().getDisplayMetrics().density;
+            mMetricsOverlay = new MetricsOverlay(10 * density);
+        }
+        return mMetricsOverlay;
+    }
+
     /**
      * Sets the TextView that will be used to give information (such as "Game
      * Over" to the user.
@@ -373,7 +814,7 @@ public class SnakeView extends TileView {
      * @param newMode
      */
     // 设置游戏状态
-    public void setMode(int newMode) {
+    public synchronized void setMode(int newMode) {
 
         // 把当前游戏状态存入oldMode
         int oldMode = mMode;
@@ -382,13 +823,62 @@ public class SnakeView extends TileView {
 
         // 如果新状态是运行状态，且原有状态为不运行，那么就开始游戏
         if (newMode == RUNNING & oldMode != RUNNING) {
+            // 暂停的时间不算作延迟，也不追赶：过期时马上走一步
+            mClock.resume(System.nanoTime());
             // 设置mStatusTextView隐藏
-            mStatusText.setVisibility(View.INVISIBLE);
+            showStatus("", View.INVISIBLE);
             // 更新
             update();
             return;
         }
 
+        // 不再运行时停止模拟线程，丢弃还没生效的按键，结束滑动
+        if (newMode != RUNNING) {
+            stopSimulation();
+            mInput.clear();
+            endSlide();
+        }
+
+        // 回放中的状态变化不影响自动存档
+        boolean playingBack = mPlayback != null;
+
+        // 游戏结束时保存录制的回放，回放播放结束
+        if (newMode == LOSE || newMode == WIN) {
+            if (mRecording != null) {
+                mRecording.setScore(mEngine.getScore());
+                mLastReplay = mRecording;
+                mRecording = null;
+                saveReplay(mLastReplay);
+            }
+            mPlayback = null;
+        }
+
+        // 自己玩完的一局记入排行榜（在后台写入）
+        int best = 0;
+        if ((newMode == LOSE || newMode == WIN) && oldMode == RUNNING
+                && mLeaderboard != null) {
+            int score = (int) Math.min(mEngine.getScore(), Integer.MAX_VALUE);
+            best = mLeaderboard.getBestScore();
+            if (!playingBack && mAutopilot == null) {
+                best = Math.max(best, score);
+                mLeaderboard.record(new Leaderboard.Game(mEngine.getSeed(),
+                        System.currentTimeMillis(), score,
+                        mEngine.getSnake().size(), (int) mPlayMillis));
+            }
+        }
+
+        // 暂停时写一次快照，游戏结束时删除存档
+        if (mJournal != null && !playingBack) {
+            if (newMode == PAUSE && oldMode == RUNNING) {
+                writeSnapshot();
+                if (mJournal.getError() != null) {
+                    Log.w(TAG, "Autosave failed", mJournal.getError());
+                }
+            } else if (newMode == LOSE || newMode == WIN) {
+                mJournal.discard();
+            }
+        }
+
         Resources res = getContext().getResources();
         CharSequence str = "";
 
@@ -405,62 +895,45 @@ public class SnakeView extends TileView {
         // 如果新状态时失败状态，那么设置文本内容为失败内容
         if (newMode == LOSE) {
             // 把上轮的得分显示出来
-            str = res.getString(R.string.mode_lose_prefix) + mScore
+            str = res.getString(R.string.mode_lose_prefix) + mEngine.getScore()
                     + res.getString(R.string.mode_lose_suffix);
         }
 
-        // 设置文本
-        mStatusText.setText(str);
-        // 显示该View
-        mStatusText.setVisibility(View.VISIBLE);
+        // 如果新状态是胜利状态，那么设置文本内容为胜利内容
+        if (newMode == WIN) {
+            str = res.getString(R.string.mode_win_prefix) + mEngine.getScore()
+                    + res.getString(R.string.mode_win_suffix);
+        }
+
+        // 游戏结束时显示最高分
+        if (best > 0) {
+            str = str + res.getString(R.string.mode_best) + best;
+        }
+
+        // 设置文本并显示该View
+        showStatus(str, View.VISIBLE);
     }
 
     /**
-     * Selects a random location within the garden that is not currently covered
-     * by the snake. Currently _could_ go into an infinite loop if the snake
-     * currently fills the garden, but we'll leave discovery of this prize to a
-     * truly excellent snake-player.
-     *
+     * Updates the status TextView. setMode may be called from the simulation
+     * thread in surface mode, so the change is posted to the UI thread when
+     * needed.
      */
-    // 添加苹果
-    private void addRandomApple() {
-        // 新的坐标
-        Coordinate newCoord = null;
-        // 防止新苹果出席在蛇身下
-        boolean found = false;
-        // 没有找到合适的苹果，就在循环体内一直循环，直到找到合适的苹果
-        while (!found) {
-            // 为苹果再找一个坐标,先随机一个X值
-            int newX = 1 + RNG.nextInt(mXTileCount - 2);
-            // 再随机一个Y值
-            int newY = 1 + RNG.nextInt(mYTileCount - 2);
-            // 新坐标
-            newCoord = new Coordinate(newX, newY);
-
-            // Make sure it's not already under the snake
-            // 确保新苹果不在蛇身下，先假设没有发生冲突
-            boolean collision = false;
-
-            int snakelength = mSnakeTrail.size();
-            // 和蛇占据的所有坐标比较
-            for (int index = 0; index < snakelength; index++) {
-                // 只要和蛇占据的任何一个坐标相同，即认为发生冲突了
-                if (mSnakeTrail.get(index).equals(newCoord)) {
-                    collision = true;
-                }
+    // 设置状态文本（不在UI线程时转到UI线程执行）
+    private void showStatus(final CharSequence str, final int visibility) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            if (visibility == View.VISIBLE) {
+                mStatusText.setText(str);
             }
-            // if we're here and there's been no collision, then we have
-            // a good location for an apple. Otherwise, we'll circle back
-            // and try again
-            // 如果有冲突就继续循环，如果没冲突flag的值就是false,那么自然会退出循环，新坐标也就诞生了
-            found = !collision;
-        }
-
-        if (newCoord == null) {
-            Log.e(TAG, "Somehow ended up with a null newCoord!");
+            mStatusText.setVisibility(visibility);
+            return;
         }
-        // 生成一个新苹果放在苹果列表中（两个苹果有可能会重合——这时候虽然看到的是一个苹果，但是呢，分数就是两个分数。）
-        mAppleList.add(newCoord);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                showStatus(str, visibility);
+            }
+        });
     }
 
     /**
@@ -469,44 +942,69 @@ public class SnakeView extends TileView {
      * location.
      */
     // 更新 各种动作，特别是 贪吃蛇 的位置， 还包括：墙、苹果等的更新
-    public void update() {
+    public synchronized void update() {
         // 如果是处于运行状态
         if (mMode == RUNNING) {
 
-            long now = System.currentTimeMillis();
+            // Surface模式下由模拟线程按固定步长推进
+            if (mSurfaceView != null) {
+                startSimulation();
+                return;
+            }
 
-            // 如果当前时间距离最后一次移动的时间超过了延迟时间
-            if (now - mLastMove > mMoveDelay) {
-                //
-                clearTiles();
-                updateWalls();
+            long start = mMetrics.begin();
+            long now = System.nanoTime();
+
+            // 到时间的步骤全部执行：移动延迟短于一帧时一次执行多步
+            int steps = 0;
+            while (mMode == RUNNING && mClock.isDue(now)) {
+                // 按这一步应该执行的时刻计算延迟，不用两步之间的间隔
+                mMetrics.tick(now - mClock.getNextMove());
                 updateSnake();
-                updateApples();
-                mLastMove = now;
+                mClock.advance(mEngine.getMoveDelay() * 1000000L);
+                if (++steps == MAX_STEPS_PER_UPDATE) {
+                    // 落后太多时不再追赶，丢弃的步数计入统计
+                    mMetrics.dropTicks(mClock.dropBacklog(now,
+                            mEngine.getMoveDelay() * 1000000L));
+                    break;
+                }
+            }
+            if (steps > 0) {
+                // 只更新有变化的贴片，并只刷新这些区域
+                invalidateTiles();
+                if (mShowMetrics) {
+                    invalidate(0, 0, getWidth(), metricsOverlay().getHeight());
+                }
             }
-            // Handler 会话进程sleep一个延迟时间单位
-            mRedrawHandler.sleep(mMoveDelay);
+            if (mMode == RUNNING) {
+                drawSlide(now);
+                // 滑动时每帧回调一次，否则到下一步再回调，但不快于一帧
+                long wait = mClock.millisUntilNext(now);
+                mRedrawHandler.sleep(mSliding ? Math.min(wait, FRAME_MILLIS)
+                        : Math.max(wait, FRAME_MILLIS));
+            }
+            mMetrics.end(GameMetrics.PHASE_UPDATE, start);
         }
 
     }
 
     /**
-     * Draws some walls.
+     * Draws some walls into the static layer.
      *
      */
-    // 更新墙
+    // 更新墙（静态图层）
     private void updateWalls() {
         for (int x = 0; x < mXTileCount; x++) {
-            // 给上边线的每个贴片位置设置一个绿色索引标识
-            setTile(GREEN_STAR, x, 0);
-            // 给下边线的每个贴片位置设置一个绿色索引标识
-            setTile(GREEN_STAR, x, mYTileCount - 1);
+            // 给上边线的每个贴片位置画一个绿色贴片
+            setStaticTile(GREEN_STAR, x, 0);
+            // 给下边线的每个贴片位置画一个绿色贴片
+            setStaticTile(GREEN_STAR, x, mYTileCount - 1);
         }
         for (int y = 1; y < mYTileCount - 1; y++) {
-            // 给左边线的每个贴片位置设置一个绿色索引标识
-            setTile(GREEN_STAR, 0, y);
-            // 给右边线的每个贴片位置设置一个绿色索引标识
-            setTile(GREEN_STAR, mXTileCount - 1, y);
+            // 给左边线的每个贴片位置画一个绿色贴片
+            setStaticTile(GREEN_STAR, 0, y);
+            // 给右边线的每个贴片位置画一个绿色贴片
+            setStaticTile(GREEN_STAR, mXTileCount - 1, y);
         }
     }
 
@@ -516,153 +1014,140 @@ public class SnakeView extends TileView {
      */
     // 更新苹果
     private void updateApples() {
-        for (Coordinate c : mAppleList) {
-            setTile(YELLOW_STAR, c.x, c.y);
+        int applecount = mEngine.getAppleCount();
+        for (int index = 0; index < applecount; index++) {
+            int c = mEngine.getApple(index);
+            setTile(YELLOW_STAR, SnakeBody.unpackX(c), SnakeBody.unpackY(c));
         }
     }
 
     /**
-     * Figure out which way the snake is going, see if he's run into anything
-     * (the walls, himself, or an apple). If he's not going to die, we then add
-     * to the front and subtract from the rear in order to simulate motion. If
-     * we want to grow him, we don't subtract from the rear.
+     * Turns on sliding the snake between cells while the move delay is longer
+     * than a frame. Only the default renderer interpolates.
      *
+     * @param interpolate
      */
-    // 更新蛇
-    private void updateSnake() {
-        // 生长标志
-        boolean growSnake = false;
-
-        // 得到蛇头坐标
-        Coordinate head = mSnakeTrail.get(0);
-        // 初始化一个新的蛇头坐标
-        Coordinate newHead = new Coordinate(1, 1);
-
-        // 当前方向改成新的方向
-        mDirection = mNextDirection;
-
-        // 根据方向确定蛇头新坐标
-        switch (mDirection) {
-            // 如果方向向东（右），那么X加1
-            case EAST: {
-                newHead = new Coordinate(head.x + 1, head.y);
-                break;
-            }
-            // 如果方向向西（左），那么X减1
-            case WEST: {
-                newHead = new Coordinate(head.x - 1, head.y);
-                break;
-            }
-            // 如果方向向北（上），那么Y减1
-            case NORTH: {
-                newHead = new Coordinate(head.x, head.y - 1);
-                break;
-            }
-            // 如果方向向南（下），那么Y加1
-            case SOUTH: {
-                newHead = new Coordinate(head.x, head.y + 1);
-                break;
-            }
+    // 开关插值绘制
+    public synchronized void setInterpolation(boolean interpolate) {
+        mInterpolate = interpolate;
+        if (!interpolate) {
+            endSlide();
         }
+    }
 
-        // Collision detection
-        // For now we have a 1-square wall around the entire arena
-        // 冲突检测 新蛇头是否四面墙重叠，那么游戏结束
-        if ((newHead.x < 1) || (newHead.y < 1) || (newHead.x > mXTileCount - 2)
-                || (newHead.y > mYTileCount - 2)) {
-            // 设置游戏状态为Lose
-            setMode(LOSE);
-            // 返回
+    // 按这一步过去的比例画出滑动中的蛇头和蛇尾
+    private void drawSlide(long now) {
+        if (!mSliding) {
             return;
-
         }
-
-        // Look for collisions with itself
-        // 冲突检测 新蛇头是否和自身坐标重叠，重叠的话游戏也结束
-        int snakelength = mSnakeTrail.size();
-
-        for (int snakeindex = 0; snakeindex < snakelength; snakeindex++) {
-            Coordinate c = mSnakeTrail.get(snakeindex);
-            if (c.equals(newHead)) {
-                // 设置游戏状态为Lose
-                setMode(LOSE);
-                // 返回
-                return;
-            }
+        float f = mClock.progress(now, mEngine.getMoveDelay() * 1000000L);
+        SnakeBody snake = mEngine.getSnake();
+        clearSprites();
+        addSprite(YELLOW_STAR, lerpX(mFromHead, snake.head(), f),
+                lerpY(mFromHead, snake.head(), f));
+        if (mFromTail >= 0) {
+            addSprite(RED_STAR, lerpX(mFromTail, snake.tail(), f),
+                    lerpY(mFromTail, snake.tail(), f));
         }
+        invalidateSprites();
+    }
 
-        // Look for apples
-        // 看新蛇头和苹果们是否重叠
-        int applecount = mAppleList.size();
-        for (int appleindex = 0; appleindex < applecount; appleindex++) {
-            Coordinate c = mAppleList.get(appleindex);
-            if (c.equals(newHead)) {
-                // 如果重叠，苹果坐标从苹果列表中移除
-                mAppleList.remove(c);
-                // 再立刻增加一个新苹果
-                addRandomApple();
-                // 得分加一
-                mScore++;
-                // 延迟是以前的90%
-                mMoveDelay *= 0.9;
-                // 蛇增长标志改为真
-                growSnake = true;
-            }
+    // 结束滑动：去掉精灵，蛇头画回它的格子
+    private void endSlide() {
+        if (!mSliding) {
+            return;
         }
-
-        // push a new head onto the ArrayList and pull off the tail
-        // 在蛇头的位置增加一个新坐标
-        mSnakeTrail.add(0, newHead);
-        // except if we want the snake to grow
-        // 如果没有增长
-        if (!growSnake) {
-            // 如果蛇头没增长则删去最后一个坐标，相当于蛇向前走了一步
-            mSnakeTrail.remove(mSnakeTrail.size() - 1);
+        mSliding = false;
+        clearSprites();
+        invalidateSprites();
+        SnakeBody snake = mEngine.getSnake();
+        if (hasTileGrid() && snake.size() > 0) {
+            int head = snake.head();
+            setTile(YELLOW_STAR, SnakeBody.unpackX(head), SnakeBody.unpackY(head));
+            invalidateTiles();
         }
+    }
 
-        int index = 0;
-        // 重新设置一下颜色，蛇头是黄色的（同苹果一样），蛇身是红色的
-        for (Coordinate c : mSnakeTrail) {
-            if (index == 0) {
-                setTile(YELLOW_STAR, c.x, c.y);
-            } else {
-                setTile(RED_STAR, c.x, c.y);
-            }
-            index++;
-        }
+    private static float lerpX(int from, int to, float f) {
+        int x = SnakeBody.unpackX(from);
+        return x + (SnakeBody.unpackX(to) - x) * f;
+    }
 
+    private static float lerpY(int from, int to, float f) {
+        int y = SnakeBody.unpackY(from);
+        return y + (SnakeBody.unpackY(to) - y) * f;
     }
 
     /**
-     * Simple class containing two integer values and a comparison function.
-     * There's probably something I should use instead, but this was quick and
-     * easy to build.
+     * Advances the engine by one tick. Changed cells reach the tiles through
+     * the engine listener; a crash or a full garden ends the game.
      *
      */
-    // 坐标内部类——原作者说这是临时做法
-    private class Coordinate {
-        public int x;
-        public int y;
-
-        // 构造函数
-        public Coordinate(int newX, int newY) {
-            x = newX;
-            y = newY;
+    // 更新蛇
+    private void updateSnake() {
+        // 回放时方向来自录制的记录，放完后暂停
+        if (mPlayback != null) {
+            if (!mPlayback.hasNext()) {
+                setMode(PAUSE);
+                return;
+            }
+            mEngine.setNextDirection(mPlayback.nextDirection());
+        } else if (mAutopilot != null) {
+            mEngine.setNextDirection(mAutopilot.chooseDirection(mEngine));
         }
-
-        // 重写equals
-        public boolean equals(Coordinate other) {
-            if (x == other.x && y == other.y) {
-                return true;
+        // 每步只取一个按键
+        int input = InputQueue.NONE;
+        if (mPlayback == null && mAutopilot == null) {
+            input = mInput.poll();
+            if (input != InputQueue.NONE) {
+                mEngine.setNextDirection(input);
             }
-            return false;
         }
-
-        // 重写toString
-        @Override
-        public String toString() {
-            return "Coordinate: [" + x + "," + y + "]";
+        SnakeBody snake = mEngine.getSnake();
+        int fromHead = snake.head();
+        int fromTail = snake.tail();
+        mPlayMillis += mEngine.getMoveDelay();
+        long start = mMetrics.begin();
+        int result = mEngine.step();
+        mMetrics.end(GameMetrics.PHASE_STEP, start);
+        if (input != InputQueue.NONE) {
+            mMetrics.getInputLatency().record(System.nanoTime()
+                    - mInput.getPolledTime());
+        }
+        followHead();
+        // 一步长于一帧时，蛇头和蛇尾在这一步的时间里滑到新格子
+        if (mInterpolate && mSurfaceView == null && hasTileGrid()
+                && mEngine.getMoveDelay() > FRAME_MILLIS
+                && (result == GameEngine.MOVED || result == GameEngine.ATE)) {
+            mSliding = true;
+            mFromHead = fromHead;
+            mFromTail = result == GameEngine.ATE ? -1 : fromTail;
+            int head = snake.head();
+            setTile(0, SnakeBody.unpackX(head), SnakeBody.unpackY(head));
+        } else {
+            endSlide();
+        }
+        if (mRecording != null) {
+            mRecording.record(mEngine.getDirection());
+        }
+        // 吃到苹果和撞死时播放音效
+        if (mMusic != null) {
+            if (result == GameEngine.ATE) {
+                mMusic.playEffect(Music.EFFECT_EAT);
+            } else if (result == GameEngine.DIED) {
+                mMusic.playEffect(Music.EFFECT_LOSE);
+            }
+        }
+        if (result == GameEngine.DIED) {
+            // 设置游戏状态为Lose
+            setMode(LOSE);
+        } else if (result == GameEngine.WON) {
+            setMode(WIN);
+        } else if (mJournal != null && mPlayback == null
+                && mJournal.recordMove(mEngine.getDirection())) {
+            // 定期写快照，压缩存档日志
+            writeSnapshot();
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,204 @@
+package com.example.snake;
+
+import java.util.Arrays;
+
+/**
+ * StateCodec: a compact, versioned byte encoding of a game's state for
+ * SnakeView.saveState/restoreState.
+ *
+ * Instead of two int arrays with every x and y, the snake is stored as its
+ * head coordinate followed by a 2-bit step direction per remaining segment
+ * (four segments per byte). Apples, directions, the move delay and the score
+ * are written as unsigned varints.
+ *
+ * Layout (version 1):
+ * <pre>
+ * version                  1 byte
+ * direction, nextDirection varint
+ * moveDelay, score         varint
+ * snake length             varint
+ * head x, head y           varint
+ * segment steps            2 bits each, packed low bits first
+ * apple count              varint
+ * apple x, apple y         varint each
+ * </pre>
+ *
+ */
+// 状态编码：蛇头坐标 + 每节蛇身2位的方向码，其余数值用变长整数，整体存成一个字节数组
+public class StateCodec {
+
+    // 当前编码版本
+    public static final int VERSION = 1;
+
+    // 相邻两节蛇身之间的方向码（从前一节到后一节）
+    private static final int STEP_UP = 0;
+    private static final int STEP_DOWN = 1;
+    private static final int STEP_RIGHT = 2;
+    private static final int STEP_LEFT = 3;
+
+    // 一个变长整数最多占用的字节数
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private StateCodec() {
+    }
+
+    /**
+     * Encodes the engine's snake, apples, directions, move delay and score.
+     *
+     * @throws IllegalStateException if two consecutive snake segments are not
+     *         adjacent
+     */
+    // 编码游戏状态
+    public static byte[] encode(GameEngine engine) {
+        SnakeBody snake = engine.getSnake();
+        int length = snake.size();
+        int apples = engine.getAppleCount();
+
+        // 按最坏情况分配，最后截断到实际长度
+        byte[] out = new byte[1 + MAX_VARINT_BYTES * (7 + 2 * apples)
+                + (length + 3) / 4];
+        int pos = 0;
+        out[pos++] = VERSION;
+        pos = writeVarint(out, pos, engine.getDirection());
+        pos = writeVarint(out, pos, engine.getNextDirection());
+        pos = writeVarint(out, pos, engine.getMoveDelay());
+        pos = writeVarint(out, pos, engine.getScore());
+        pos = writeVarint(out, pos, length);
+        if (length > 0) {
+            pos = writeVarint(out, pos, snake.getX(0));
+            pos = writeVarint(out, pos, snake.getY(0));
+            // 每个字节放4个方向码
+            for (int index = 1; index < length; index++) {
+                int code = stepCode(snake.get(index - 1), snake.get(index));
+                int shift = ((index - 1) & 3) * 2;
+                out[pos] |= (byte) (code << shift);
+                if (shift == 6 || index == length - 1) {
+                    pos++;
+                }
+            }
+        }
+        pos = writeVarint(out, pos, apples);
+        for (int index = 0; index < apples; index++) {
+            int apple = engine.getApple(index);
+            pos = writeVarint(out, pos, SnakeBody.unpackX(apple));
+            pos = writeVarint(out, pos, SnakeBody.unpackY(apple));
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    /**
+     * Decodes a state written by {@link #encode} into the engine.
+     *
+     * @throws IllegalArgumentException if the data is truncated or was written
+     *         by an unknown version
+     */
+    // 解码并恢复到引擎中
+    public static void decode(byte[] data, GameEngine engine) {
+        Reader in = new Reader(data);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown state version "
+                    + version);
+        }
+        int direction = (int) in.readVarint();
+        int nextDirection = (int) in.readVarint();
+        long moveDelay = in.readVarint();
+        long score = in.readVarint();
+
+        int length = (int) in.readVarint();
+        int[] snake = new int[length * 2];
+        if (length > 0) {
+            int x = (int) in.readVarint();
+            int y = (int) in.readVarint();
+            snake[0] = x;
+            snake[1] = y;
+            int bits = 0;
+            for (int index = 1; index < length; index++) {
+                int shift = ((index - 1) & 3) * 2;
+                if (shift == 0) {
+                    bits = in.readByte();
+                }
+                switch ((bits >> shift) & 3) {
+                    case STEP_UP:
+                        y--;
+                        break;
+                    case STEP_DOWN:
+                        y++;
+                        break;
+                    case STEP_RIGHT:
+                        x++;
+                        break;
+                    case STEP_LEFT:
+                        x--;
+                        break;
+                }
+                snake[2 * index] = x;
+                snake[2 * index + 1] = y;
+            }
+        }
+
+        int count = (int) in.readVarint();
+        int[] apples = new int[count * 2];
+        for (int index = 0; index < apples.length; index++) {
+            apples[index] = (int) in.readVarint();
+        }
+
+        engine.restoreState(snake, apples, direction, nextDirection,
+                moveDelay, score);
+    }
+
+    // 从一节蛇身走到下一节的方向码
+    private static int stepCode(int from, int to) {
+        int dx = SnakeBody.unpackX(to) - SnakeBody.unpackX(from);
+        int dy = SnakeBody.unpackY(to) - SnakeBody.unpackY(from);
+        if (dx == 0 && dy == -1) {
+            return STEP_UP;
+        } else if (dx == 0 && dy == 1) {
+            return STEP_DOWN;
+        } else if (dx == 1 && dy == 0) {
+            return STEP_RIGHT;
+        } else if (dx == -1 && dy == 0) {
+            return STEP_LEFT;
+        }
+        throw new IllegalStateException("Snake segments are not adjacent");
+    }
+
+    // 写一个无符号变长整数（每字节7位，最高位表示后面还有）
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    // 顺序读取字节数组
+    private static class Reader {
+        private final byte[] mData;
+        private int mPos;
+
+        Reader(byte[] data) {
+            mData = data;
+        }
+
+        int readByte() {
+            if (mPos >= mData.length) {
+                throw new IllegalArgumentException("Truncated state");
+            }
+            return mData[mPos++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+    }
+}
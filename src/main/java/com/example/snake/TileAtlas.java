@@ -0,0 +1,78 @@
+package com.example.snake;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * TileAtlas: every tile rendered once, side by side, into a single bitmap and
+ * drawn by source-rect blits.
+ *
+ * One texture instead of one per tile keeps memory and per-draw overhead flat
+ * as tile types are added. The atlas stays ARGB_8888: the tiles are
+ * transparent around the stars, and they are drawn into software canvases
+ * (the board and static layer bitmaps), which cannot read HARDWARE bitmaps.
+ *
+ * The atlas is shared between threads, so the scratch rects used for drawing
+ * are passed in by each caller.
+ *
+ */
+// 贴片图集：所有贴片并排画在一张位图上，绘制时按源矩形截取
+public class TileAtlas {
+
+    private final int mTileSize;
+    private final int mTileCount;
+    private final Bitmap mBitmap;
+    // 合成用的画布
+    private final Canvas mCanvas;
+
+    public TileAtlas(int tileSize, int tileCount) {
+        mTileSize = tileSize;
+        mTileCount = tileCount;
+        mBitmap = Bitmap.createBitmap(tileSize * Math.max(tileCount, 1),
+                tileSize, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    public int getTileCount() {
+        return mTileCount;
+    }
+
+    // 图集占用的字节数
+    public int getByteCount() {
+        return mBitmap.getRowBytes() * mBitmap.getHeight();
+    }
+
+    /**
+     * Renders the drawable into the slot for the given key.
+     */
+    // 把drawable画到图集中key对应的位置
+    public void load(int key, Drawable tile) {
+        int left = key * mTileSize;
+        tile.setBounds(left, 0, left + mTileSize, mTileSize);
+        tile.draw(mCanvas);
+    }
+
+    /**
+     * Draws one tile with its top-left corner at left/top.
+     *
+     * @param src
+     *            scratch rect owned by the calling thread
+     * @param dst
+     *            scratch rect owned by the calling thread
+     */
+    // 在指定位置画出一个贴片
+    public void draw(Canvas canvas, int tile, int left, int top, Paint paint,
+            Rect src, Rect dst) {
+        int srcLeft = tile * mTileSize;
+        src.set(srcLeft, 0, srcLeft + mTileSize, mTileSize);
+        dst.set(left, top, left + mTileSize, top + mTileSize);
+        canvas.drawBitmap(mBitmap, src, dst, paint);
+    }
+}
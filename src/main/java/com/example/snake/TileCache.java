@@ -0,0 +1,51 @@
+package com.example.snake;
+
+import android.util.LruCache;
+
+/**
+ * TileCache: process-wide cache of loaded tile atlases, keyed by tile set,
+ * tile size and screen density.
+ *
+ * Views created again after a rotation, and other views showing the same
+ * tiles, reuse the atlas instead of decoding the drawables and rasterizing
+ * the tiles again. An atlas is only put here once fully loaded and is never
+ * drawn into afterwards, so sharing it between views and threads is safe.
+ *
+ */
+// 进程级的贴片图集缓存：旋转屏幕重建视图时不必重新解码和绘制贴片
+public class TileCache {
+
+    // 缓存的图集最多占用的字节数
+    private static final int MAX_BYTES = 1024 * 1024;
+
+    private static final LruCache<String, TileAtlas> sAtlases = new LruCache<String, TileAtlas>(
+            MAX_BYTES) {
+        @Override
+        protected int sizeOf(String key, TileAtlas atlas) {
+            return atlas.getByteCount();
+        }
+    };
+
+    private TileCache() {
+    }
+
+    // 缓存键：贴片集名称、贴片大小和屏幕密度
+    public static String keyFor(String name, int tileSize, int densityDpi) {
+        return name + ':' + tileSize + ':' + densityDpi;
+    }
+
+    // 取出缓存的图集，没有时为null
+    public static TileAtlas get(String key) {
+        return sAtlases.get(key);
+    }
+
+    // 放入加载完的图集
+    public static void put(String key, TileAtlas atlas) {
+        sAtlases.put(key, atlas);
+    }
+
+    // 内存紧张时清空
+    public static void clear() {
+        sAtlases.evictAll();
+    }
+}
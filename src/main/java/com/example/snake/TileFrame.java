@@ -0,0 +1,63 @@
+package com.example.snake;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * TileFrame: an immutable snapshot of a TileView's tiles, handed from the
+ * simulation thread to the render thread.
+ *
+ * The tile indexes are copied; the tile atlas and the static layer are
+ * shared, since neither changes between size changes.
+ *
+ */
+// 贴片帧：TileView贴片的不可变快照，由模拟线程交给渲染线程
+public final class TileFrame {
+    // 贴片大小和数量
+    final int tileSize;
+    final int xTileCount;
+    final int yTileCount;
+    // 偏移量
+    final int xOffset;
+    final int yOffset;
+    // 每个贴片的索引（行优先）
+    private final byte[] mTiles;
+    // 贴片图集和静态图层（共享）
+    private final TileAtlas mTileAtlas;
+    private final Bitmap mStaticLayer;
+
+    TileFrame(int tileSize, int xTileCount, int yTileCount, int xOffset,
+            int yOffset, byte[] tiles, TileAtlas tileAtlas, Bitmap staticLayer) {
+        this.tileSize = tileSize;
+        this.xTileCount = xTileCount;
+        this.yTileCount = yTileCount;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+        mTiles = tiles;
+        mTileAtlas = tileAtlas;
+        mStaticLayer = staticLayer;
+    }
+
+    /**
+     * Draws the static layer and then every non-empty tile onto the canvas.
+     * The scratch rects belong to the drawing thread.
+     */
+    // 画出静态图层和所有不空的贴片
+    public void draw(Canvas canvas, Paint paint, Rect src, Rect dst) {
+        if (mStaticLayer != null) {
+            canvas.drawBitmap(mStaticLayer, 0, 0, null);
+        }
+        int index = 0;
+        for (int y = 0; y < yTileCount; y++) {
+            for (int x = 0; x < xTileCount; x++) {
+                int tile = mTiles[index++];
+                if (tile > 0) {
+                    mTileAtlas.draw(canvas, tile, xOffset + x * tileSize,
+                            yOffset + y * tileSize, paint, src, dst);
+                }
+            }
+        }
+    }
+}
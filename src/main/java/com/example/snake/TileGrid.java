@@ -0,0 +1,118 @@
+package com.example.snake;
+
+import java.util.Arrays;
+
+/**
+ * TileGrid: the tile index of every cell of a board, one byte per cell in a
+ * flat row-major array, plus the set of cells changed since the last draw.
+ *
+ * Individual changes are queued once each; a bulk clear() just fills the
+ * array and marks the whole grid dirty instead of queueing every cell.
+ *
+ */
+// 贴片表：一维行优先的字节数组（每格一个字节），并记录上次绘制后有变化的格子
+public class TileGrid {
+
+    // 贴片索引的上限（字节存储）
+    public static final int MAX_TILES = 127;
+
+    private final int mWidth;
+    private final int mHeight;
+    // 每个格子的贴片索引，下标 y * width + x
+    private final byte[] mTiles;
+
+    // 脏格子列表和标志
+    private final int[] mDirtyCells;
+    private final boolean[] mDirtyFlags;
+    private int mDirtyCount;
+    // 整个表都需要重画
+    private boolean mAllDirty = true;
+
+    public TileGrid(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mTiles = new byte[width * height];
+        mDirtyCells = new int[width * height];
+        mDirtyFlags = new boolean[width * height];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int get(int x, int y) {
+        return mTiles[y * mWidth + x];
+    }
+
+    // 按行优先下标取贴片索引
+    public int getAt(int cell) {
+        return mTiles[cell];
+    }
+
+    /**
+     * Sets the tile at x/y and queues the cell for redrawing if it changed.
+     *
+     * @return true if the tile changed
+     */
+    // 设置贴片，有变化时记为脏格子
+    public boolean set(int x, int y, int tileindex) {
+        int cell = y * mWidth + x;
+        if (mTiles[cell] == tileindex) {
+            return false;
+        }
+        mTiles[cell] = (byte) tileindex;
+        if (!mAllDirty && !mDirtyFlags[cell]) {
+            mDirtyFlags[cell] = true;
+            mDirtyCells[mDirtyCount++] = cell;
+        }
+        return true;
+    }
+
+    /**
+     * Resets every tile to 0 (empty) and marks the whole grid dirty.
+     */
+    // 清空所有贴片
+    public void clear() {
+        Arrays.fill(mTiles, (byte) 0);
+        markAllDirty();
+    }
+
+    // 标记整个表需要重画
+    public void markAllDirty() {
+        discardDirty();
+        mAllDirty = true;
+    }
+
+    public boolean isAllDirty() {
+        return mAllDirty;
+    }
+
+    public int getDirtyCount() {
+        return mDirtyCount;
+    }
+
+    // 第i个脏格子（行优先下标）
+    public int getDirtyCell(int i) {
+        return mDirtyCells[i];
+    }
+
+    // 绘制完成后清除脏标记
+    public void discardDirty() {
+        for (int i = 0; i < mDirtyCount; i++) {
+            mDirtyFlags[mDirtyCells[i]] = false;
+        }
+        mDirtyCount = 0;
+        mAllDirty = false;
+    }
+
+    /**
+     * Copies the tiles, row-major, into a new array.
+     */
+    public byte[] copyTiles() {
+        return mTiles.clone();
+    }
+}
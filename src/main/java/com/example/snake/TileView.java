@@ -4,7 +4,11 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.view.View;
@@ -19,30 +23,84 @@ public class TileView extends View {
      * Parameters controlling the size of the tiles and their range within view.
      * Width/Height are in pixels, and Drawables will be scaled to fit to these
      * dimensions. X/Y Tile Counts are the number of tiles that will be drawn.
+     * All of them belong to this view alone, so several boards can be shown
+     * at once.
      */
-    protected static int mTileSize;
+    protected int mTileSize;
     // X轴的贴片数量
-    protected static int mXTileCount;
+    protected int mXTileCount;
     // Y轴的贴片数量
-    protected static int mYTileCount;
+    protected int mYTileCount;
     // X偏移量
-    private static int mXOffset;
+    private int mXOffset;
     // Y偏移量
-    private static int mYOffset;
+    private int mYOffset;
     /**
-     * A hash that maps integer handles specified by the subclasser to the
-     * drawable that will be used for that reference
+     * The atlas holding the image for each integer handle specified by the
+     * subclasser, all in one bitmap
      */
-    // 贴片图像的图像数组
-    private Bitmap[] mTileArray;
+    // 贴片图集
+    private TileAtlas mTileAtlas;
     /**
-     * A two-dimensional array of integers in which the number represents the
-     * index of the tile that should be drawn at that locations
+     * The index of the tile that should be drawn at each location, stored
+     * row-major one byte per cell, along with the cells changed since the
+     * last draw.
      */
-    // 保存每个贴片的索引——二维数组
-    private int[][] mTileGrid;
+    // 保存每个贴片的索引——一维行优先字节数组
+    private TileGrid mTileGrid;
+    /**
+     * A retained bitmap holding the last drawn state of every tile. Only tiles
+     * changed through setTile since the previous draw are repainted into it,
+     * so the per-frame cost follows the number of changes, not the board area.
+     */
+    // 保留的整块画板，只重画有变化的贴片
+    private Bitmap mBoard;
+    private Canvas mBoardCanvas;
+    /**
+     * The static layer: tiles that never change between size changes (walls,
+     * obstacles), composed once by onBuildStaticLayer() and drawn underneath
+     * the dynamic board.
+     */
+    // 静态图层：墙等不变的贴片，尺寸改变时只合成一次
+    private Bitmap mStaticLayer;
+    private Canvas mStaticCanvas;
+    // 脏贴片的像素范围
+    private final Rect mDirtyRect = new Rect();
     // Paint对象（画笔、颜料）
     private final Paint mPaint = new Paint();
+    // 用于擦除画板上单个贴片的画笔
+    private final Paint mClearPaint = new Paint();
+    // 从图集截取贴片用的矩形（只在UI线程使用）
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    /**
+     * World mode: the tiles of a board much larger than the view, kept in a
+     * ChunkedGrid in world coordinates. The view shows the window of tiles
+     * starting at the camera; each draw visits only the chunks intersecting
+     * it, and the border tile is drawn along the world's edges wherever they
+     * are in view. No bitmaps the size of the view are kept.
+     */
+    // 大地图模式：分块存储的贴片、摄像机位置和边框贴片
+    private ChunkedGrid mWorld;
+    private int mCameraX;
+    private int mCameraY;
+    private int mBorderTile;
+    // 上次绘制后视口内有变化
+    private boolean mWorldChanged;
+    /**
+     * Sprites: a few tiles drawn over the grid at fractional tile positions,
+     * e.g. the head of the snake sliding between two cells. mSpriteRect
+     * covers the sprites as last drawn, so that moving them invalidates only
+     * the area they leave and the area they enter.
+     */
+    // 精灵：画在贴片之间（小数坐标）的少数贴片，用于插值动画
+    public static final int MAX_SPRITES = 4;
+    private final int[] mSpriteTiles = new int[MAX_SPRITES];
+    private final float[] mSpriteX = new float[MAX_SPRITES];
+    private final float[] mSpriteY = new float[MAX_SPRITES];
+    private int mSpriteCount;
+    private final Rect mSpriteRect = new Rect();
+    private final Rect mSpriteDirty = new Rect();
     // 构造函数
     public TileView(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
@@ -50,6 +108,7 @@ public class TileView extends View {
                 R.styleable.TileView);
         mTileSize = a.getInt(R.styleable.TileView_tileSize, 12);
         a.recycle();
+        mClearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
     }
     public TileView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -57,16 +116,120 @@ public class TileView extends View {
                 R.styleable.TileView);
         mTileSize = a.getInt(R.styleable.TileView_tileSize, 12);
         a.recycle();
+        mClearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
     }
     /**
-     * Rests the internal array of Bitmaps used for drawing tiles, and sets the
-     * maximum index of tiles to be inserted
+     * Resets the atlas used for drawing tiles, and sets the maximum index of
+     * tiles to be inserted
      *
      * @param tilecount
      */
-    // 设置贴片图片数组
+    // 设置贴片图集
     public void resetTiles(int tilecount) {
-        mTileArray = new Bitmap[tilecount];
+        if (tilecount > TileGrid.MAX_TILES + 1) {
+            throw new IllegalArgumentException("At most "
+                    + (TileGrid.MAX_TILES + 1) + " tiles are supported");
+        }
+        mTileAtlas = new TileAtlas(mTileSize, tilecount);
+    }
+
+    /**
+     * Uses the atlas cached under the given tile set name for this view's
+     * tile size and density, if any.
+     *
+     * @param name
+     * @return false if the tiles have to be loaded
+     */
+    // 使用进程级缓存中的图集
+    public boolean useCachedTiles(String name) {
+        TileAtlas atlas = TileCache.get(tileCacheKey(name));
+        if (atlas == null) {
+            return false;
+        }
+        mTileAtlas = atlas;
+        return true;
+    }
+
+    /**
+     * Caches the atlas under the given tile set name once every tile has been
+     * loaded. No more tiles may be loaded into it afterwards.
+     *
+     * @param name
+     */
+    // 加载完所有贴片后放入缓存
+    public void cacheTiles(String name) {
+        TileCache.put(tileCacheKey(name), mTileAtlas);
+    }
+
+    private String tileCacheKey(String name) {
+        return TileCache.keyFor(name, mTileSize,
+                getResources().getDisplayMetrics().densityDpi);
+    }
+
+    /**
+     * Switches to world mode: tiles are set in world coordinates on a board of
+     * the given size, up to 10,000 x 10,000, and the view shows the part of
+     * it at the camera. The static layer and captureFrame() are not used in
+     * this mode.
+     *
+     * @param width
+     * @param height
+     * @param borderTile
+     *            tile drawn along the world's edges, or 0 for none
+     */
+    // 切换到大地图模式
+    public void setWorldSize(int width, int height, int borderTile) {
+        mWorld = new ChunkedGrid(width, height);
+        mBorderTile = borderTile;
+        mTileGrid = null;
+        mBoard = null;
+        mBoardCanvas = null;
+        mStaticLayer = null;
+        mStaticCanvas = null;
+        setCamera(0, 0);
+        invalidate();
+    }
+
+    public boolean isWorldMode() {
+        return mWorld != null;
+    }
+
+    public int getCameraX() {
+        return mCameraX;
+    }
+
+    public int getCameraY() {
+        return mCameraY;
+    }
+
+    /**
+     * Moves the top-left corner of the view to the given world tile, kept
+     * within the world.
+     */
+    // 移动摄像机（视口左上角的贴片），不超出地图
+    public void setCamera(int x, int y) {
+        x = Math.max(Math.min(x, mWorld.getWidth() - mXTileCount), 0);
+        y = Math.max(Math.min(y, mWorld.getHeight() - mYTileCount), 0);
+        if (x != mCameraX || y != mCameraY) {
+            mCameraX = x;
+            mCameraY = y;
+            mWorldChanged = true;
+        }
+    }
+
+    // 让摄像机以该贴片为中心
+    public void centerCamera(int x, int y) {
+        setCamera(x - mXTileCount / 2, y - mYTileCount / 2);
+    }
+
+    // 本视图X轴的贴片数量
+    public int getXTileCount() {
+        return mXTileCount;
+    }
+
+    // 本视图Y轴的贴片数量
+    public int getYTileCount() {
+        return mYTileCount;
     }
     // 回调：当该View的尺寸改变时调用，在onDraw()方法调用之前就会被调用，所以用来设置一些变量的初始值
     // 在视图大小改变的时候调用，比如说手机由垂直旋转为水平
@@ -79,10 +242,65 @@ public class TileView extends View {
         mXOffset = ((w - (mTileSize * mXTileCount)) / 2);
         // Y轴偏移量
         mYOffset = ((h - (mTileSize * mYTileCount)) / 2);
-        // 定义贴片的二维数组
-        mTileGrid = new int[mXTileCount][mYTileCount];
-        // 清空所有贴片
-        clearTiles();
+        // 大地图模式下贴片不随视图大小改变，只需重新限制摄像机位置
+        if (mWorld != null) {
+            setCamera(mCameraX, mCameraY);
+            invalidate();
+            return;
+        }
+        // 定义贴片表，贴片数量不变时清空重用
+        if (mTileGrid != null && mTileGrid.getWidth() == mXTileCount
+                && mTileGrid.getHeight() == mYTileCount) {
+            mTileGrid.clear();
+        } else {
+            mTileGrid = new TileGrid(mXTileCount, mYTileCount);
+        }
+        mDirtyRect.setEmpty();
+        // 新建画板（全透明，与清空的贴片数组一致）和静态图层。
+        // 旧的静态图层可能还被已发布的TileFrame引用，所以不主动recycle
+        mBoard = null;
+        mBoardCanvas = null;
+        mStaticLayer = null;
+        mStaticCanvas = null;
+        if (w > 0 && h > 0) {
+            mBoard = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            mBoardCanvas = new Canvas(mBoard);
+            mStaticLayer = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            mStaticCanvas = new Canvas(mStaticLayer);
+            // 让子类把静态贴片画到静态图层上
+            onBuildStaticLayer();
+        }
+        invalidate();
+    }
+
+    /**
+     * Called once the view has a size, to compose the static layer with
+     * setStaticTile. The default does nothing.
+     */
+    // 回调：合成静态图层
+    protected void onBuildStaticLayer() {
+    }
+
+    /**
+     * Draws a tile into the static layer. Only valid from onBuildStaticLayer
+     * or later; static tiles stay until the next size change.
+     *
+     * @param tileindex
+     * @param x
+     * @param y
+     */
+    // 在静态图层上画一个贴片
+    public void setStaticTile(int tileindex, int x, int y) {
+        mTileAtlas.draw(mStaticCanvas, tileindex, mXOffset + x * mTileSize,
+                mYOffset + y * mTileSize, mPaint, mSrcRect, mDstRect);
+    }
+
+    /**
+     * Whether the view has been measured and the tile grid exists yet.
+     */
+    // 贴片数组是否已经建立
+    protected boolean hasTileGrid() {
+        return mTileGrid != null || mWorld != null;
     }
     /**
      * Function to set the specified Drawable as the tile for a particular
@@ -91,29 +309,24 @@ public class TileView extends View {
      * @param key
      * @param tile
      */
-    // 给mTileArray这个Bitmap图片数组设置值
+    // 把drawable画到图集中key对应的位置
     public void loadTile(int key, Drawable tile) {
-        Bitmap bitmap = Bitmap.createBitmap(mTileSize, mTileSize,
-                Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        tile.setBounds(0, 0, mTileSize, mTileSize);
-        // 把一个drawable转成一个Bitmap
-        tile.draw(canvas);
-        // 在数组里存入该Bitmap
-        mTileArray[key] = bitmap;
+        mTileAtlas.load(key, tile);
     }
+
     /**
      * Resets all tiles to 0 (empty)
      *
      */
     // 清空所有贴片
     public void clearTiles() {
-        for (int x = 0; x < mXTileCount; x++) {
-            for (int y = 0; y < mYTileCount; y++) {
-                // 全部设置为0
-                setTile(0, x, y);
-            }
+        if (mWorld != null) {
+            mWorld.clear();
+            mWorldChanged = true;
+            return;
         }
+        // 整块填0，并标记整个表需要重画
+        mTileGrid.clear();
     }
     /**
      * Used to indicate that a particular tile (set with loadTile and referenced
@@ -126,21 +339,241 @@ public class TileView extends View {
      */
     // 给某个贴片位置设置一个状态索引
     public void setTile(int tileindex, int x, int y) {
-        mTileGrid[x][y] = tileindex;
+        if (mWorld != null) {
+            // 视口内有变化时才需要重画
+            if (mWorld.set(x, y, tileindex) != tileindex && isInView(x, y)) {
+                mWorldChanged = true;
+            }
+            return;
+        }
+        // 有变化时记录为脏贴片，下次绘制时只重画它
+        if (mTileGrid.set(x, y, tileindex)) {
+            int left = mXOffset + x * mTileSize;
+            int top = mYOffset + y * mTileSize;
+            mDirtyRect.union(left, top, left + mTileSize, top + mTileSize);
+        }
+    }
+
+    /**
+     * Invalidates just the area covered by tiles changed since the last draw.
+     * Call after a batch of setTile calls instead of invalidate().
+     */
+    // 只刷新有变化的区域
+    public void invalidateTiles() {
+        if (mWorld != null) {
+            // 视口每次整体重画，代价只与视口大小有关
+            if (mWorldChanged) {
+                mWorldChanged = false;
+                invalidate();
+            }
+        } else if (mTileGrid.isAllDirty()) {
+            invalidate();
+        } else if (mTileGrid.getDirtyCount() > 0) {
+            invalidate(mDirtyRect);
+        }
+    }
+
+    // 去掉所有精灵（下次invalidateSprites时擦除）
+    public void clearSprites() {
+        mSpriteCount = 0;
+    }
+
+    /**
+     * Draws the tile over the grid at the given tile coordinates, which may be
+     * fractional, until the next clearSprites(). Coordinates are world
+     * coordinates in world mode.
+     *
+     * @param tileindex
+     * @param x
+     * @param y
+     */
+    // 在小数贴片坐标处画一个贴片
+    public void addSprite(int tileindex, float x, float y) {
+        if (mSpriteCount == MAX_SPRITES) {
+            return;
+        }
+        mSpriteTiles[mSpriteCount] = tileindex;
+        mSpriteX[mSpriteCount] = x;
+        mSpriteY[mSpriteCount] = y;
+        mSpriteCount++;
+    }
+
+    /**
+     * Invalidates the area the sprites were last drawn in and the area they
+     * are in now.
+     */
+    // 刷新精灵原来和现在所在的区域
+    public void invalidateSprites() {
+        mSpriteDirty.set(mSpriteRect);
+        for (int i = 0; i < mSpriteCount; i++) {
+            int left = spriteLeft(i);
+            int top = spriteTop(i);
+            mSpriteDirty.union(left, top, left + mTileSize, top + mTileSize);
+        }
+        if (!mSpriteDirty.isEmpty()) {
+            invalidate(mSpriteDirty);
+        }
+    }
+
+    private int spriteLeft(int i) {
+        return mXOffset + Math.round((mSpriteX[i] - mCameraX) * mTileSize);
+    }
+
+    private int spriteTop(int i) {
+        return mYOffset + Math.round((mSpriteY[i] - mCameraY) * mTileSize);
+    }
+
+    // 在贴片上面画出精灵，并记下它们的范围
+    private void drawSprites(Canvas canvas) {
+        mSpriteRect.setEmpty();
+        for (int i = 0; i < mSpriteCount; i++) {
+            int left = spriteLeft(i);
+            int top = spriteTop(i);
+            mTileAtlas.draw(canvas, mSpriteTiles[i], left, top, mPaint,
+                    mSrcRect, mDstRect);
+            mSpriteRect.union(left, top, left + mTileSize, top + mTileSize);
+        }
+    }
+
+    /**
+     * Takes an immutable snapshot of every tile for drawing on another thread.
+     * Dirty tracking is reset, since the frame carries the whole grid.
+     *
+     * @return the frame, or null if the view has no size yet or is in world
+     *         mode
+     */
+    // 生成当前贴片的不可变快照，供其它线程绘制
+    public TileFrame captureFrame() {
+        if (mTileGrid == null) {
+            return null;
+        }
+        byte[] tiles = mTileGrid.copyTiles();
+        mTileGrid.discardDirty();
+        mDirtyRect.setEmpty();
+        return new TileFrame(mTileSize, mXTileCount, mYTileCount, mXOffset,
+                mYOffset, tiles, mTileAtlas, mStaticLayer);
+    }
+
+    // 把脏贴片重画到画板上
+    private void flushDirtyTiles() {
+        TileGrid grid = mTileGrid;
+        if (grid.isAllDirty()) {
+            // 整个表都变了：清空画板，按行优先顺序画出所有不空的贴片
+            mBoard.eraseColor(Color.TRANSPARENT);
+            int cell = 0;
+            for (int y = 0; y < mYTileCount; y++) {
+                for (int x = 0; x < mXTileCount; x++) {
+                    int tile = grid.getAt(cell++);
+                    if (tile > 0) {
+                        mTileAtlas.draw(mBoardCanvas, tile, mXOffset + x
+                                * mTileSize, mYOffset + y * mTileSize, mPaint,
+                                mSrcRect, mDstRect);
+                    }
+                }
+            }
+        } else {
+            int count = grid.getDirtyCount();
+            for (int i = 0; i < count; i++) {
+                int cell = grid.getDirtyCell(i);
+                int x = cell % mXTileCount;
+                int y = cell / mXTileCount;
+                int left = mXOffset + x * mTileSize;
+                int top = mYOffset + y * mTileSize;
+                // 先擦除原来的贴片
+                mBoardCanvas.drawRect(left, top, left + mTileSize,
+                        top + mTileSize, mClearPaint);
+                int tile = grid.getAt(cell);
+                if (tile > 0) {
+                    mTileAtlas.draw(mBoardCanvas, tile, left, top, mPaint,
+                            mSrcRect, mDstRect);
+                }
+            }
+        }
+        grid.discardDirty();
+        mDirtyRect.setEmpty();
     }
     // onDraw 在视图需要重画的时候调用，比如说使用invalidate刷新界面上的某个矩形区域
     @Override
     public void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        for (int x = 0; x < mXTileCount; x += 1) {
-            for (int y = 0; y < mYTileCount; y += 1) {
-                // 当索引大于零，也就是不空时
-                if (mTileGrid[x][y] > 0) {
-                    // mTileGrid中不为零时画此贴片
-                    canvas.drawBitmap(mTileArray[mTileGrid[x][y]], mXOffset + x
-                            * mTileSize, mYOffset + y * mTileSize, mPaint);
+        if (mWorld != null) {
+            drawWorld(canvas);
+            drawSprites(canvas);
+            return;
+        }
+        if (mBoard == null) {
+            return;
+        }
+        // 先把有变化的贴片更新到画板，再依次画出静态图层、动态画板和精灵
+        flushDirtyTiles();
+        canvas.drawBitmap(mStaticLayer, 0, 0, null);
+        canvas.drawBitmap(mBoard, 0, 0, null);
+        drawSprites(canvas);
+    }
+
+    // 贴片是否在视口内
+    private boolean isInView(int x, int y) {
+        return x >= mCameraX && y >= mCameraY && x < mCameraX + mXTileCount
+                && y < mCameraY + mYTileCount;
+    }
+
+    // 画出视口：只访问与视口相交且不空的块，再画出视口内的地图边框
+    private void drawWorld(Canvas canvas) {
+        int left = mCameraX;
+        int top = mCameraY;
+        int right = Math.min(left + mXTileCount, mWorld.getWidth());
+        int bottom = Math.min(top + mYTileCount, mWorld.getHeight());
+        int shift = ChunkedGrid.CHUNK_SHIFT;
+        int mask = ChunkedGrid.CHUNK - 1;
+        for (int cy = top >> shift; cy <= (bottom - 1) >> shift; cy++) {
+            for (int cx = left >> shift; cx <= (right - 1) >> shift; cx++) {
+                byte[] chunk = mWorld.getChunk(cx, cy);
+                if (chunk == null) {
+                    continue;
                 }
+                // 块与视口的交集
+                int x0 = Math.max(left, cx << shift);
+                int x1 = Math.min(right, (cx + 1) << shift);
+                int y0 = Math.max(top, cy << shift);
+                int y1 = Math.min(bottom, (cy + 1) << shift);
+                for (int y = y0; y < y1; y++) {
+                    int row = (y & mask) << shift;
+                    for (int x = x0; x < x1; x++) {
+                        int tile = chunk[row | (x & mask)];
+                        if (tile > 0) {
+                            drawWorldTile(canvas, tile, x, y);
+                        }
+                    }
+                }
+            }
+        }
+        if (mBorderTile <= 0) {
+            return;
+        }
+        int lastX = mWorld.getWidth() - 1;
+        int lastY = mWorld.getHeight() - 1;
+        for (int x = left; x < right; x++) {
+            if (top == 0) {
+                drawWorldTile(canvas, mBorderTile, x, 0);
+            }
+            if (bottom - 1 == lastY) {
+                drawWorldTile(canvas, mBorderTile, x, lastY);
+            }
+        }
+        for (int y = top; y < bottom; y++) {
+            if (left == 0) {
+                drawWorldTile(canvas, mBorderTile, 0, y);
+            }
+            if (right - 1 == lastX) {
+                drawWorldTile(canvas, mBorderTile, lastX, y);
             }
         }
     }
+
+    // 在视口中画出地图坐标处的贴片
+    private void drawWorldTile(Canvas canvas, int tile, int x, int y) {
+        mTileAtlas.draw(canvas, tile, mXOffset + (x - mCameraX) * mTileSize,
+                mYOffset + (y - mCameraY) * mTileSize, mPaint, mSrcRect,
+                mDstRect);
+    }
 }
\ No newline at end of file
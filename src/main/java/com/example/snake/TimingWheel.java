@@ -0,0 +1,205 @@
+package com.example.snake;
+
+/**
+ * TimingWheel: a hierarchical timing wheel for very many timers with a
+ * fixed resolution, e.g. the next move of thousands of game rooms.
+ *
+ * Time is counted in wheel ticks. LEVELS wheels of SLOTS slots each cover
+ * SLOTS, SLOTS^2, ... ticks ahead; a timer goes into the coarsest slot that
+ * still separates it from now and moves down a level each time the finer
+ * wheel wraps around, so scheduling, cancelling and expiring are O(1) per
+ * timer however many there are. Timers are intrusive (extend Entry), so
+ * rescheduling allocates nothing.
+ *
+ * Not thread-safe: one thread owns a wheel.
+ *
+ */
+// 分层时间轮：大量定时器的调度、取消和到期都是O(1)
+public class TimingWheel {
+
+    // 每层的槽数（2的幂）和层数：覆盖 64^4 个刻度
+    public static final int SLOT_BITS = 6;
+    public static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    public static final int LEVELS = 4;
+    // 最远可以直接放入的刻度数，更远的先放在最外层，到时再放一次
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+    /**
+     * A timer; subclass it to carry the work to do when it expires.
+     */
+    // 定时器节点：双向链表挂在某一层的某个槽里
+    public static class Entry {
+        long mDeadline;
+        Entry mNext;
+        Entry mPrev;
+        // 所在的层和槽，不在时间轮上时为-1
+        int mLevel = -1;
+        int mSlot;
+
+        public long getDeadline() {
+            return mDeadline;
+        }
+
+        public boolean isScheduled() {
+            return mLevel >= 0;
+        }
+    }
+
+    // 每层每个槽的链表头
+    private final Entry[][] mSlots = new Entry[LEVELS][SLOTS];
+    private long mNow;
+    private int mSize;
+
+    public TimingWheel(long now) {
+        mNow = now;
+    }
+
+    // 当前刻度：这个刻度及之前的定时器都已到期
+    public long getNow() {
+        return mNow;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Schedules the entry for the given tick, moving it if it was already
+     * scheduled. A deadline that has passed expires on the next advance.
+     */
+    // 安排定时器在deadline刻度到期
+    public void schedule(Entry entry, long deadline) {
+        if (entry.mLevel >= 0) {
+            cancel(entry);
+        }
+        entry.mDeadline = deadline;
+        insert(entry, false);
+        mSize++;
+    }
+
+    // 取消定时器（不在时间轮上时什么也不做）
+    public void cancel(Entry entry) {
+        if (entry.mLevel < 0) {
+            return;
+        }
+        unlink(entry);
+        mSize--;
+    }
+
+    /**
+     * Advances the wheel to the given tick and removes the entries that
+     * expired on the way.
+     *
+     * @return the expired entries as a list linked through next(), tick by
+     *         tick, or null. Read next() before scheduling an entry again.
+     */
+    // 前进到now刻度，返回到期的定时器（按到期先后链在一起）
+    public Entry advance(long now) {
+        Entry first = null;
+        Entry last = null;
+        while (mNow < now) {
+            mNow++;
+            // 低层转完一圈时，把高层对应的槽放到低层
+            int level = 1;
+            while (level < LEVELS
+                    && (mNow & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                level++;
+            }
+            for (int k = level - 1; k >= 1; k--) {
+                cascade(k, (int) ((mNow >>> (SLOT_BITS * k)) & SLOT_MASK));
+            }
+            int slot = (int) (mNow & SLOT_MASK);
+            Entry entry = mSlots[0][slot];
+            while (entry != null) {
+                Entry next = entry.mNext;
+                unlink(entry);
+                if (entry.mDeadline > mNow) {
+                    // 超出范围的定时器还没到时间
+                    insert(entry, false);
+                } else {
+                    mSize--;
+                    if (last == null) {
+                        first = entry;
+                    } else {
+                        last.mNext = entry;
+                    }
+                    entry.mPrev = last;
+                    last = entry;
+                }
+                entry = next;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns the entry after this one in a list returned by advance().
+     */
+    public static Entry next(Entry entry) {
+        return entry.mNext;
+    }
+
+    // 把高层一个槽里的定时器重新放入
+    private void cascade(int level, int slot) {
+        Entry entry = mSlots[level][slot];
+        mSlots[level][slot] = null;
+        while (entry != null) {
+            Entry next = entry.mNext;
+            entry.mLevel = -1;
+            insert(entry, true);
+            entry = next;
+        }
+    }
+
+    /**
+     * Puts the entry into the level and slot for its distance from now. While
+     * cascading, an entry due right now goes into the current level-0 slot,
+     * which advance() empties right after the cascade; otherwise a deadline
+     * that is not in the future becomes the next tick.
+     */
+    // 按离现在的距离选择层和槽
+    private void insert(Entry entry, boolean cascading) {
+        long deadline = entry.mDeadline;
+        long delta = deadline - mNow;
+        if (cascading && delta == 0) {
+            // 正好在这个刻度到期：放进马上要处理的第0层当前槽
+            delta = 0;
+        } else if (delta <= 0) {
+            // 已经过期：下一刻度到期
+            deadline = mNow + 1;
+            delta = 1;
+        } else if (delta >= RANGE) {
+            deadline = mNow + RANGE - 1;
+            delta = RANGE - 1;
+        }
+        int level = 0;
+        while (delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Entry head = mSlots[level][slot];
+        entry.mPrev = null;
+        entry.mNext = head;
+        if (head != null) {
+            head.mPrev = entry;
+        }
+        mSlots[level][slot] = entry;
+        entry.mLevel = level;
+        entry.mSlot = slot;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.mPrev != null) {
+            entry.mPrev.mNext = entry.mNext;
+        } else {
+            mSlots[entry.mLevel][entry.mSlot] = entry.mNext;
+        }
+        if (entry.mNext != null) {
+            entry.mNext.mPrev = entry.mPrev;
+        }
+        entry.mNext = null;
+        entry.mPrev = null;
+        entry.mLevel = -1;
+    }
+}
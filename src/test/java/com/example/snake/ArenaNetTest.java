@@ -0,0 +1,214 @@
+package com.example.snake;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the arena netcode, over a loopback server.
+ */
+public class ArenaNetTest {
+
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    private ArenaServer mServer;
+    private ArenaClient[] mClients;
+
+    @After
+    public void tearDown() throws IOException {
+        if (mClients != null) {
+            for (ArenaClient client : mClients) {
+                client.close();
+            }
+        }
+        if (mServer != null) {
+            mServer.close();
+        }
+    }
+
+    @Test
+    public void loopbackClients_mirrorTheServer() throws Exception {
+        connect(new ArenaGame(40, 30, 7), 2);
+        // 每个玩家每4步右转一次，绕着小圈走
+        int[] turns = {GameEngine.SOUTH, GameEngine.WEST, GameEngine.NORTH,
+                GameEngine.EAST};
+        for (int i = 0; i < 200; i++) {
+            for (ArenaClient client : mClients) {
+                if (i % 4 == 0) {
+                    client.sendDirection(turns[(i / 4) % 4]);
+                }
+                client.tick();
+            }
+            step();
+            for (ArenaClient client : mClients) {
+                assertMirrors(mServer.getGame(), client.getGame());
+                // 同步之后，预测的蛇就是服务器上的蛇（刚出生的蛇下一步才开始预测）
+                if (client.getPredictedSnake().size() == 0) {
+                    continue;
+                }
+                assertEquals(client.getGame().getTick(), client.getPredictedTick());
+                assertArrayEquals(client.getGame().getSnake(client.getPlayer())
+                        .toArray(), client.getPredictedSnake().toArray());
+            }
+        }
+
+        for (ArenaClient client : mClients) {
+            assertEquals(200, client.getDeltaCount());
+            assertTrue(client.getLatency().getCount() > 0);
+            assertTrue(client.getLatency().getMaxNanos() < TIMEOUT_MILLIS * 1000000L);
+        }
+        // 增量：每个客户端每步只有十几个字节
+        long perClientTick = mServer.getBytesSent() / (2 * mServer.getTickCount());
+        assertTrue("bytes per tick " + perClientTick, perClientTick < 24);
+        assertTrue(mServer.getLastTickBytesPerClient() > 0);
+    }
+
+    @Test
+    public void lateInput_isReconciled() throws Exception {
+        connect(new ArenaGame(40, 30, 3), 1);
+        ArenaClient client = mClients[0];
+        while (!client.getGame().isAlive(client.getPlayer())) {
+            client.tick();
+            step();
+        }
+        client.tick();
+        step();
+        assertEquals(0, client.getReconciliationCount());
+
+        // 预测已经转向，但服务器在收到输入之前就前进了一步
+        int turn = GameEngine.NORTH;
+        assertTrue(client.sendDirection(turn));
+        client.tick();
+        mServer.tick();
+        awaitDeltas();
+        assertEquals(1, client.getReconciliationCount());
+        assertArrayEquals(client.getGame().getSnake(client.getPlayer()).toArray(),
+                client.getPredictedSnake().toArray());
+
+        // 下一步服务器应用了这个输入，预测再次一致
+        client.tick();
+        step();
+        assertEquals(1, client.getReconciliationCount());
+        assertEquals(turn, client.getGame().getDirection(client.getPlayer()));
+        assertArrayEquals(client.getGame().getSnake(client.getPlayer()).toArray(),
+                client.getPredictedSnake().toArray());
+        assertEquals(1, client.getLatency().getCount());
+    }
+
+    @Test
+    public void predictionIntoAWall_stopsUntilTheServerCatchesUp() throws Exception {
+        connect(new ArenaGame(20, 12, 5), 1);
+        ArenaClient client = mClients[0];
+        int player = client.getPlayer();
+        while (!client.getGame().isAlive(player)) {
+            client.tick();
+            step();
+        }
+        client.tick();
+        step();
+
+        // 转向一侧的墙，服务器落后很多步：预测撞墙后停住，不越界
+        int direction = client.getGame().getDirection(player);
+        int turn = direction == GameEngine.NORTH || direction == GameEngine.SOUTH
+                ? GameEngine.WEST : GameEngine.NORTH;
+        assertTrue(client.sendDirection(turn));
+        for (int i = 0; i < 25; i++) {
+            client.tick();
+        }
+        assertTrue(client.isPredictedDead());
+        int head = client.getPredictedSnake().head();
+        assertTrue(client.getGame().isInterior(SnakeBody.unpackX(head),
+                SnakeBody.unpackY(head)));
+
+        // 服务器追上来，蛇在服务器上撞墙，客户端丢弃预测
+        for (int i = 0; i < 25 && client.getGame().isAlive(player); i++) {
+            step();
+        }
+        assertFalse(client.getGame().isAlive(player));
+        assertEquals(0, client.getPredictedSnake().size());
+    }
+
+    // 启动回环服务器并连接若干客户端
+    private void connect(ArenaGame game, int count) throws Exception {
+        game.start();
+        mServer = new ArenaServer(game, 50, new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), 0));
+        InetSocketAddress address = new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), mServer.getPort());
+        mClients = new ArenaClient[count];
+        for (int i = 0; i < count; i++) {
+            mClients[i] = new ArenaClient(address);
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!allReady()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            mServer.poll(1);
+            for (ArenaClient client : mClients) {
+                client.poll();
+            }
+        }
+        assertEquals(count, mServer.getClientCount());
+    }
+
+    private boolean allReady() {
+        for (ArenaClient client : mClients) {
+            if (!client.isReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 等服务器收到所有输入，执行一步，再等客户端收到增量
+    private void step() throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (ArenaClient client : mClients) {
+            while (mServer.getReceivedSequence(client.getPlayer()) < client.getSequence()) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                mServer.poll(1);
+            }
+        }
+        mServer.tick();
+        awaitDeltas();
+    }
+
+    private void awaitDeltas() throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (ArenaClient client : mClients) {
+            while (client.getGame().getTick() < mServer.getGame().getTick()) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                mServer.poll(0);
+                client.poll();
+            }
+        }
+    }
+
+    private static void assertMirrors(ArenaGame expected, ArenaGame actual) {
+        assertEquals(expected.getTick(), actual.getTick());
+        for (int player = 0; player < ArenaGame.MAX_PLAYERS; player++) {
+            assertEquals(expected.isAlive(player), actual.isAlive(player));
+            if (expected.isAlive(player)) {
+                assertArrayEquals(expected.getSnake(player).toArray(),
+                        actual.getSnake(player).toArray());
+                assertEquals(expected.getDirection(player), actual.getDirection(player));
+                assertEquals(expected.getScore(player), actual.getScore(player));
+            }
+        }
+        assertArrayEquals(apples(expected), apples(actual));
+    }
+
+    private static int[] apples(ArenaGame game) {
+        int[] apples = new int[game.getAppleCount()];
+        for (int i = 0; i < apples.length; i++) {
+            apples[i] = game.getApple(i);
+        }
+        Arrays.sort(apples);
+        return apples;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.snake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the autopilot.
+ */
+public class AutopilotTest {
+
+    // 让自动驾驶玩一局，返回最后一步的结果
+    private static int play(GameEngine engine, long seed, int size) {
+        engine.resize(size, size);
+        engine.newGame(seed);
+        Autopilot autopilot = new Autopilot();
+        int result = GameEngine.MOVED;
+        for (int tick = 0; tick < 1000000 && !engine.isOver(); tick++) {
+            result = engine.step(autopilot.chooseDirection(engine));
+        }
+        return result;
+    }
+
+    @Test
+    public void withACycle_fillsTheGarden() {
+        // 墙内16x16，有哈密顿环
+        for (long seed = 1; seed <= 3; seed++) {
+            GameEngine engine = new GameEngine(0);
+            assertEquals(GameEngine.WON, play(engine, seed, 18));
+            assertEquals(16 * 16, engine.getSnake().size());
+        }
+    }
+
+    @Test
+    public void bothSidesOdd_fillsTheGardenInsteadOfCircling() {
+        // 墙内13x13和19x21：没有哈密顿环，环跳过一个角落。
+        // 以前蛇在吃完一部分苹果后一直追着尾巴转，游戏永远不结束
+        int[][] sizes = {{15, 15}, {21, 23}};
+        for (int[] size : sizes) {
+            GameEngine engine = new GameEngine(0);
+            engine.resize(size[0], size[1]);
+            engine.newGame(5);
+            Autopilot autopilot = new Autopilot();
+            int interior = (size[0] - 2) * (size[1] - 2);
+            for (int tick = 0; tick < 1000000 && !engine.isOver(); tick++) {
+                engine.step(autopilot.chooseDirection(engine));
+            }
+            assertTrue(engine.isOver());
+            // 最坏也只差最后一格
+            assertTrue(engine.getSnake().size() >= interior - 1);
+        }
+    }
+
+    @Test
+    public void neverTurnsBackOntoItself() {
+        GameEngine engine = new GameEngine(0);
+        engine.resize(20, 20);
+        engine.newGame(9);
+        Autopilot autopilot = new Autopilot();
+        for (int tick = 0; tick < 500 && !engine.isOver(); tick++) {
+            int direction = autopilot.chooseDirection(engine);
+            assertNotEquals(GameEngine.opposite(engine.getDirection()), direction);
+            engine.step(direction);
+        }
+    }
+}
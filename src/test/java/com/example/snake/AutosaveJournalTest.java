@@ -0,0 +1,210 @@
+package com.example.snake;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the autosave journal and the restorable generator.
+ */
+public class AutosaveJournalTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    // 按固定规则转向的玩家：能走的方向中选第一个不撞的
+    private static int safeDirection(GameEngine engine) {
+        int head = engine.getSnake().head();
+        int x = SnakeBody.unpackX(head);
+        int y = SnakeBody.unpackY(head);
+        int[] order = {GameEngine.NORTH, GameEngine.EAST, GameEngine.SOUTH,
+                GameEngine.WEST};
+        for (int direction : order) {
+            if (direction == GameEngine.opposite(engine.getDirection())) {
+                continue;
+            }
+            int nx = x + (direction == GameEngine.EAST ? 1
+                    : direction == GameEngine.WEST ? -1 : 0);
+            int ny = y + (direction == GameEngine.SOUTH ? 1
+                    : direction == GameEngine.NORTH ? -1 : 0);
+            if (nx < 1 || ny < 1 || nx > engine.getWidth() - 2
+                    || ny > engine.getHeight() - 2) {
+                continue;
+            }
+            boolean body = false;
+            SnakeBody snake = engine.getSnake();
+            for (int i = 0; i < snake.size() - 1; i++) {
+                body |= snake.get(i) == SnakeBody.pack(nx, ny);
+            }
+            if (!body) {
+                return direction;
+            }
+        }
+        return engine.getDirection();
+    }
+
+    // 跑若干步，和SnakeView一样记录苹果和移动
+    private static GameEngine play(final AutosaveJournal journal, int moves) {
+        GameEngine engine = new GameEngine(42);
+        engine.resize(16, 12);
+        engine.newGame(42);
+        return play(journal, engine, moves);
+    }
+
+    // 接着已有的游戏跑若干步（先写一次快照）
+    private static GameEngine play(final AutosaveJournal journal,
+            GameEngine engine, int moves) {
+        engine.setListener(new GameEngine.Listener() {
+            @Override
+            public void onCellChanged(int x, int y, int content) {
+                if (content == GameEngine.APPLE) {
+                    journal.recordApple(x, y);
+                }
+            }
+        });
+        journal.writeSnapshot(engine);
+        for (int i = 0; i < moves && !engine.isOver(); i++) {
+            int result = engine.step(safeDirection(engine));
+            if (result == GameEngine.DIED || result == GameEngine.WON) {
+                break;
+            }
+            if (journal.recordMove(engine.getDirection())) {
+                journal.writeSnapshot(engine);
+            }
+        }
+        return engine;
+    }
+
+    @Test
+    public void gameRandom_matchesJavaUtilRandom() {
+        Random expected = new Random(1234);
+        GameRandom random = new GameRandom(1234);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(expected.nextInt(97), random.nextInt(97));
+        }
+        long state = random.getState();
+        int next = random.nextInt(1000);
+        random.setState(state);
+        assertEquals(next, random.nextInt(1000));
+    }
+
+    @Test
+    public void recover_restoresTheGameAfterClose() {
+        File file = new File(mFolder.getRoot(), "autosave");
+        AutosaveJournal journal = new AutosaveJournal(file);
+        journal.start();
+        // 超过一次快照间隔，覆盖压缩后的日志
+        GameEngine engine = play(journal, AutosaveJournal.SNAPSHOT_INTERVAL + 40);
+        journal.close();
+
+        GameEngine restored = new GameEngine(0);
+        assertTrue(new AutosaveJournal(file).recover(restored));
+        assertArrayEquals(engine.getSnake().toArray(),
+                restored.getSnake().toArray());
+        assertArrayEquals(engine.getApplesArray(), restored.getApplesArray());
+        assertEquals(engine.getScore(), restored.getScore());
+        assertEquals(engine.getRandomState(), restored.getRandomState());
+        // 种子也随快照保存（排行榜记录用）
+        assertEquals(42, restored.getSeed());
+    }
+
+    @Test
+    public void recover_ignoresATornLastRecord() throws Exception {
+        File file = new File(mFolder.getRoot(), "autosave");
+        AutosaveJournal journal = new AutosaveJournal(file);
+        journal.start();
+        play(journal, 30);
+        journal.close();
+
+        // 模拟写到一半时崩溃：最后一条苹果记录只剩类型字节
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+        raf.write(3);
+        raf.close();
+
+        assertTrue(new AutosaveJournal(file).recover(new GameEngine(0)));
+    }
+
+    @Test
+    public void snapshotAfterRecover_keepsMovesPastABadTail() throws Exception {
+        File file = new File(mFolder.getRoot(), "autosave");
+        AutosaveJournal journal = new AutosaveJournal(file);
+        journal.start();
+        play(journal, 30);
+        journal.close();
+
+        // 日志末尾有一条无法识别的记录，恢复在这里停下
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+        raf.write(new byte[] {9, 9, 9});
+        raf.close();
+
+        // 和SnakeView.restoreAutosave()一样：恢复后先写快照再继续
+        journal = new AutosaveJournal(file);
+        GameEngine engine = new GameEngine(0);
+        assertTrue(journal.recover(engine));
+        journal.start();
+        play(journal, engine, 20);
+        journal.close();
+
+        GameEngine restored = new GameEngine(0);
+        assertTrue(new AutosaveJournal(file).recover(restored));
+        assertArrayEquals(engine.getSnake().toArray(),
+                restored.getSnake().toArray());
+        assertEquals(engine.getScore(), restored.getScore());
+    }
+
+    @Test
+    public void recover_restoresThePlayTime() {
+        File file = new File(mFolder.getRoot(), "autosave");
+        final AutosaveJournal journal = new AutosaveJournal(file);
+        journal.start();
+        GameEngine engine = new GameEngine(42);
+        engine.resize(16, 12);
+        engine.setListener(new GameEngine.Listener() {
+            @Override
+            public void onCellChanged(int x, int y, int content) {
+                if (content == GameEngine.APPLE) {
+                    journal.recordApple(x, y);
+                }
+            }
+        });
+        engine.newGame(42);
+        // 快照时已经玩了5秒，之后每一步加上当时的移动延迟
+        long playMillis = 5000;
+        journal.writeSnapshot(engine, playMillis);
+        for (int i = 0; i < 100; i++) {
+            long delay = engine.getMoveDelay();
+            int result = engine.step(safeDirection(engine));
+            if (result == GameEngine.DIED || result == GameEngine.WON) {
+                break;
+            }
+            playMillis += delay;
+            journal.recordMove(engine.getDirection());
+        }
+        journal.close();
+
+        AutosaveJournal recovered = new AutosaveJournal(file);
+        assertTrue(recovered.recover(new GameEngine(0)));
+        assertEquals(playMillis, recovered.getRecoveredPlayMillis());
+    }
+
+    @Test
+    public void discard_removesTheJournal() {
+        File file = new File(mFolder.getRoot(), "autosave");
+        AutosaveJournal journal = new AutosaveJournal(file);
+        journal.start();
+        play(journal, 10);
+        journal.discard();
+        journal.close();
+
+        assertFalse(file.exists());
+        assertFalse(new AutosaveJournal(file).recover(new GameEngine(0)));
+    }
+}
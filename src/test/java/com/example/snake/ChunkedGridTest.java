@@ -0,0 +1,82 @@
+package com.example.snake;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for chunked storage and huge gardens.
+ */
+public class ChunkedGridTest {
+
+    @Test
+    public void chunks_allocatedOnDemandAndDropped() {
+        ChunkedGrid grid = new ChunkedGrid(10000, 10000);
+        assertEquals(0, grid.getChunkCount());
+        assertEquals(0, grid.set(9999, 9999, 5));
+        grid.set(9998, 9999, 6);
+        grid.set(0, 0, 1);
+        assertEquals(2, grid.getChunkCount());
+        assertEquals(5, grid.get(9999, 9999));
+        assertEquals(0, grid.get(5000, 5000));
+        assertNull(grid.getChunk(1, 1));
+
+        // 块中最后一个格子清零后释放
+        grid.set(9999, 9999, 0);
+        assertEquals(2, grid.getChunkCount());
+        assertEquals(6, grid.set(9998, 9999, 0));
+        assertEquals(1, grid.getChunkCount());
+        grid.clear();
+        assertEquals(0, grid.get(0, 0));
+        assertEquals(0, grid.getChunkCount());
+    }
+
+    @Test
+    public void hugeGarden_playsInSparseStorage() {
+        GameEngine engine = new GameEngine(0);
+        engine.resize(10000, 10000);
+        engine.newGame(3);
+        assertEquals(9998L * 9998 - 6 - 2, engine.getFreeCellCount());
+
+        // 一直转圈：不会撞墙也不会咬到自己
+        int[] turns = {GameEngine.EAST, GameEngine.SOUTH, GameEngine.WEST,
+                GameEngine.NORTH};
+        for (int i = 0; i < 400; i++) {
+            engine.step(turns[(i / 3) % 4]);
+            assertFalse(engine.isOver());
+        }
+        int length = engine.getSnake().size();
+        assertEquals(9998L * 9998 - length - engine.getAppleCount(),
+                engine.getFreeCellCount());
+        int head = engine.getSnake().head();
+        assertTrue(engine.isSnake(SnakeBody.unpackX(head),
+                SnakeBody.unpackY(head)));
+    }
+
+    @Test
+    public void sparseFreeCells_pickOnlyFreeCells() {
+        FreeCellIndex index = new FreeCellIndex();
+        index.reset(2000, 2000);
+        // 只留一列空闲
+        for (int y = 1; y < 1999; y++) {
+            for (int x = 1; x < 1999; x++) {
+                if (x != 7) {
+                    index.remove(x, y);
+                }
+            }
+        }
+        assertEquals(1998, index.size());
+        Random rng = new Random(1);
+        for (int i = 0; i < 10; i++) {
+            int cell = index.random(rng);
+            assertEquals(7, SnakeBody.unpackX(cell));
+        }
+        index.add(8, 8);
+        index.add(8, 8);
+        assertEquals(1999, index.size());
+        assertTrue(index.isFree(8, 8));
+        assertFalse(index.isFree(0, 8));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.snake;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the free-cell index used to place apples.
+ */
+public class FreeCellIndexTest {
+    @Test
+    public void reset_marksOnlyInteriorFree() {
+        FreeCellIndex index = new FreeCellIndex();
+        index.reset(5, 4);
+        assertEquals(3 * 2, index.size());
+        assertFalse(index.isFree(0, 0));
+        assertFalse(index.isFree(4, 2));
+        assertTrue(index.isFree(1, 1));
+        assertTrue(index.isFree(3, 2));
+    }
+
+    @Test
+    public void random_neverReturnsOccupiedCell_andEndsWhenFull() {
+        FreeCellIndex index = new FreeCellIndex();
+        index.reset(6, 6);
+        Random rng = new Random(42);
+        int placed = 0;
+        int cell;
+        while ((cell = index.random(rng)) >= 0) {
+            int x = SnakeBody.unpackX(cell);
+            int y = SnakeBody.unpackY(cell);
+            assertTrue(index.isFree(x, y));
+            index.remove(x, y);
+            placed++;
+        }
+        assertEquals(16, placed);
+        assertEquals(0, index.size());
+
+        index.add(2, 3);
+        index.add(2, 3);
+        assertEquals(1, index.size());
+        assertEquals(SnakeBody.pack(2, 3), index.random(rng));
+    }
+}
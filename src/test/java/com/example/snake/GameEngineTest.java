@@ -0,0 +1,146 @@
+package com.example.snake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the headless game engine.
+ */
+public class GameEngineTest {
+
+    private static GameEngine newEngine(long seed, int width, int height) {
+        GameEngine engine = new GameEngine(seed);
+        engine.resize(width, height);
+        engine.newGame(seed);
+        return engine;
+    }
+
+    @Test
+    public void newGame_startsNorthWithTwoApples() {
+        GameEngine engine = newEngine(1, 20, 20);
+        assertEquals(6, engine.getSnake().size());
+        assertEquals(SnakeBody.pack(7, 7), engine.getSnake().head());
+        assertEquals(2, engine.getAppleCount());
+        assertEquals(GameEngine.INITIAL_MOVE_DELAY, engine.getMoveDelay());
+        assertEquals(18 * 18 - 6 - 2, engine.getFreeCellCount());
+    }
+
+    @Test
+    public void step_movesAndRejectsReversal() {
+        GameEngine engine = newEngine(1, 20, 20);
+        assertFalse(engine.setNextDirection(GameEngine.SOUTH));
+        engine.step();
+        assertEquals(SnakeBody.pack(7, 6), engine.getSnake().head());
+        assertEquals(6, engine.getSnake().size());
+    }
+
+    @Test
+    public void runningIntoTheWall_dies() {
+        GameEngine engine = newEngine(1, 20, 20);
+        int result = GameEngine.MOVED;
+        int steps = 0;
+        while (result != GameEngine.DIED) {
+            result = engine.step(GameEngine.NORTH);
+            steps++;
+        }
+        assertTrue(engine.isOver());
+        // 从第7行向北走，第7步撞上第0行的墙（可能中途吃到苹果）
+        assertEquals(7, steps);
+    }
+
+    @Test
+    public void turningIntoItself_dies() {
+        GameEngine engine = newEngine(1, 20, 20);
+        engine.step(GameEngine.NORTH);
+        engine.step(GameEngine.EAST);
+        engine.step(GameEngine.SOUTH);
+        assertEquals(GameEngine.DIED, engine.step(GameEngine.WEST));
+    }
+
+    @Test
+    public void eatingAnApple_growsScoresAndSpeedsUp() {
+        GameEngine engine = newEngine(3, 12, 12);
+        int before = engine.getSnake().size();
+        int apple = engine.getApple(0);
+        steerTo(engine, SnakeBody.unpackX(apple), SnakeBody.unpackY(apple));
+        assertEquals(1, engine.getScore());
+        assertEquals(before + 1, engine.getSnake().size());
+        assertEquals(540, engine.getMoveDelay());
+        assertEquals(2, engine.getAppleCount());
+    }
+
+    @Test
+    public void sameSeedAndMoves_giveSameGame() {
+        GameEngine a = newEngine(42, 30, 30);
+        GameEngine b = newEngine(42, 30, 30);
+        assertArrayEquals(a.getApplesArray(), b.getApplesArray());
+        int[] moves = {GameEngine.EAST, GameEngine.NORTH, GameEngine.WEST};
+        for (int i = 0; i < 20; i++) {
+            int move = moves[(i / 3) % moves.length];
+            assertEquals(a.step(move), b.step(move));
+        }
+        assertArrayEquals(a.getApplesArray(), b.getApplesArray());
+        assertArrayEquals(a.getSnake().toArray(), b.getSnake().toArray());
+    }
+
+    @Test
+    public void restoreState_roundTrips() {
+        GameEngine a = newEngine(7, 16, 16);
+        a.step(GameEngine.EAST);
+        GameEngine b = new GameEngine(0);
+        b.restoreState(a.getSnake().toArray(), a.getApplesArray(),
+                a.getDirection(), a.getNextDirection(), a.getMoveDelay(),
+                a.getScore());
+        b.resize(16, 16);
+        assertEquals(a.getFreeCellCount(), b.getFreeCellCount());
+        assertArrayEquals(a.getSnake().toArray(), b.getSnake().toArray());
+        assertEquals(a.step(GameEngine.NORTH), b.step(GameEngine.NORTH));
+    }
+
+    @Test
+    public void manyGames_runHeadless() {
+        GameEngine engine = new GameEngine(0);
+        engine.resize(40, 30);
+        long ticks = 0;
+        for (long seed = 0; seed < 200; seed++) {
+            engine.newGame(seed);
+            while (!engine.isOver() && ticks < 1000000) {
+                int apple = engine.getApple(0);
+                engine.step(greedy(engine, SnakeBody.unpackX(apple),
+                        SnakeBody.unpackY(apple)));
+                ticks++;
+            }
+        }
+        assertTrue(ticks > 0);
+    }
+
+    // 朝目标格子贪心地走一步
+    private static int greedy(GameEngine engine, int x, int y) {
+        int head = engine.getSnake().head();
+        int hx = SnakeBody.unpackX(head);
+        int hy = SnakeBody.unpackY(head);
+        if (x > hx && engine.getDirection() != GameEngine.WEST) {
+            return GameEngine.EAST;
+        }
+        if (x < hx && engine.getDirection() != GameEngine.EAST) {
+            return GameEngine.WEST;
+        }
+        if (y > hy && engine.getDirection() != GameEngine.NORTH) {
+            return GameEngine.SOUTH;
+        }
+        if (y < hy && engine.getDirection() != GameEngine.SOUTH) {
+            return GameEngine.NORTH;
+        }
+        return engine.getDirection();
+    }
+
+    // 走到指定格子（测试用：先离开蛇身所在的行，再横向、纵向移动）
+    private static void steerTo(GameEngine engine, int x, int y) {
+        int guard = 0;
+        while (engine.getSnake().head() != SnakeBody.pack(x, y)) {
+            assertTrue("lost on the way", engine.step(greedy(engine, x, y)) != GameEngine.DIED);
+            assertTrue(++guard < 100);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.snake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the latency histogram and tick metrics.
+ */
+public class GameMetricsTest {
+
+    @Test
+    public void histogram_bucketsAndPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 90个约100微秒，10个约5毫秒
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5000000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(590000, histogram.getMeanNanos());
+        assertEquals(5000000, histogram.getMaxNanos());
+        // 百分位数是所在桶的上界
+        assertTrue(histogram.getPercentileNanos(50) >= 100000);
+        assertTrue(histogram.getPercentileNanos(50) <= 2 * 100000);
+        assertEquals(5000000, histogram.getPercentileNanos(99));
+
+        // 超出范围的值落在最后一个桶
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(1, histogram.getBucketCount(LatencyHistogram.BUCKETS - 1));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    public void tick_recordsLatenessAgainstTheMoveClock() {
+        GameMetrics metrics = new GameMetrics();
+        MoveClock clock = new MoveClock();
+        // 移动延迟5毫秒，每帧16毫秒：一帧里连着走几步，每一步按应该执行的时刻计算
+        long delay = 5000000L;
+        long frame = 16000000L;
+        clock.resume(0);
+        for (long now = 0; now < 100 * frame; now += frame) {
+            while (clock.isDue(now)) {
+                metrics.tick(now - clock.getNextMove());
+                clock.advance(delay);
+            }
+        }
+        // 最晚的一步也不超过一帧，没有丢失的步数
+        assertTrue(metrics.getLateness().getMaxNanos() < frame);
+        assertEquals(0, metrics.getDroppedTicks());
+
+        // 卡住很久：只补一步，其余计为丢失
+        long now = clock.getNextMove() + 10 * delay + 1000;
+        metrics.dropTicks(clock.dropBacklog(now, delay));
+        assertEquals(10, metrics.getDroppedTicks());
+        assertTrue(clock.isDue(now));
+        clock.advance(delay);
+        assertFalse(clock.isDue(now));
+        assertEquals(0, clock.dropBacklog(now, delay));
+
+        metrics.reset();
+        assertEquals(0, metrics.getLateness().getCount());
+        assertEquals(0, metrics.getDroppedTicks());
+    }
+
+    @Test
+    public void formatLine_fitsTheBuffer() {
+        GameMetrics metrics = new GameMetrics();
+        metrics.getPhase(GameMetrics.PHASE_STEP).record(1500);
+        metrics.getPhase(GameMetrics.PHASE_DRAW).record(25000000L);
+        char[] line = new char[GameMetrics.MAX_LINE];
+        for (int i = 0; i < GameMetrics.LINE_COUNT; i++) {
+            int length = metrics.formatLine(i, line);
+            assertTrue(length > 0 && length <= line.length);
+        }
+        int length = metrics.formatLine(GameMetrics.PHASE_DRAW, line);
+        assertEquals("draw   avg 25ms p99 25ms max 25ms",
+                new String(line, 0, length));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.snake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the direction input queue.
+ */
+public class InputQueueTest {
+
+    @Test
+    public void twoPressesInOneTick_bothApply() {
+        GameEngine engine = new GameEngine(0);
+        engine.resize(20, 20);
+        engine.newGame(1);
+        InputQueue input = new InputQueue();
+        // 向北走时快速按东、南：掉头成功，两步各取一个
+        assertTrue(input.offer(GameEngine.EAST, 10, engine.getNextDirection()));
+        assertTrue(input.offer(GameEngine.SOUTH, 20, engine.getNextDirection()));
+
+        engine.setNextDirection(input.poll());
+        assertEquals(10, input.getPolledTime());
+        engine.step();
+        assertEquals(GameEngine.EAST, engine.getDirection());
+
+        engine.setNextDirection(input.poll());
+        assertEquals(20, input.getPolledTime());
+        engine.step();
+        assertEquals(GameEngine.SOUTH, engine.getDirection());
+        assertEquals(InputQueue.NONE, input.poll());
+    }
+
+    @Test
+    public void offer_checksAgainstThePreviousDirection() {
+        InputQueue input = new InputQueue();
+        // 与蛇的下一步方向相同或相反
+        assertFalse(input.offer(GameEngine.NORTH, 0, GameEngine.NORTH));
+        assertFalse(input.offer(GameEngine.SOUTH, 0, GameEngine.NORTH));
+        assertTrue(input.offer(GameEngine.WEST, 0, GameEngine.NORTH));
+        // 与队列里前一个方向相反
+        assertFalse(input.offer(GameEngine.EAST, 0, GameEngine.NORTH));
+        assertTrue(input.offer(GameEngine.SOUTH, 0, GameEngine.NORTH));
+        assertTrue(input.offer(GameEngine.EAST, 0, GameEngine.NORTH));
+        // 队列已满
+        assertFalse(input.offer(GameEngine.NORTH, 0, GameEngine.NORTH));
+        assertEquals(InputQueue.CAPACITY, input.size());
+
+        assertEquals(GameEngine.WEST, input.poll());
+        assertTrue(input.offer(GameEngine.NORTH, 0, GameEngine.NORTH));
+        input.clear();
+        assertEquals(InputQueue.NONE, input.poll());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.snake;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the leaderboard store.
+ */
+public class LeaderboardTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long START = 1700000000000L;
+
+    // 随机生成的对局，每局间隔一小时左右（跨越几百天）
+    private static List<Leaderboard.Game> games(int count) {
+        GameRandom random = new GameRandom(7);
+        List<Leaderboard.Game> games = new ArrayList<Leaderboard.Game>();
+        long time = START;
+        for (int i = 0; i < count; i++) {
+            time += HOUR / 2 + random.nextInt((int) HOUR);
+            games.add(new Leaderboard.Game(i, time, random.nextInt(500),
+                    3 + random.nextInt(100), 1000 + random.nextInt(60000)));
+        }
+        return games;
+    }
+
+    private static Leaderboard open(File dir) throws Exception {
+        Leaderboard leaderboard = new Leaderboard(dir);
+        leaderboard.start();
+        leaderboard.flush();
+        assertNull(leaderboard.getError());
+        return leaderboard;
+    }
+
+    // 按得分从高到低，同分时先打的在前
+    private static List<Leaderboard.Game> expectedTop(List<Leaderboard.Game> games) {
+        List<Leaderboard.Game> sorted = new ArrayList<Leaderboard.Game>(games);
+        Collections.sort(sorted, new Comparator<Leaderboard.Game>() {
+            @Override
+            public int compare(Leaderboard.Game a, Leaderboard.Game b) {
+                return a.score != b.score ? b.score - a.score
+                        : Long.compare(a.timeMillis, b.timeMillis);
+            }
+        });
+        return sorted.subList(0, Math.min(Leaderboard.TOP_COUNT, sorted.size()));
+    }
+
+    private static void assertTop(List<Leaderboard.Game> expected,
+            Leaderboard leaderboard) {
+        List<Leaderboard.Game> top = leaderboard.getTopScores(Leaderboard.TOP_COUNT);
+        assertEquals(expected.size(), top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(expected.get(i).seed, top.get(i).seed);
+            assertEquals(expected.get(i).score, top.get(i).score);
+            assertEquals(expected.get(i).length, top.get(i).length);
+            assertEquals(expected.get(i).durationMillis, top.get(i).durationMillis);
+        }
+    }
+
+    // 最后一天的统计与直接计算的一致
+    private static void assertLastDay(List<Leaderboard.Game> games,
+            Leaderboard leaderboard) {
+        long day = Leaderboard.dayOf(games.get(games.size() - 1).timeMillis);
+        int count = 0;
+        long total = 0;
+        int best = 0;
+        for (Leaderboard.Game game : games) {
+            if (Leaderboard.dayOf(game.timeMillis) == day) {
+                count++;
+                total += game.score;
+                best = Math.max(best, game.score);
+            }
+        }
+        Leaderboard.Day stats = leaderboard.getDay(day);
+        assertNotNull(stats);
+        assertEquals(count, stats.games);
+        assertEquals(total, stats.totalScore);
+        assertEquals(best, stats.bestScore);
+        // 早已超出范围的一天不再保存
+        assertNull(leaderboard.getDay(day - Leaderboard.DAY_COUNT));
+    }
+
+    @Test
+    public void recordReopenAndRebuild() throws Exception {
+        File dir = new File(mFolder.getRoot(), "leaderboard");
+        List<Leaderboard.Game> games = games(20000);
+        Leaderboard leaderboard = open(dir);
+        assertEquals(0, leaderboard.getBestScore());
+        for (Leaderboard.Game game : games) {
+            leaderboard.record(game);
+        }
+        leaderboard.flush();
+        assertEquals(games.size(), leaderboard.getGameCount());
+        assertTop(expectedTop(games), leaderboard);
+        assertLastDay(games, leaderboard);
+        leaderboard.close();
+
+        // 重新打开：直接使用索引
+        leaderboard = open(dir);
+        assertEquals(games.size(), leaderboard.getGameCount());
+        assertEquals(expectedTop(games).get(0).score, leaderboard.getBestScore());
+        assertTop(expectedTop(games), leaderboard);
+        leaderboard.close();
+
+        // 删除索引后从日志重建
+        assertTrue(new File(dir, "games.idx").delete());
+        leaderboard = open(dir);
+        assertEquals(games.size(), leaderboard.getGameCount());
+        assertTop(expectedTop(games), leaderboard);
+        assertLastDay(games, leaderboard);
+        leaderboard.close();
+    }
+
+    @Test
+    public void tornTail_isDropped_andALaggingIndexCatchesUp() throws Exception {
+        File dir = new File(mFolder.getRoot(), "leaderboard");
+        List<Leaderboard.Game> games = games(300);
+        Leaderboard leaderboard = open(dir);
+        for (Leaderboard.Game game : games.subList(0, 200)) {
+            leaderboard.record(game);
+        }
+        leaderboard.flush();
+        leaderboard.close();
+        // 保存此时的索引，再写100局
+        File index = new File(dir, "games.idx");
+        byte[] old = readFile(index);
+        leaderboard = open(dir);
+        for (Leaderboard.Game game : games.subList(200, 300)) {
+            leaderboard.record(game);
+        }
+        leaderboard.close();
+
+        // 索引回到200局时的样子，日志的最后一条只写了一半
+        writeFile(index, old);
+        File log = new File(dir, "games.log");
+        RandomAccessFile file = new RandomAccessFile(log, "rw");
+        file.setLength(file.length() - 10);
+        file.close();
+
+        leaderboard = open(dir);
+        List<Leaderboard.Game> kept = games.subList(0, 299);
+        assertEquals(kept.size(), leaderboard.getGameCount());
+        assertTop(expectedTop(kept), leaderboard);
+        assertLastDay(kept, leaderboard);
+        leaderboard.close();
+    }
+
+    private static byte[] readFile(File file) throws Exception {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        byte[] data = new byte[(int) in.length()];
+        in.readFully(data);
+        in.close();
+        return data;
+    }
+
+    private static void writeFile(File file, byte[] data) throws Exception {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.setLength(0);
+        out.write(data);
+        out.close();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.snake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the move clock.
+ */
+public class MoveClockTest {
+
+    private static final long FRAME = 16666667L;
+
+    @Test
+    public void speedIsExact_atAnyDelay() {
+        // 移动延迟从600毫秒到1毫秒：每帧回调一次，每次随机晚一点，
+        // 到最后一次回调为止到期的步骤一步不差
+        long[] delays = {600, 97, 17, 16, 15, 5, 1};
+        for (long millis : delays) {
+            long delay = millis * 1000000L;
+            MoveClock clock = new MoveClock();
+            GameRandom random = new GameRandom(millis);
+            clock.resume(0);
+            long moves = 0;
+            long now = 0;
+            for (long frame = 0; frame < 10000000000L; frame += FRAME) {
+                now = frame + random.nextInt(4000000);
+                while (clock.isDue(now)) {
+                    clock.advance(delay);
+                    moves++;
+                }
+            }
+            assertEquals(millis + " ms", now / delay + 1, moves);
+        }
+    }
+
+    @Test
+    public void pause_dropsTheBacklog() {
+        MoveClock clock = new MoveClock();
+        clock.resume(0);
+        assertTrue(clock.isDue(0));
+        clock.advance(100);
+        assertFalse(clock.isDue(99));
+        assertEquals(1, clock.millisUntilNext(0));
+        assertEquals(0.5f, clock.progress(50, 100), 0.001f);
+
+        // 暂停很久以后只走一步，不追赶
+        clock.resume(100000);
+        assertTrue(clock.isDue(100000));
+        clock.advance(100);
+        assertFalse(clock.isDue(100050));
+        assertEquals(0f, clock.progress(99000, 100), 0f);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.snake;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for replay recording and playback.
+ */
+public class ReplayTest {
+
+    // 用随机转向玩一局，并像SnakeView一样录制
+    private static Replay record(GameEngine engine, long seed) {
+        engine.resize(14, 10);
+        engine.newGame(seed);
+        Replay replay = new Replay(14, 10, seed);
+        Random player = new Random(seed);
+        while (!engine.isOver()) {
+            engine.setNextDirection(1 + player.nextInt(4));
+            engine.step();
+            replay.record(engine.getDirection());
+        }
+        replay.setScore(engine.getScore());
+        return replay;
+    }
+
+    @Test
+    public void playback_reproducesTheGame() throws IOException {
+        GameEngine engine = new GameEngine(0);
+        Replay replay = record(engine, 99);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        replay.writeTo(out);
+        // 每步2位
+        assertTrue(out.size() <= 33 + (replay.getTickCount() + 3) / 4);
+        Replay read = Replay.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(replay.getTickCount(), read.getTickCount());
+
+        GameEngine rerun = new GameEngine(0);
+        assertTrue(new ReplayPlayer(read).verify(rerun));
+        assertTrue(rerun.isOver());
+        assertArrayEquals(engine.getSnake().toArray(), rerun.getSnake().toArray());
+        assertArrayEquals(engine.getApplesArray(), rerun.getApplesArray());
+    }
+
+    @Test
+    public void verify_detectsAWrongScore() {
+        Replay replay = record(new GameEngine(0), 7);
+        replay.setScore(replay.getScore() + 1);
+        assertFalse(new ReplayPlayer(replay).verify(new GameEngine(0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_rejectsOtherData() throws IOException {
+        Replay.readFrom(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}));
+    }
+}
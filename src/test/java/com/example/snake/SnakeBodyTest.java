@@ -0,0 +1,55 @@
+package com.example.snake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the ring-buffer snake body.
+ */
+public class SnakeBodyTest {
+    @Test
+    public void pushAndRemove_keepOrder() {
+        SnakeBody body = new SnakeBody();
+        body.addTail(7, 7);
+        body.addTail(6, 7);
+        body.addTail(5, 7);
+
+        body.pushHead(7, 6);
+        assertEquals(SnakeBody.pack(5, 7), body.removeTail());
+
+        assertEquals(3, body.size());
+        assertEquals(SnakeBody.pack(7, 6), body.head());
+        assertEquals(SnakeBody.pack(6, 7), body.tail());
+        assertArrayEquals(new int[] {7, 6, 7, 7, 6, 7}, body.toArray());
+    }
+
+    @Test
+    public void growPastCapacity_wrapsCorrectly() {
+        SnakeBody body = new SnakeBody();
+        body.addTail(0, 0);
+        for (int i = 1; i <= 500; i++) {
+            body.pushHead(i, i + 1);
+            if (i % 3 == 0) {
+                body.removeTail();
+            }
+        }
+        assertEquals(501 - 166, body.size());
+        assertEquals(500, body.getX(0));
+        assertEquals(501, body.getY(0));
+        for (int i = 1; i < body.size(); i++) {
+            assertEquals(body.getX(i - 1) - 1, body.getX(i));
+        }
+    }
+
+    @Test
+    public void arrayRoundTrip() {
+        SnakeBody body = new SnakeBody();
+        body.fromArray(new int[] {3, 4, 3, 5, 3, 6});
+        SnakeBody copy = new SnakeBody();
+        copy.fromArray(body.toArray());
+        assertEquals(3, copy.size());
+        assertEquals(SnakeBody.pack(3, 4), copy.head());
+        assertEquals(SnakeBody.pack(3, 6), copy.tail());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.snake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the compact saved-state encoding.
+ */
+public class StateCodecTest {
+
+    @Test
+    public void encodeDecode_roundTrips() {
+        GameEngine engine = new GameEngine(3);
+        engine.resize(20, 20);
+        engine.newGame(3);
+        // 转几个弯，让蛇身不是一条直线
+        engine.step(GameEngine.NORTH);
+        engine.step(GameEngine.EAST);
+        engine.step(GameEngine.NORTH);
+        engine.setNextDirection(GameEngine.WEST);
+
+        byte[] data = StateCodec.encode(engine);
+
+        GameEngine restored = new GameEngine(0);
+        restored.resize(20, 20);
+        StateCodec.decode(data, restored);
+
+        assertArrayEquals(engine.getSnake().toArray(),
+                restored.getSnake().toArray());
+        assertArrayEquals(engine.getApplesArray(), restored.getApplesArray());
+        assertEquals(engine.getDirection(), restored.getDirection());
+        assertEquals(GameEngine.WEST, restored.getNextDirection());
+        assertEquals(engine.getMoveDelay(), restored.getMoveDelay());
+        assertEquals(engine.getScore(), restored.getScore());
+        assertEquals(engine.getFreeCellCount(), restored.getFreeCellCount());
+    }
+
+    @Test
+    public void longSnake_usesTwoBitsPerSegment() {
+        int[] trail = new int[1000 * 2];
+        // 在100x12的花园里来回蛇形排列1000节
+        for (int index = 0; index < 1000; index++) {
+            int row = index / 100;
+            int col = index % 100;
+            trail[2 * index] = 1 + ((row & 1) == 0 ? col : 99 - col);
+            trail[2 * index + 1] = 1 + row;
+        }
+        GameEngine engine = new GameEngine(0);
+        engine.resize(102, 12);
+        engine.restoreState(trail, new int[] {50, 10}, GameEngine.WEST,
+                GameEngine.WEST, 600, 994);
+
+        byte[] data = StateCodec.encode(engine);
+        assertTrue(data.length < 1000 / 4 + 20);
+
+        GameEngine restored = new GameEngine(0);
+        restored.resize(102, 12);
+        StateCodec.decode(data, restored);
+        assertArrayEquals(trail, restored.getSnake().toArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedData_isRejected() {
+        GameEngine engine = new GameEngine(1);
+        engine.resize(20, 20);
+        engine.newGame(1);
+        byte[] data = StateCodec.encode(engine);
+        StateCodec.decode(java.util.Arrays.copyOf(data, data.length - 2),
+                new GameEngine(0));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.snake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the timing wheel and the room server.
+ */
+public class TimingWheelTest {
+
+    private static class Timer extends TimingWheel.Entry {
+        long mFiredAt = -1;
+    }
+
+    // 一个刻度一个刻度地前进，记录每个定时器到期的刻度
+    private static void advanceTo(TimingWheel wheel, long now) {
+        while (wheel.getNow() < now) {
+            long tick = wheel.getNow() + 1;
+            TimingWheel.Entry entry = wheel.advance(tick);
+            while (entry != null) {
+                TimingWheel.Entry next = TimingWheel.next(entry);
+                Timer timer = (Timer) entry;
+                assertEquals(-1, timer.mFiredAt);
+                timer.mFiredAt = tick;
+                entry = next;
+            }
+        }
+    }
+
+    @Test
+    public void timers_fireExactlyAtTheirTick() {
+        TimingWheel wheel = new TimingWheel(100);
+        // 包括正好在高层槽边界上的刻度（64的倍数）
+        long[] deadlines = {101, 128, 163, 164, 165, 192, 500, 4096, 4196, 4197,
+                64 * 64 * 64, 100 + 64 * 64 * 64 + 3, 1L << 24,
+                100 + (1L << 24) + 5};
+        List<Timer> timers = new ArrayList<Timer>();
+        for (long deadline : deadlines) {
+            Timer timer = new Timer();
+            wheel.schedule(timer, deadline);
+            timers.add(timer);
+        }
+        assertEquals(deadlines.length, wheel.size());
+
+        advanceTo(wheel, 100 + (1L << 24) + 10);
+        for (int i = 0; i < deadlines.length; i++) {
+            assertEquals(deadlines[i], timers.get(i).mFiredAt);
+            assertFalse(timers.get(i).isScheduled());
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void everyDeadline_firesOnTime() {
+        // 从0开始的每一个刻度，尤其是高层的槽落到低层的那些刻度
+        TimingWheel wheel = new TimingWheel(0);
+        Timer[] timers = new Timer[10000];
+        for (int i = 1; i < timers.length; i++) {
+            timers[i] = new Timer();
+            wheel.schedule(timers[i], i);
+        }
+        advanceTo(wheel, timers.length);
+        for (int i = 1; i < timers.length; i++) {
+            assertEquals(i, timers[i].mFiredAt);
+        }
+    }
+
+    @Test
+    public void cancelAndReschedule() {
+        TimingWheel wheel = new TimingWheel(0);
+        Timer a = new Timer();
+        Timer b = new Timer();
+        Timer late = new Timer();
+        wheel.schedule(a, 10);
+        wheel.schedule(b, 5000);
+        wheel.cancel(a);
+        wheel.schedule(b, 20);
+        advanceTo(wheel, 15);
+        // 已经过去的刻度：下一刻度到期
+        wheel.schedule(late, 3);
+        advanceTo(wheel, 100);
+        assertEquals(-1, a.mFiredAt);
+        assertEquals(20, b.mFiredAt);
+        assertEquals(16, late.mFiredAt);
+
+        // 一次前进多个刻度：按刻度先后返回
+        Timer first = new Timer();
+        Timer second = new Timer();
+        wheel.schedule(second, 300);
+        wheel.schedule(first, 200);
+        TimingWheel.Entry expired = wheel.advance(1000);
+        assertSame(first, expired);
+        assertSame(second, TimingWheel.next(expired));
+        assertNull(TimingWheel.next(second));
+    }
+
+    @Test
+    public void roomServer_runsEveryRoomAtItsOwnSpeed() throws Exception {
+        RoomServer server = new RoomServer(2, 1000000L);
+        RoomServer.Room[] rooms = new RoomServer.Room[50];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = server.addRoom(12, i, RoomServer.RANDOM_BOT);
+        }
+        server.start();
+        // 初始延迟600毫秒：1.5秒内每个房间走两步左右
+        Thread.sleep(1500);
+        server.stop();
+        long steps = server.getSteps();
+        assertTrue("steps " + steps, steps >= 2 * rooms.length);
+        LatencyHistogram lateness = server.getLateness();
+        assertEquals(steps, lateness.getCount());
+        assertEquals(rooms.length, server.getRoomCount());
+    }
+}